@@ -3,6 +3,31 @@
 # This file is watched by the Java core. Changes take effect immediately.
 
 class OpificesBrain
+  def initialize
+    @seeds = 0
+    @distributed_copies = 0.0
+  end
+
+  # Swarm composition from peer bitfields (called once per status tick)
+  def on_swarm_health(seeds, leechers, distributed_copies, min_availability)
+    @seeds = seeds
+    @distributed_copies = distributed_copies
+    if min_availability == 0 && rand < 0.05
+      puts "[RUBY-BRAIN] Some pieces have no source (#{'%.2f' % distributed_copies} copies, #{seeds} seeds / #{leechers} leechers)."
+    end
+  end
+
+  # Typed decisions (called once per status tick). The snapshot is read-only;
+  # anything not written to the decision stays as it is.
+  def decide(snapshot, decision)
+    decision.set_aggressive_mode(true) if snapshot.seeds < 3
+
+    # Fastest source gets more endgame duplicates
+    return if snapshot.peer_count == 0
+    best = (0...snapshot.peer_count).max_by { |i| snapshot.get_peer_download_rate(i) }
+    decision.set_priority(best, 1) if snapshot.get_peer_download_rate(best) > 0
+  end
+
   def on_swarm_update(peers, progress, download_rate)
     # Log inputs (Java objects wrapped in Ruby)
     # Java::BtNet::Peer objects
@@ -16,8 +41,8 @@ class OpificesBrain
     if progress > 98.0
       puts "[RUBY-BRAIN] ENDGAME SCENARIO DETECTED. Ruby advises: PANIC MODE."
       # DSL: peers.each { |p| p.set_priority(:high) }
-    elsif peer_count < 3
-       puts "[RUBY-BRAIN] Low swarm health. Ruby advises: Aggressive Peer Bias."
+    elsif @seeds < 3
+       puts "[RUBY-BRAIN] Low seed count (#{@seeds}). Ruby advises: Aggressive Peer Bias."
     end
     
     # Example: Dynamic Choking logic
@@ -61,6 +61,13 @@ public class SettingsManager {
         }
     }
 
+    /**
+     * Directory holding the config file (~/.ModernTorrentClient)
+     */
+    public Path getConfigDir() {
+        return configFile.getParentFile().toPath();
+    }
+
     public void save() throws IOException {
         try (FileOutputStream out = new FileOutputStream(configFile)) {
             properties.store(out, "ModernTorrentClient Configuration");
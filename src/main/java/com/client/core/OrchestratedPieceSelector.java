@@ -1,15 +1,28 @@
 package com.client.core;
 
+import bt.net.ConnectionKey;
 import bt.torrent.PieceStatistics;
 import bt.torrent.selector.PieceSelector;
+import com.client.core.bandwidth.BandwidthShaper;
+import com.client.core.bandwidth.TorrentBandwidth;
+import com.client.core.swarm.EndgameCoordinator;
+import com.client.core.brain.SwarmDecision;
+import com.client.core.brain.SwarmSnapshot;
+import com.client.core.swarm.OpenPieceBudget;
+import com.client.core.swarm.PeerPolicy;
+import com.client.core.swarm.SuperSeeder;
+import com.client.core.swarm.SwarmAvailability;
+import com.client.core.telemetry.TelemetryRecorder;
 import java.util.BitSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Comparator;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,18 +31,33 @@ import org.slf4j.LoggerFactory;
  * 
  * Features:
  * 1. Rarest-First with random tie-breaking
- * 2. Early Endgame Mode - requests rare pieces from ALL available peers
+ * 2. Block-level Endgame - duplicates only in-flight blocks once few remain,
+ * cancelling them as soon as one copy arrives (see EndgameCoordinator)
  * 3. Speed-Priority - tracks piece completion times and prioritizes fast
  * sources
  * 4. Auto-Aggressive - activates extreme mode when < 3 seeders detected
+ * 5. Prefer-Partial - finishes open pieces before opening new ones, capped
+ * per torrent and globally (OpenPieceBudget) to bound in-flight memory; a
+ * piece that gets no block for OPEN_PIECE_IDLE_MS (its peers left or timed
+ * out) gives its slot back
+ * 6. Super-Seeding - once complete, optionally reveals pieces one at a time
+ * per peer on the upload side (see SuperSeeder)
+ * 7. Brain Decisions - once per tick the SwarmBrain gets a SwarmSnapshot and
+ * its SwarmDecision is applied on a later tick (see PeerPolicy)
+ * 8. Rate Limits - no new pieces while the torrent is over its download rate,
+ * and fewer open pieces while limited (see BandwidthShaper)
  */
 public class OrchestratedPieceSelector implements PieceSelector {
 
     private static final Logger logger = LoggerFactory.getLogger(OrchestratedPieceSelector.class);
     private final Random random = new Random();
+    private volatile LongSupplier clock = System::currentTimeMillis;
 
-    // Track which pieces are being actively requested (for endgame)
-    private final ConcurrentHashMap<Integer, Long> activeRequests = new ConcurrentHashMap<>();
+    // Pieces started but not completed ("open"), with the time of their last
+    // block (or of opening, before the first one arrives)
+    private final ConcurrentHashMap<Integer, Long> openPieces = new ConcurrentHashMap<>();
+    // Slots taken in openPieces; reserved against the cap before a piece is added
+    private final AtomicInteger openSlots = new AtomicInteger();
 
     // Track how many peers have each piece (for rarity scoring)
     private final ConcurrentHashMap<Integer, AtomicInteger> piecePopularity = new ConcurrentHashMap<>();
@@ -38,47 +66,238 @@ public class OrchestratedPieceSelector implements PieceSelector {
     private volatile boolean aggressiveMode = true; // Default ON
     private volatile boolean endgameMode = false;
     private volatile int totalPeers = 0;
+    private volatile int totalSeeds = 0;
+    private volatile double progressPercent = 0.0;
+    private volatile int piecesRemaining = -1;
+
+    // Brain round in progress: at most one outstanding decision per torrent
+    private SwarmDecision pendingDecision;
+    private ConnectionKey[] pendingPeers;
+    private long pendingSince;
+    private volatile int maxConnectionsHint = SwarmDecision.UNSET;
+    private volatile int pipelineDepthHint = SwarmDecision.UNSET;
+    private volatile TelemetryRecorder telemetry; // Optional, see setTelemetry
 
     // Thresholds
     private static final int LOW_SEED_THRESHOLD = 3; // Activate auto-aggressive below this
-    private static final int ENDGAME_THRESHOLD_PERCENT = 95; // Start endgame at 95% complete
-    private static final long REQUEST_TIMEOUT_MS = 30000; // Re-request after 30s
+    private static final long DECISION_TIMEOUT_MS = 5000; // Abandon a decision that never completed
+    public static final int DEFAULT_MAX_OPEN_PIECES = 32; // Per-torrent partial piece cap
+    private static final long LIMITED_OPEN_SECONDS = 4; // Open pieces worth this much rate when limited
+    private static final long OPEN_PIECE_IDLE_MS = 60000; // Open piece without a block for this long is dropped
 
-    private final com.client.core.brain.SwarmBrain brain;
+    private volatile com.client.core.brain.SwarmBrain brain;
+    private final EndgameCoordinator endgame;
+    private final SwarmAvailability swarm;
+    private final SuperSeeder superSeeder;
+    private final PeerPolicy peerPolicy;
+    private final BandwidthShaper bandwidthShaper;
+    private final com.client.core.bandwidth.TransferMeters transferMeters;
+    private final OpenPieceBudget budget;
+    private final int maxOpenPieces;
 
     public OrchestratedPieceSelector() {
+        this(EndgameCoordinator.DEFAULT_ENDGAME_BLOCKS, DEFAULT_MAX_OPEN_PIECES, OpenPieceBudget.global());
+    }
+
+    public OrchestratedPieceSelector(int endgameBlockThreshold, int maxOpenPieces, OpenPieceBudget budget) {
+        this(endgameBlockThreshold, maxOpenPieces, budget,
+                com.client.core.brain.SwarmBrains.create(com.client.core.brain.SwarmBrains.DEFAULT_STRATEGY));
+    }
+
+    public OrchestratedPieceSelector(int endgameBlockThreshold, int maxOpenPieces, OpenPieceBudget budget,
+            com.client.core.brain.SwarmBrain brain) {
         logger.info("[SMART SELECTOR] Initialized with Auto-Optimization Mode");
-        // Initialize Ruby Brain
-        String scriptPath = "dist/strategies/brain.rb";
-        this.brain = new com.client.core.brain.RubyBridge(scriptPath);
+        this.maxOpenPieces = maxOpenPieces > 0 ? maxOpenPieces : DEFAULT_MAX_OPEN_PIECES;
+        this.budget = budget;
+        this.swarm = new SwarmAvailability();
+        this.endgame = new EndgameCoordinator(swarm, endgameBlockThreshold);
+        this.superSeeder = new SuperSeeder(swarm);
+        this.peerPolicy = new PeerPolicy();
+        this.bandwidthShaper = new BandwidthShaper();
+        this.transferMeters = new com.client.core.bandwidth.TransferMeters();
+        this.endgame.setPeerPolicy(peerPolicy);
+        // Strategy comes from SwarmBrains (scripted ones run on the brain executor)
+        this.brain = brain;
     }
 
     /**
-     * Called externally to update peer count for auto-tuning
+     * Called externally with the swarm composition for auto-tuning
      */
-    public void updatePeerCount(int peers) {
+    public void updateSwarm(int peers, int seeds, double distributedCopies, int minAvailability) {
         this.totalPeers = peers;
+        this.totalSeeds = seeds;
 
-        // Consult the Brain
-        brain.optimize(Collections.emptyList(), 0.0, 0); // Passing limited context for now
+        brain.onSwarmHealth(seeds, peers - seeds, distributedCopies, minAvailability);
 
-        if (peers < LOW_SEED_THRESHOLD && !aggressiveMode) {
+        if (seeds < LOW_SEED_THRESHOLD && !aggressiveMode) {
             aggressiveMode = true;
-            logger.info("[ADAPTIVE-NET] Low seeds ({}) - AdaptiveBias ACTIVATED", peers);
+            logger.info("[ADAPTIVE-NET] Low seeds ({}/{} peers) - AdaptiveBias ACTIVATED", seeds, peers);
         }
     }
 
     /**
-     * Called externally to signal near-completion for endgame
+     * Called externally to report progress
      */
     public void updateProgress(double progressPercent) {
-        // Consult the Brain with progress
-        brain.optimize(Collections.emptyList(), progressPercent, 0);
+        this.progressPercent = progressPercent;
+    }
 
-        if (progressPercent >= ENDGAME_THRESHOLD_PERCENT && !endgameMode) {
-            endgameMode = true;
-            logger.info("[OPIT-CORE] Endgame Protocol ACTIVATED at {}%", String.format("%.1f", progressPercent));
+    /**
+     * Called externally with the remaining piece count; endgame is decided on
+     * outstanding blocks, not on percentage
+     */
+    public void updateRemainingPieces(int piecesRemaining) {
+        this.piecesRemaining = piecesRemaining;
+        endgameMode = endgame.updateRemainingPieces(piecesRemaining);
+        superSeeder.setSeeding(piecesRemaining == 0);
+    }
+
+    /**
+     * One brain round, called once per status tick after the update* calls:
+     * applies the previous decision if an async strategy has finished it, then
+     * hands the strategy a fresh snapshot (inline strategies apply at once).
+     */
+    public synchronized void evaluate() {
+        expireIdlePieces(clock.getAsLong());
+        SwarmSnapshot snapshot = peerPolicy.snapshot(clock.getAsLong(), progressPercent, piecesRemaining, swarm,
+                aggressiveMode, endgameMode);
+        evaluate(snapshot, peerPolicy.getSnapshotPeers());
+    }
+
+    /**
+     * Brain round on an externally built snapshot (telemetry replay); per-peer
+     * decisions only apply to the given peers.
+     */
+    public synchronized void evaluate(SwarmSnapshot snapshot, ConnectionKey[] snapshotPeers) {
+        long now = snapshot.getTimestampMs();
+        if (pendingDecision != null) {
+            if (pendingDecision.isComplete()) {
+                applyDecision(pendingDecision, pendingPeers);
+                pendingDecision = null;
+            } else if (now - pendingSince > DECISION_TIMEOUT_MS) {
+                pendingDecision = null; // Dropped by the brain (superseded, timed out or disabled)
+            }
         }
+
+        TelemetryRecorder recorder = telemetry;
+        if (recorder != null) {
+            recorder.recordTick(snapshot, snapshotPeers);
+        }
+
+        com.client.core.brain.SwarmBrain current = brain;
+        current.optimize(peerPolicy.getPeers(), progressPercent, snapshot.getDownloadRate());
+        if (pendingDecision != null) {
+            return; // Previous round still running
+        }
+        SwarmDecision decision = new SwarmDecision(snapshot.getPeerCount());
+        current.decide(snapshot, decision);
+        if (!current.isAsync()) {
+            // Inline strategy: the decision is final when decide returns
+            decision.complete();
+            applyDecision(decision, snapshotPeers);
+        } else {
+            pendingDecision = decision;
+            pendingPeers = snapshotPeers;
+            pendingSince = now;
+        }
+    }
+
+    private void applyDecision(SwarmDecision decision, ConnectionKey[] snapshotPeers) {
+        if (decision.getAggressiveMode() != SwarmDecision.UNSET
+                && (decision.getAggressiveMode() == 1) != aggressiveMode) {
+            setAggressiveMode(decision.getAggressiveMode() == 1);
+        }
+        if (decision.isEnterEndgame() && !endgameMode) {
+            endgameMode = endgame.enterEndgame();
+        }
+        if (decision.getMaxConnections() != SwarmDecision.UNSET) {
+            maxConnectionsHint = decision.getMaxConnections();
+        }
+        if (decision.getPipelineDepth() != SwarmDecision.UNSET) {
+            pipelineDepthHint = decision.getPipelineDepth();
+        }
+        peerPolicy.apply(decision, snapshotPeers);
+    }
+
+    /**
+     * Connection limit the brain asked for (SwarmDecision.UNSET if none). Bt
+     * fixes it per torrent at start, so it is used for the next torrent started.
+     */
+    public int getMaxConnectionsHint() {
+        return maxConnectionsHint;
+    }
+
+    /**
+     * Pipeline depth (block requests in flight per peer) the brain asked for,
+     * SwarmDecision.UNSET if none. Bt takes it as its maxOutstandingRequests
+     * when the next torrent starts, like getMaxConnectionsHint().
+     */
+    public int getPipelineDepthHint() {
+        return pipelineDepthHint;
+    }
+
+    /**
+     * Block-level endgame state, installed as a Bt messaging agent
+     */
+    public EndgameCoordinator getEndgameCoordinator() {
+        return endgame;
+    }
+
+    /**
+     * Per-peer bitfields and swarm availability, installed as a Bt messaging agent
+     */
+    public SwarmAvailability getSwarmAvailability() {
+        return swarm;
+    }
+
+    /**
+     * Replaces the strategy (e.g. a per-torrent override known once metadata
+     * is fetched). An outstanding decision of the old strategy is dropped.
+     */
+    public synchronized void setBrain(com.client.core.brain.SwarmBrain brain) {
+        this.brain = brain;
+        this.pendingDecision = null;
+    }
+
+    /**
+     * Records every tick, peer bitfield change and completed piece to a
+     * telemetry file (null to stop).
+     */
+    public void setTelemetry(TelemetryRecorder telemetry) {
+        this.telemetry = telemetry;
+        swarm.setListener(telemetry);
+    }
+
+    public TelemetryRecorder getTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * Per-peer rates and brain decisions, installed as a Bt messaging agent
+     */
+    public PeerPolicy getPeerPolicy() {
+        return peerPolicy;
+    }
+
+    /**
+     * Upload-side super-seeding, installed as a Bt messaging agent
+     */
+    public SuperSeeder getSuperSeeder() {
+        return superSeeder;
+    }
+
+    /**
+     * Rate limiting and accounting, installed as a Bt messaging agent
+     */
+    public BandwidthShaper getBandwidthShaper() {
+        return bandwidthShaper;
+    }
+
+    /**
+     * Payload and protocol rates, installed as a Bt messaging agent
+     */
+    public com.client.core.bandwidth.TransferMeters getTransferMeters() {
+        return transferMeters;
     }
 
     @Override
@@ -87,34 +306,29 @@ public class OrchestratedPieceSelector implements PieceSelector {
             return java.util.stream.IntStream.empty();
         }
 
+        // Partial pieces first: every open piece pins buffers until it completes
+        List<Integer> partialList = new ArrayList<>();
         List<Integer> candidateList = new ArrayList<>();
-        long now = System.currentTimeMillis();
 
         for (int i = availablePieces.nextSetBit(0); i >= 0; i = availablePieces.nextSetBit(i + 1)) {
-            // In endgame mode, request ALL pieces regardless of active status
-            if (endgameMode) {
+            // Open pieces are always offered so other peers can help finish them.
+            // In endgame the EndgameCoordinator duplicates the missing blocks.
+            if (openPieces.containsKey(i)) {
+                partialList.add(i);
+            } else {
                 candidateList.add(i);
-                continue;
-            }
-
-            // Check if this piece is already being requested
-            Long requestTime = activeRequests.get(i);
-            if (requestTime != null) {
-                // If request is stale (timeout), allow re-request (aggressive)
-                if (aggressiveMode && (now - requestTime > REQUEST_TIMEOUT_MS)) {
-                    candidateList.add(i);
-                    logger.debug("[ADAPTIVE] Re-requesting stale piece {}", i);
-                }
-                // Otherwise skip (already in progress)
-                continue;
             }
-
-            candidateList.add(i);
         }
 
-        if (candidateList.isEmpty()) {
-            return java.util.stream.IntStream.empty();
-        }
+        // Closest to completion first, then the longest without a block (likely stalled)
+        partialList.sort((a, b) -> {
+            int blocksA = endgame.getReceivedBlocks(a);
+            int blocksB = endgame.getReceivedBlocks(b);
+            if (blocksA != blocksB) {
+                return Integer.compare(blocksB, blocksA);
+            }
+            return Long.compare(openPieces.getOrDefault(a, 0L), openPieces.getOrDefault(b, 0L));
+        });
 
         // Scoring algorithm
         // In aggressive mode: prioritize RAREST pieces first (maximize swarm
@@ -133,27 +347,157 @@ public class OrchestratedPieceSelector implements PieceSelector {
             });
         } else {
             // Standard rarest-first with shuffle
-            Collections.shuffle(candidateList);
+            Collections.shuffle(candidateList, random);
             candidateList.sort(Comparator.comparingInt(pieceStatistics::getCount));
         }
 
-        // Mark top candidates as active (for duplicate prevention)
-        int toMark = Math.min(aggressiveMode ? 20 : 10, candidateList.size());
-        for (int i = 0; i < toMark; i++) {
-            activeRequests.put(candidateList.get(i), now);
+        // New pieces only up to the free per-torrent and global open-piece slots
+        int freeSlots = Math.min(openPieceCap() - openSlots.get(), budget.available());
+        int limit = Math.max(0, Math.min(freeSlots, candidateList.size()));
+        if (limit == 0 && partialList.isEmpty()) {
+            return java.util.stream.IntStream.empty();
+        }
+
+        // Bt pulls lazily, so a piece is only opened when it is actually taken
+        return java.util.stream.Stream.concat(partialList.stream(), candidateList.stream().limit(limit))
+                .mapToInt(Integer::intValue)
+                .filter(this::admit);
+    }
+
+    /**
+     * Opens a piece if it is not open yet and both caps allow it. The
+     * per-torrent slot is reserved before the global one, and both are given
+     * back if another connection opened the piece first.
+     */
+    private boolean admit(int pieceIndex) {
+        if (openPieces.containsKey(pieceIndex)) {
+            return true;
+        }
+        if (!reserveSlot(openPieceCap())) {
+            return false;
+        }
+        if (!budget.tryAcquire()) {
+            openSlots.decrementAndGet();
+            return false;
+        }
+        if (openPieces.putIfAbsent(pieceIndex, clock.getAsLong()) != null) {
+            // Lost a race with another connection
+            openSlots.decrementAndGet();
+            budget.release(1);
+        }
+        endgame.markInFlight(pieceIndex);
+        return true;
+    }
+
+    private boolean reserveSlot(int cap) {
+        while (true) {
+            int current = openSlots.get();
+            if (current >= cap) {
+                return false;
+            }
+            if (openSlots.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Open-piece cap for this torrent. Under a download limit, in-flight
+     * pieces are bytes already committed to, so they are held to a few seconds
+     * of the rate; over the limit no new piece is opened at all.
+     */
+    private int openPieceCap() {
+        TorrentBandwidth bandwidth = bandwidthShaper.getBandwidth();
+        if (bandwidth == null) {
+            return maxOpenPieces;
+        }
+        if (!bandwidth.canDownload()) {
+            return 0;
+        }
+        long rate = bandwidth.getDownloadRate();
+        long pieceLength = endgame.getPieceLength();
+        if (rate <= 0 || pieceLength <= 0) {
+            return maxOpenPieces;
+        }
+        return (int) Math.max(1, Math.min(maxOpenPieces, rate * LIMITED_OPEN_SECONDS / pieceLength));
+    }
+
+    /**
+     * Called when Bt has verified a piece (its piece-verified event, routed by
+     * TorrentAgentRouter) - completes it for the endgame and frees its
+     * open-piece slot. Bt stops offering
+     * verified pieces, so this is the only place the slot comes back.
+     */
+    public void pieceVerified(int pieceIndex) {
+        endgame.pieceVerified(pieceIndex);
+        releasePiece(pieceIndex);
+        TelemetryRecorder recorder = telemetry;
+        if (recorder != null) {
+            recorder.recordPieceCompleted(pieceIndex);
         }
+    }
+
+    /**
+     * Called when a downloaded piece failed its hash check - frees its slot;
+     * the piece is opened again when Bt next asks for it.
+     */
+    public void pieceFailed(int pieceIndex) {
+        endgame.pieceFailed(pieceIndex);
+        releasePiece(pieceIndex);
+    }
+
+    /**
+     * Called for every block that arrives (routed by TorrentAgentRouter) - keeps
+     * the piece's slot from expiring.
+     */
+    public void blockReceived(int pieceIndex) {
+        openPieces.replace(pieceIndex, clock.getAsLong());
+    }
 
-        // In endgame or aggressive, return MORE pieces for parallel download
-        int limit = aggressiveMode ? candidateList.size() : Math.min(50, candidateList.size());
+    private void releasePiece(int pieceIndex) {
+        if (openPieces.remove(pieceIndex) != null) {
+            openSlots.decrementAndGet();
+            budget.release(1);
+        }
+    }
 
-        return candidateList.stream().limit(limit).mapToInt(Integer::intValue);
+    /**
+     * Frees the slots of open pieces that got no block for OPEN_PIECE_IDLE_MS.
+     * Bt drops the assignment when a peer disconnects or times out, but the
+     * piece only comes back here once it is verified or fails; an expired piece
+     * is opened again (with a fresh slot) when Bt next takes it.
+     */
+    private void expireIdlePieces(long now) {
+        int expired = 0;
+        for (Map.Entry<Integer, Long> entry : openPieces.entrySet()) {
+            if (now - entry.getValue() >= OPEN_PIECE_IDLE_MS
+                    && openPieces.remove(entry.getKey(), entry.getValue())) {
+                openSlots.decrementAndGet();
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            budget.release(expired);
+            logger.info("[OPIT-CORE] Released {} idle open pieces", expired);
+        }
     }
 
     /**
-     * Called when a piece completes - clean up tracking
+     * Returns all open-piece slots to the global budget (torrent stopped)
      */
-    public void pieceCompleted(int pieceIndex) {
-        activeRequests.remove(pieceIndex);
+    public void releaseAll() {
+        int released = 0;
+        for (Integer piece : openPieces.keySet()) {
+            if (openPieces.remove(piece) != null) {
+                released++;
+            }
+        }
+        openSlots.addAndGet(-released);
+        budget.release(released);
+    }
+
+    public int getOpenPieceCount() {
+        return openPieces.size();
     }
 
     /**
@@ -167,4 +511,13 @@ public class OrchestratedPieceSelector implements PieceSelector {
     public boolean isAggressiveMode() {
         return aggressiveMode;
     }
+
+    /**
+     * Replace the time source and tie-break seed (used by the offline simulator
+     * for reproducible runs)
+     */
+    public void setClock(LongSupplier clock, long seed) {
+        this.clock = clock;
+        this.random.setSeed(seed);
+    }
 }
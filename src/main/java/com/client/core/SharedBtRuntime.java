@@ -0,0 +1,275 @@
+package com.client.core;
+
+import bt.dht.DHTConfig;
+import bt.dht.DHTModule;
+import bt.runtime.BtRuntime;
+import bt.runtime.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One Bt runtime for every torrent.
+ *
+ * Features:
+ * 1. Single node - one DHT node, one acceptor socket, one set of selectors
+ * and executors shared by all torrents, so hundreds of torrents do not mean
+ * hundreds of thread pools or port conflicts
+ * 2. Per-torrent agents - the runtime-wide messaging agent is a
+ * TorrentAgentRouter that dispatches to each torrent's own agents; Bt's
+ * piece-verified events and failed hash checks reach them the same way
+ * 3. Shared announces - tracker announces of all torrents go through one
+ * AnnounceScheduler, installed as a peer source
+ * 4. Fast resume - Bt's start-up piece check goes through a
+ * ResumeChunkVerifier, which trusts piece state restored from the session;
+ * Bt's data descriptor factory is wrapped so the check knows its torrent
+ * 5. Drainable writes - Bt's data worker is wrapped in a DrainableDataWorker,
+ * so shutdown can wait for queued block writes before the runtime goes away
+ * 6. Connection budget - outgoing connection attempts go through a
+ * BudgetedConnectionSource, and the ConnectionBudget counts the runtime's
+ * open connections against the global cap
+ * 7. Super-seeding handshake - Bt's handshake handlers are built as
+ * ProtocolModule does, except that the bitfield goes through a
+ * SuperSeedingBitfieldHandler, which withholds it from peers of a
+ * super-seeding torrent
+ * 8. Lazy restart - runtime-level settings (port, connection limits) are
+ * fixed while the runtime runs; a changed configuration is picked up the next
+ * time a torrent starts while none is running
+ */
+public class SharedBtRuntime {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedBtRuntime.class);
+
+    private final TorrentAgentRouter router = new TorrentAgentRouter();
+    private final com.client.core.tracker.AnnounceScheduler announceScheduler =
+            new com.client.core.tracker.AnnounceScheduler();
+    private final com.client.core.session.ResumeChunkVerifier resumeVerifier =
+            new com.client.core.session.ResumeChunkVerifier();
+    // Data worker of the running runtime, created by Bt on first use
+    private volatile com.client.core.storage.DrainableDataWorker dataWorker;
+
+    // Guarded by 'this'
+    private BtRuntime runtime;
+    private String configKey;
+    // Torrents whose piece events are subscribed in the running runtime
+    private final java.util.Set<bt.metainfo.TorrentId> subscribed = new java.util.HashSet<>();
+
+    public TorrentAgentRouter getRouter() {
+        return router;
+    }
+
+    public com.client.core.tracker.AnnounceScheduler getAnnounceScheduler() {
+        return announceScheduler;
+    }
+
+    public com.client.core.session.ResumeChunkVerifier getResumeVerifier() {
+        return resumeVerifier;
+    }
+
+    /**
+     * Routes messages and piece events of 'torrentId' to 'selector'. Bt keeps
+     * event listeners for the life of the runtime, so each torrent is
+     * subscribed once and later events go through the router's current entry.
+     */
+    public void register(bt.metainfo.TorrentId torrentId, OrchestratedPieceSelector selector) {
+        router.register(torrentId, selector);
+        synchronized (this) {
+            if (runtime != null && subscribed.add(torrentId)) {
+                runtime.getEventSource().onPieceVerified(torrentId,
+                        event -> router.pieceVerified(event.getTorrentId(), event.getPieceIndex()));
+            }
+        }
+    }
+
+    /**
+     * The running runtime's torrent registry, or null if none is running.
+     */
+    public synchronized bt.torrent.TorrentRegistry getTorrentRegistry() {
+        return runtime != null ? runtime.service(bt.torrent.TorrentRegistry.class) : null;
+    }
+
+    /**
+     * Waits up to 'timeoutMs' for block writes queued in the running runtime
+     * to finish. Returns true if none is left.
+     */
+    public boolean awaitWritesIdle(long timeoutMs) throws InterruptedException {
+        com.client.core.storage.DrainableDataWorker worker = dataWorker;
+        return worker == null || worker.awaitIdle(timeoutMs);
+    }
+
+    public int getPendingWrites() {
+        com.client.core.storage.DrainableDataWorker worker = dataWorker;
+        return worker != null ? worker.getPendingWrites() : 0;
+    }
+
+    /**
+     * Closes the connections to 'peers' (keys of the running runtime's
+     * connections); Bt then treats them as disconnected.
+     */
+    public void closeConnections(java.util.Collection<bt.net.ConnectionKey> peers) {
+        bt.net.IPeerConnectionPool pool;
+        synchronized (this) {
+            if (runtime == null) {
+                return;
+            }
+            pool = runtime.service(bt.net.IPeerConnectionPool.class);
+        }
+        for (bt.net.ConnectionKey key : peers) {
+            bt.net.PeerConnection connection = pool.getConnection(key);
+            if (connection != null) {
+                connection.closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Returns the running runtime, starting it on first use. 'configKey'
+     * identifies the settings 'config' was built from; if it differs from the
+     * running runtime's and 'idle' is true (no torrent attached) the runtime is
+     * rebuilt with the new config.
+     */
+    public synchronized BtRuntime acquire(Config config, String configKey, boolean idle) {
+        if (runtime != null && idle && !configKey.equals(this.configKey)) {
+            logger.info("[OPIT-CORE] Runtime settings changed, restarting shared runtime");
+            shutdown();
+        }
+        if (runtime == null) {
+            resumeVerifier.setDelegate(new bt.data.DefaultChunkVerifier(
+                    bt.data.digest.SHA1Digester.newDigester(config.getHashingBufferSize()),
+                    config.getNumOfHashingThreads()));
+            runtime = BtRuntime.builder(config)
+                    .module(createDhtModule())
+                    .module(new bt.tracker.http.HttpTrackerModule())
+                    .module(binder -> bt.module.ServiceModule.extend(binder)
+                            .addMessagingAgent(router)
+                            .addPeerSourceFactory(announceScheduler))
+                    // Custom modules override Bt's own bindings
+                    .module(binder -> binder.bind(bt.data.ChunkVerifier.class).toInstance(resumeVerifier))
+                    .module(new DataDescriptorModule())
+                    .module(new DataWorkerModule())
+                    .module(new ConnectionModule())
+                    .module(new HandshakeModule())
+                    // Prevents the NullPointerException in LocalServiceDiscoveryPeerSourceFactory
+                    .disableLocalServiceDiscovery()
+                    // Torrents come and go; the runtime lives until shutdown()
+                    .disableAutomaticShutdown()
+                    .build();
+            this.configKey = configKey;
+            com.client.core.swarm.ConnectionBudget.global().setConnectionCounter(
+                    runtime.service(bt.net.IPeerConnectionPool.class)::size);
+            announceScheduler.attach(runtime.service(bt.tracker.ITrackerService.class),
+                    runtime.service(bt.torrent.TorrentRegistry.class));
+            logger.info("[OPIT-CORE] Shared runtime started on port {}", config.getAcceptorPort());
+            logger.info("[PEER SOURCES] DHT + PEX + shared HTTP/UDP announces enabled (LSD Disabled)");
+        }
+        return runtime;
+    }
+
+    public synchronized void shutdown() {
+        if (runtime != null) {
+            announceScheduler.detach();
+            com.client.core.swarm.ConnectionBudget.global().setConnectionCounter(null);
+            runtime.shutdown();
+            runtime = null;
+            configKey = null;
+            dataWorker = null;
+            subscribed.clear();
+        }
+    }
+
+    /**
+     * Bt's DefaultDataWorker, built as ServiceModule does, behind a
+     * DrainableDataWorker.
+     */
+    private class DataWorkerModule extends com.google.inject.AbstractModule {
+        @com.google.inject.Provides
+        @com.google.inject.Singleton
+        bt.torrent.data.DataWorker provideDataWorker(bt.service.IRuntimeLifecycleBinder lifecycleBinder,
+                bt.torrent.TorrentRegistry torrentRegistry, bt.data.ChunkVerifier verifier,
+                bt.torrent.data.BlockCache blockCache, Config config) {
+            com.client.core.storage.DrainableDataWorker worker = new com.client.core.storage.DrainableDataWorker(
+                    new bt.torrent.data.DefaultDataWorker(lifecycleBinder, torrentRegistry, verifier, blockCache,
+                            config));
+            worker.setFailureListener(router::pieceFailed);
+            dataWorker = worker;
+            return worker;
+        }
+    }
+
+    /**
+     * Bt's DataDescriptorFactory, built as ServiceModule does, wrapped by the
+     * ResumeChunkVerifier.
+     */
+    private class DataDescriptorModule extends com.google.inject.AbstractModule {
+        @com.google.inject.Provides
+        @com.google.inject.Singleton
+        bt.data.IDataDescriptorFactory provideDataDescriptorFactory(Config config,
+                bt.event.EventSource eventSource, bt.data.ChunkVerifier verifier) {
+            bt.data.DataReaderFactory dataReaderFactory = new bt.data.DataReaderFactory(eventSource);
+            return resumeVerifier.wrap(new bt.data.DataDescriptorFactory(dataReaderFactory, verifier,
+                    config.getTransferBlockSize()));
+        }
+    }
+
+    /**
+     * Bt's ConnectionSource behind a BudgetedConnectionSource. Eager like
+     * ServiceModule's binding: the source starts the incoming connection
+     * listener when the runtime starts.
+     */
+    private static class ConnectionModule extends com.google.inject.AbstractModule {
+        @Override
+        protected void configure() {
+            com.google.inject.Provider<bt.net.ConnectionSource> source = getProvider(bt.net.ConnectionSource.class);
+            com.google.inject.Provider<bt.net.IConnectionSource> budgeted =
+                    () -> new com.client.core.swarm.BudgetedConnectionSource(source.get(),
+                            com.client.core.swarm.ConnectionBudget.global());
+            bind(bt.net.IConnectionSource.class).toProvider(budgeted).asEagerSingleton();
+        }
+    }
+
+    /**
+     * Bt's connection handler factory, built as ProtocolModule does but with a
+     * SuperSeedingBitfieldHandler in place of Bt's BitfieldConnectionHandler.
+     */
+    private class HandshakeModule extends com.google.inject.AbstractModule {
+        @com.google.inject.Provides
+        @com.google.inject.Singleton
+        bt.net.IConnectionHandlerFactory provideConnectionHandlerFactory(
+                bt.protocol.IHandshakeFactory handshakeFactory, bt.torrent.TorrentRegistry torrentRegistry,
+                java.util.Set<bt.net.HandshakeHandler> boundHandshakeHandlers,
+                bt.protocol.extended.ExtendedHandshakeFactory extendedHandshakeFactory, Config config) {
+            java.util.List<bt.net.HandshakeHandler> handshakeHandlers =
+                    new java.util.ArrayList<>(boundHandshakeHandlers);
+            handshakeHandlers.add(new com.client.core.swarm.SuperSeedingBitfieldHandler(torrentRegistry,
+                    router::isSuperSeedingEnabled));
+            handshakeHandlers.add(new bt.net.extended.ExtendedProtocolHandshakeHandler(extendedHandshakeFactory));
+            return new bt.net.ConnectionHandlerFactory(handshakeFactory, torrentRegistry, handshakeHandlers,
+                    config.getPeerHandshakeTimeout());
+        }
+    }
+
+    private static DHTModule createDhtModule() {
+        return new DHTModule(new DHTConfig() {
+            @Override
+            public boolean shouldUseRouterBootstrap() {
+                return true;
+            }
+
+            @Override
+            public boolean shouldUseIPv6() {
+                return false; // Disable IPv6 as suggested to avoid network stack issues
+            }
+
+            @Override
+            public java.util.Collection<bt.net.InetPeerAddress> getBootstrapNodes() {
+                // Extended list of DHT bootstrap nodes for maximum peer discovery
+                return java.util.List.of(
+                        new bt.net.InetPeerAddress("router.bittorrent.com", 6881),
+                        new bt.net.InetPeerAddress("router.utorrent.com", 6881),
+                        new bt.net.InetPeerAddress("dht.transmissionbt.com", 6881),
+                        new bt.net.InetPeerAddress("dht.aelitis.com", 6881),
+                        new bt.net.InetPeerAddress("router.bitcomet.com", 6881),
+                        new bt.net.InetPeerAddress("dht.libtorrent.org", 25401));
+            }
+        });
+    }
+}
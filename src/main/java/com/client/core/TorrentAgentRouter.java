@@ -0,0 +1,126 @@
+package com.client.core;
+
+import bt.metainfo.TorrentId;
+import bt.protocol.Bitfield;
+import bt.protocol.Have;
+import bt.protocol.Message;
+import bt.protocol.Piece;
+import bt.protocol.Request;
+import bt.torrent.annotation.Consumes;
+import bt.torrent.annotation.Produces;
+import bt.torrent.messaging.MessageContext;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Messaging agent dispatcher for the shared runtime.
+ *
+ * Bt installs messaging agents once per runtime, not per torrent. This single
+ * agent is installed instead and forwards each message to the agents of the
+ * torrent it belongs to (SwarmAvailability, PeerPolicy, EndgameCoordinator,
+ * SuperSeeder, BandwidthShaper, TransferMeters), looked up by the
+ * connection's TorrentId.
+ * Piece verification results are routed the same way: Bt's piece-verified
+ * events (subscribed per torrent by SharedBtRuntime) and failed hash checks
+ * (reported by the DrainableDataWorker; Bt has no event for them).
+ * Handshakes ask it whether a torrent is super-seeding.
+ * Messages for torrents that are not registered (stopping, or started
+ * elsewhere) are ignored.
+ */
+public class TorrentAgentRouter {
+
+    private final Map<TorrentId, OrchestratedPieceSelector> selectors = new ConcurrentHashMap<>();
+
+    public void register(TorrentId torrentId, OrchestratedPieceSelector selector) {
+        selectors.put(torrentId, selector);
+    }
+
+    public void unregister(TorrentId torrentId, OrchestratedPieceSelector selector) {
+        selectors.remove(torrentId, selector);
+    }
+
+    @Consumes
+    public void consume(Message message, MessageContext context) {
+        OrchestratedPieceSelector selector = selectorFor(context);
+        if (selector != null) {
+            selector.getTransferMeters().consume(message, context);
+        }
+    }
+
+    @Consumes
+    public void consume(Bitfield bitfield, MessageContext context) {
+        OrchestratedPieceSelector selector = selectorFor(context);
+        if (selector != null) {
+            selector.getSwarmAvailability().consume(bitfield, context);
+        }
+    }
+
+    @Consumes
+    public void consume(Have have, MessageContext context) {
+        OrchestratedPieceSelector selector = selectorFor(context);
+        if (selector != null) {
+            selector.getSwarmAvailability().consume(have, context);
+        }
+    }
+
+    @Consumes
+    public void consume(Piece piece, MessageContext context) {
+        OrchestratedPieceSelector selector = selectorFor(context);
+        if (selector != null) {
+            selector.blockReceived(piece.getPieceIndex());
+            selector.getEndgameCoordinator().consume(piece, context);
+            selector.getBandwidthShaper().consume(piece, context);
+        }
+    }
+
+    @Consumes
+    public void consume(Request request, MessageContext context) {
+        OrchestratedPieceSelector selector = selectorFor(context);
+        if (selector != null) {
+            selector.getSuperSeeder().consume(request, context);
+            selector.getBandwidthShaper().consume(request, context);
+        }
+    }
+
+    @Produces
+    public void produce(Consumer<Message> messageConsumer, MessageContext context) {
+        OrchestratedPieceSelector selector = selectorFor(context);
+        if (selector != null) {
+            selector.getPeerPolicy().produce(messageConsumer, context);
+            selector.getEndgameCoordinator().produce(messageConsumer, context);
+            selector.getSuperSeeder().produce(messageConsumer, context);
+            // Last, so a limiter choke is not overridden by the brain's
+            selector.getBandwidthShaper().produce(messageConsumer, context);
+        }
+    }
+
+    public void pieceVerified(TorrentId torrentId, int pieceIndex) {
+        OrchestratedPieceSelector selector = selectors.get(torrentId);
+        if (selector != null) {
+            selector.pieceVerified(pieceIndex);
+        }
+    }
+
+    public void pieceFailed(TorrentId torrentId, int pieceIndex) {
+        OrchestratedPieceSelector selector = selectors.get(torrentId);
+        if (selector != null) {
+            selector.pieceFailed(pieceIndex);
+        }
+    }
+
+    /**
+     * True if 'torrentId' is registered with super-seeding enabled; its peers
+     * get no bitfield on handshake (see SuperSeedingBitfieldHandler).
+     */
+    public boolean isSuperSeedingEnabled(TorrentId torrentId) {
+        OrchestratedPieceSelector selector = selectors.get(torrentId);
+        return selector != null && selector.getSuperSeeder().isEnabled();
+    }
+
+    private OrchestratedPieceSelector selectorFor(MessageContext context) {
+        TorrentId torrentId = context.getTorrentId();
+        return torrentId != null ? selectors.get(torrentId) : null;
+    }
+}
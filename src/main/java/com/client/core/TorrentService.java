@@ -1,12 +1,9 @@
 package com.client.core;
 
 import bt.Bt;
-import bt.dht.DHTConfig;
-import bt.dht.DHTModule;
 import bt.runtime.BtClient;
 import bt.runtime.Config;
 import bt.data.file.FileSystemStorage;
-import com.google.inject.Module;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.concurrent.ConcurrentHashMap;
@@ -25,11 +22,55 @@ public class TorrentService {
 
     private static final Logger logger = LoggerFactory.getLogger(TorrentService.class);
 
+    private static final int DEFAULT_SNAPSHOT_SECONDS = 10;
+    private static final int DEFAULT_SHUTDOWN_SECONDS = 30;
+
     private final Map<String, BtClient> activeClients = new ConcurrentHashMap<>();
-    private final Map<String, TorrentStatus> latestStatus = new ConcurrentHashMap<>();
+    // Preallocated per-torrent status slots; subscribers get deltas pushed
+    private final com.client.core.status.StatusBus statusBus = new com.client.core.status.StatusBus();
     private final Map<String, String> torrentNames = new ConcurrentHashMap<>();
     private final Map<String, String> lastErrors = new ConcurrentHashMap<>();
     private final Map<String, OrchestratedPieceSelector> orchestratedSelectors = new ConcurrentHashMap<>();
+    private final Map<String, bt.metainfo.TorrentId> torrentIds = new ConcurrentHashMap<>();
+    // Running torrents seen incomplete; finishing one announces 'completed'
+    private final java.util.Set<String> downloading = ConcurrentHashMap.newKeySet();
+    // Storage of each running client; flushed when it stops
+    private final Map<String, com.client.core.storage.ZeroCopyStorage> storages = new ConcurrentHashMap<>();
+
+    // Everything added is queued; the queue decides what actually runs
+    private final com.client.core.queue.QueueManager queue = new com.client.core.queue.QueueManager();
+    private final Map<String, String> magnetSources = new ConcurrentHashMap<>();
+    private final Map<String, File> fileSources = new ConcurrentHashMap<>();
+    private final java.util.concurrent.locks.ReentrantLock queueLock = new java.util.concurrent.locks.ReentrantLock();
+    private volatile boolean stopping;
+    // Infohash -> id of every torrent added whose infohash is known; imports skip these
+    private final Map<bt.metainfo.TorrentId, String> knownIds = new ConcurrentHashMap<>();
+    private final java.util.concurrent.ScheduledExecutorService queueTicker = java.util.concurrent.Executors
+            .newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "torrent-queue");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Fetched info dictionaries by infohash; magnets restart without a metadata fetch
+    private final com.client.core.metainfo.MetainfoCache metainfoCache = new com.client.core.metainfo.MetainfoCache(
+            com.client.config.SettingsManager.getInstance().getConfigDir().resolve("metainfo"));
+
+    // Torrents, their sources and piece state across restarts (session.dat)
+    private final com.client.core.session.SessionStore sessionStore = new com.client.core.session.SessionStore(
+            com.client.config.SettingsManager.getInstance().getConfigDir().resolve("session.dat"));
+
+    // One DHT node, acceptor and set of executors for all torrents
+    private final SharedBtRuntime sharedRuntime = new SharedBtRuntime();
+
+    // Latest connection limit / pipeline depth (requests in flight per peer)
+    // asked for by a brain; Bt fixes both per torrent, so they are used as
+    // defaults for the next start
+    private volatile int brainMaxConnections = com.client.core.brain.SwarmDecision.UNSET;
+    private volatile int brainPipelineDepth = com.client.core.brain.SwarmDecision.UNSET;
+    // Block requests in flight per peer (0 = Bt's default); the shared runtime's
+    // Config reads it each time Bt initializes a torrent
+    private volatile int outstandingRequests;
 
     private org.bitlet.weupnp.GatewayDevice gateway;
     private int mappedPort = 0;
@@ -41,10 +82,32 @@ public class TorrentService {
 
         // Initialize UPnP for NAT traversal
         initializeUpnp();
+
+        // Torrents of the previous run come back first, in queue order
+        queueTicker.execute(() -> {
+            try {
+                restoreSession();
+            } catch (Exception e) {
+                logger.error("[SESSION] Restore failed: ", e);
+            }
+        });
+        int snapshotSeconds = Math.max(1, intSetting(com.client.config.SettingsManager.getInstance(),
+                "session.snapshot_seconds", DEFAULT_SNAPSHOT_SECONDS));
+        queueTicker.scheduleWithFixedDelay(this::snapshotSession, snapshotSeconds, snapshotSeconds,
+                java.util.concurrent.TimeUnit.SECONDS);
+
+        // Slots, priorities and stall rotation (queue.* settings)
+        queueTicker.scheduleWithFixedDelay(() -> {
+            try {
+                runQueue();
+            } catch (Exception e) {
+                logger.error("[QUEUE] Scheduling failed: ", e);
+            }
+        }, 1, 1, java.util.concurrent.TimeUnit.SECONDS);
     }
 
     private void initializeUpnp() {
-        new Thread(() -> {
+        Thread.ofVirtual().name("UPnP-Init").start(() -> {
             try {
                 logger.info("[UPnP] Searching for UPnP gateway...");
                 org.bitlet.weupnp.GatewayDiscover discover = new org.bitlet.weupnp.GatewayDiscover();
@@ -79,11 +142,25 @@ public class TorrentService {
             } catch (Exception e) {
                 logger.error("[UPnP] Error: ", e);
             }
-        }, "UPnP-Init").start();
+        });
     }
 
+    public com.client.core.status.StatusBus getStatusBus() {
+        return statusBus;
+    }
+
+    /**
+     * Snapshot of every torrent. Allocates per call; prefer subscribing to
+     * getStatusBus() for periodic refreshes.
+     */
     public List<TorrentStatus> getAllTorrentsStatus() {
-        return new ArrayList<>(latestStatus.values());
+        List<TorrentStatus> statuses = new ArrayList<>();
+        com.client.core.status.StatusView view = new com.client.core.status.StatusView();
+        for (com.client.core.status.StatusSlot slot : statusBus.getSlots()) {
+            slot.read(view);
+            statuses.add(TorrentStatus.from(view));
+        }
+        return statuses;
     }
 
     public String startDownload(String magnetLink) {
@@ -95,15 +172,382 @@ public class TorrentService {
     }
 
     public void stopDownload(String id) {
-        BtClient client = activeClients.remove(id);
-        if (client != null) {
-            client.stop();
-            latestStatus.remove(id);
+        queue.remove(id);
+        magnetSources.remove(id);
+        fileSources.remove(id);
+        knownIds.values().remove(id);
+        sessionStore.remove(id);
+        if (shutdownClient(id)) {
             logger.info("Stopped download: {}", id);
         }
+        statusBus.remove(id);
+        runQueue();
+    }
+
+    /**
+     * Queue priority of a torrent; also its bandwidth priority while running.
+     * Higher runs first.
+     */
+    public void setPriority(String id, int priority) {
+        queue.setPriority(id, priority);
+        sessionStore.update(id, record -> record.setPriority(priority));
+        OrchestratedPieceSelector selector = orchestratedSelectors.get(id);
+        if (selector != null && selector.getBandwidthShaper().getBandwidth() != null) {
+            selector.getBandwidthShaper().getBandwidth().setPriority(priority);
+        }
+        runQueue();
+    }
+
+    /**
+     * Parses 'torrentFiles' in parallel and queues every torrent not already
+     * added. Returns the ids of the queued torrents; unreadable files and
+     * duplicates are logged and skipped. Blocks until parsing is done.
+     */
+    public List<String> importTorrents(List<File> torrentFiles) {
+        List<java.nio.file.Path> paths = new ArrayList<>(torrentFiles.size());
+        for (File file : torrentFiles) {
+            paths.add(file.toPath());
+        }
+        int parallelism = intSetting(com.client.config.SettingsManager.getInstance(), "import.threads",
+                com.client.core.metainfo.BulkImporter.defaultParallelism());
+        List<String> ids = new ArrayList<>();
+        int failed = 0;
+        int duplicates = 0;
+        for (com.client.core.metainfo.BulkImporter.Result result : com.client.core.metainfo.BulkImporter
+                .parse(paths, parallelism)) {
+            com.client.core.metainfo.TorrentMetainfo metainfo = result.getMetainfo();
+            if (metainfo == null) {
+                failed++;
+                logger.warn("[METAINFO] Skipping {}: {}", result.getFile(), result.getError());
+                continue;
+            }
+            String id = UUID.randomUUID().toString();
+            if (knownIds.putIfAbsent(metainfo.getTorrentId(), id) != null) {
+                duplicates++;
+                continue;
+            }
+            enqueue(id, null, result.getFile().toFile(), metainfo.getName(), 0, false);
+            recordSession(id, null, result.getFile().toFile(), metainfo.getName(), metainfo.getTorrentId());
+            ids.add(id);
+        }
+        logger.info("[METAINFO] Imported {} torrents ({} duplicates, {} unreadable)", ids.size(), duplicates,
+                failed);
+        runQueue();
+        return ids;
     }
 
     private String startDownloadGeneric(String magnetLink, File torrentFile) {
+        final String id = UUID.randomUUID().toString();
+        enqueue(id, magnetLink, torrentFile, "Queued", 0, false);
+        recordSession(id, magnetLink, torrentFile, "", null);
+        runQueue();
+        return id;
+    }
+
+    private void enqueue(String id, String magnetLink, File torrentFile, String name, int priority,
+            boolean complete) {
+        if (magnetLink != null) {
+            magnetSources.put(id, magnetLink);
+        } else if (torrentFile != null) {
+            fileSources.put(id, torrentFile);
+        }
+        com.client.core.status.StatusSlot slot = statusBus.open(id);
+        slot.beginUpdate();
+        try {
+            slot.setName(name);
+            slot.setState(com.client.core.status.TorrentState.QUEUED);
+        } finally {
+            slot.endUpdate();
+        }
+        queue.add(id, priority, complete);
+    }
+
+    private void recordSession(String id, String magnetLink, File torrentFile, String name,
+            bt.metainfo.TorrentId torrentId) {
+        com.client.core.session.SessionRecord record = new com.client.core.session.SessionRecord(id);
+        record.setSource(magnetLink, torrentFile != null ? torrentFile.getAbsolutePath() : null);
+        record.setName(name);
+        record.setStorageDirectory(com.client.config.SettingsManager.getInstance()
+                .getPath(com.client.config.SettingsManager.KEY_DOWNLOAD_DIR).toAbsolutePath().toString());
+        record.setInfoHash(torrentId != null ? torrentId.getBytes() : null);
+        record.setAddedAt(System.currentTimeMillis());
+        sessionStore.put(record);
+    }
+
+    /**
+     * Re-adds the torrents of the previous run under their old ids, in queue
+     * order (priority first). .torrent sources are checked in parallel and
+     * torrents whose file is gone are dropped. Pieces verified last time are
+     * trusted on start (ResumeChunkVerifier) instead of hashed again.
+     */
+    private void restoreSession() {
+        List<com.client.core.session.SessionRecord> records = sessionStore.load();
+        if (records.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        List<java.nio.file.Path> files = new ArrayList<>();
+        for (com.client.core.session.SessionRecord record : records) {
+            if (record.getTorrentFile() != null) {
+                files.add(java.nio.file.Path.of(record.getTorrentFile()));
+            }
+        }
+        java.util.Set<String> unreadable = new java.util.HashSet<>();
+        if (!files.isEmpty()) {
+            for (com.client.core.metainfo.BulkImporter.Result result : com.client.core.metainfo.BulkImporter.parse(
+                    files, com.client.core.metainfo.BulkImporter.defaultParallelism())) {
+                if (result.getMetainfo() == null) {
+                    unreadable.add(result.getFile().toString());
+                    logger.warn("[SESSION] Dropping {}: {}", result.getFile(), result.getError());
+                }
+            }
+        }
+
+        int restored = 0;
+        for (com.client.core.session.SessionRecord record : records) {
+            String id = record.getId();
+            if ((record.getMagnetLink() == null && record.getTorrentFile() == null)
+                    || unreadable.contains(record.getTorrentFile()) || queue.contains(id)) {
+                sessionStore.remove(id);
+                continue;
+            }
+            File torrentFile = record.getTorrentFile() != null ? new File(record.getTorrentFile()) : null;
+            enqueue(id, record.getMagnetLink(), torrentFile,
+                    record.getName().isEmpty() ? "Queued" : record.getName(), record.getPriority(),
+                    record.isComplete());
+            if (record.getPiecesTotal() > 0) {
+                com.client.core.status.StatusSlot slot = statusBus.get(id);
+                slot.beginUpdate();
+                try {
+                    slot.setProgress((double) record.getPieces().cardinality() / record.getPiecesTotal());
+                } finally {
+                    slot.endUpdate();
+                }
+            }
+            if (record.getInfoHash() != null) {
+                knownIds.putIfAbsent(bt.metainfo.TorrentId.fromBytes(record.getInfoHash()), id);
+            }
+            restored++;
+        }
+        logger.info("[SESSION] Restored {} torrents in {} ms", restored, (System.nanoTime() - started) / 1_000_000);
+        runQueue();
+    }
+
+    /**
+     * Records queue positions, completion and the piece state of running
+     * torrents, then writes the session file if any of it changed.
+     */
+    private void snapshotSession() {
+        try {
+            List<String> order = queue.getOrder();
+            for (int i = 0; i < order.size(); i++) {
+                int position = i;
+                boolean complete = queue.isComplete(order.get(i));
+                sessionStore.update(order.get(i), record -> {
+                    record.setPosition(position);
+                    record.setComplete(complete);
+                });
+            }
+            for (String id : activeClients.keySet()) {
+                capturePieces(id);
+            }
+            sessionStore.snapshot();
+        } catch (Exception e) {
+            logger.warn("[SESSION] Snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    private void capturePieces(String id) {
+        bt.metainfo.TorrentId torrentId = torrentIds.get(id);
+        bt.torrent.TorrentRegistry registry = sharedRuntime.getTorrentRegistry();
+        if (torrentId == null || registry == null) {
+            return;
+        }
+        registry.getDescriptor(torrentId)
+                .map(bt.torrent.TorrentDescriptor::getDataDescriptor)
+                .map(bt.data.DataDescriptor::getBitfield)
+                .ifPresent(bitfield -> sessionStore.update(id,
+                        record -> record.setPieces(bitfield.getBitmask(), bitfield.getPiecesTotal())));
+    }
+
+    /**
+     * Hands Bt the torrent and, if the session knows which of its pieces were
+     * verified, lets the start-up check trust them.
+     */
+    private java.util.function.Supplier<bt.metainfo.Torrent> resumable(String id,
+            java.util.function.Supplier<bt.metainfo.Torrent> source) {
+        return () -> {
+            bt.metainfo.Torrent torrent = source.get();
+            int piecesTotal = (int) ((torrent.getSize() + torrent.getChunkSize() - 1) / torrent.getChunkSize());
+            java.util.BitSet pieces = sessionStore.getPieces(id, piecesTotal);
+            if (pieces != null) {
+                sharedRuntime.getResumeVerifier().expect(torrent, pieces);
+            }
+            return torrent;
+        };
+    }
+
+    /**
+     * Starts or suspends torrents as the queue decides. Called on add/remove
+     * and once per second.
+     */
+    private void runQueue() {
+        // A lock, not synchronized: callers may be virtual threads, and one
+        // blocked in a monitor would pin its carrier while the forked starts
+        // wait for one
+        queueLock.lock();
+        try {
+            if (stopping) {
+                return;
+            }
+            runQueueLocked();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private void runQueueLocked() {
+        com.client.config.SettingsManager settings = com.client.config.SettingsManager.getInstance();
+        queue.setLimits(
+                intSetting(settings, "queue.max_active_downloads",
+                        com.client.core.queue.QueueManager.DEFAULT_MAX_ACTIVE_DOWNLOADS),
+                intSetting(settings, "queue.max_active_seeds",
+                        com.client.core.queue.QueueManager.DEFAULT_MAX_ACTIVE_SEEDS),
+                intSetting(settings, "queue.stall_seconds", com.client.core.queue.QueueManager.DEFAULT_STALL_SECONDS));
+
+        com.client.core.queue.QueueManager.Plan plan = queue.schedule(System.currentTimeMillis());
+        if (plan.isEmpty()) {
+            return;
+        }
+        // Stops and starts block (client shutdown, file reads, metainfo
+        // parsing, client build); each gets its own virtual thread
+        try (com.client.core.lifecycle.TaskScope scope = new com.client.core.lifecycle.TaskScope("torrent-lifecycle")) {
+            for (String id : plan.getToSuspend()) {
+                scope.fork(() -> suspend(id));
+            }
+            scope.join();
+            for (String id : plan.getToStart()) {
+                scope.fork(() -> start(id));
+            }
+            scope.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void suspend(String id) {
+        shutdownClient(id);
+        com.client.core.status.StatusSlot slot = statusBus.get(id);
+        String name = id;
+        if (slot != null) {
+            slot.beginUpdate();
+            try {
+                name = slot.getName();
+                slot.setState(com.client.core.status.TorrentState.QUEUED);
+                slot.setTransfer(slot.getDownloadedBytes(), slot.getUploadedBytes(), 0, 0);
+                slot.setPeers(0, 0, 0);
+                slot.setEtaSeconds(com.client.core.status.StatusView.ETA_UNKNOWN);
+            } finally {
+                slot.endUpdate();
+            }
+        }
+        logger.info("[QUEUE] Suspended {} ({})", name,
+                queue.isComplete(id) ? "seed slots full" : "slot handed to a waiting torrent");
+    }
+
+    private void start(String id) {
+        try {
+            launch(id, magnetSources.get(id), fileSources.get(id));
+        } catch (RuntimeException e) {
+            logger.error("[QUEUE] Failed to start {}: {}", id, e.getMessage());
+            queue.remove(id);
+            lastErrors.put(id, String.valueOf(e.getMessage()));
+            com.client.core.status.StatusSlot slot = statusBus.open(id);
+            slot.beginUpdate();
+            try {
+                slot.setName(torrentNames.getOrDefault(id, "Error"));
+                slot.setState(com.client.core.status.TorrentState.ERROR);
+                slot.setTransfer(0, 0, 0, 0);
+                slot.setPeers(0, 0, 0);
+                slot.setEtaSeconds(com.client.core.status.StatusView.ETA_UNKNOWN);
+                slot.setLastError(String.valueOf(e.getMessage()));
+            } finally {
+                slot.endUpdate();
+            }
+        }
+    }
+
+    /**
+     * Stops a running client and releases everything attached to it; the
+     * torrent stays known (queued or removed by the caller).
+     */
+    private boolean shutdownClient(String id) {
+        BtClient client = activeClients.remove(id);
+        if (client == null) {
+            return false;
+        }
+        capturePieces(id);
+        client.stop();
+        releaseTorrent(id);
+        return true;
+    }
+
+    /**
+     * Releases storage, selector and every shared registration of a torrent
+     * (router, announces, connection budget, bandwidth node).
+     */
+    private void releaseTorrent(String id) {
+        downloading.remove(id);
+        com.client.core.storage.ZeroCopyStorage storage = storages.remove(id);
+        if (storage != null) {
+            storage.flush();
+        }
+        OrchestratedPieceSelector selector = orchestratedSelectors.remove(id);
+        bt.metainfo.TorrentId torrentId = torrentIds.remove(id);
+        if (selector != null) {
+            if (torrentId != null) {
+                sharedRuntime.getRouter().unregister(torrentId, selector);
+                sharedRuntime.getAnnounceScheduler().unregister(torrentId);
+                com.client.core.swarm.ConnectionBudget.global().unregister(torrentId);
+            }
+            releaseSelector(selector);
+        }
+    }
+
+    private static int intSetting(com.client.config.SettingsManager settings, String key, int defaultValue) {
+        String value = settings.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Builds and starts a client; if that fails part way, whatever was already
+     * registered for the torrent is released again before the error goes on.
+     */
+    private void launch(String id, String magnetLink, File torrentFile) {
+        try {
+            launchClient(id, magnetLink, torrentFile);
+        } catch (RuntimeException e) {
+            BtClient client = activeClients.remove(id);
+            if (client != null) {
+                try {
+                    client.stop();
+                } catch (RuntimeException stopError) {
+                    e.addSuppressed(stopError);
+                }
+            }
+            releaseTorrent(id);
+            throw e;
+        }
+    }
+
+    private void launchClient(String id, String magnetLink, File torrentFile) {
         // Load settings
         com.client.config.SettingsManager settings = com.client.config.SettingsManager.getInstance();
         Path targetDirectory = settings.getPath(com.client.config.SettingsManager.KEY_DOWNLOAD_DIR);
@@ -127,95 +571,96 @@ public class TorrentService {
         String maxConnStr = settings.get("optimizations.max_connections");
         int maxConnections = (!optimizationsDisabled && maxConnStr != null && !maxConnStr.isEmpty())
                 ? Integer.parseInt(maxConnStr)
-                : maxPeers;
+                : (!optimizationsDisabled && brainMaxConnections > 0) ? brainMaxConnections : maxPeers;
         if (maxConnections > maxPeers)
             maxPeers = maxConnections; // Override
 
         String pipelineStr = settings.get("optimizations.throughput_pipelining");
         int pipelineRequests = (!optimizationsDisabled && pipelineStr != null && !pipelineStr.isEmpty())
                 ? Integer.parseInt(pipelineStr)
-                : 5;
+                : (!optimizationsDisabled && brainPipelineDepth > 0) ? brainPipelineDepth : 0;
 
         boolean leecherMode = !optimizationsDisabled
                 && Boolean.parseBoolean(settings.get("optimizations.leecher_mode"));
         boolean dhtAggressive = !optimizationsDisabled
                 && Boolean.parseBoolean(settings.get("optimizations.dht_aggressive"));
 
+        String endgameStr = settings.get("optimizations.endgame_blocks");
+        int endgameBlocks = (!optimizationsDisabled && endgameStr != null && !endgameStr.isEmpty())
+                ? Integer.parseInt(endgameStr)
+                : com.client.core.swarm.EndgameCoordinator.DEFAULT_ENDGAME_BLOCKS;
+
+        boolean superSeeding = !optimizationsDisabled
+                && Boolean.parseBoolean(settings.get("optimizations.super_seeding"));
+
+        // Working-set memory cap: open (partial) pieces per torrent and process-wide
+        String openPiecesStr = settings.get("optimizations.max_open_pieces");
+        int maxOpenPieces = (openPiecesStr != null && !openPiecesStr.isEmpty())
+                ? Integer.parseInt(openPiecesStr)
+                : OrchestratedPieceSelector.DEFAULT_MAX_OPEN_PIECES;
+        String globalOpenStr = settings.get("optimizations.max_open_pieces_global");
+        com.client.core.swarm.OpenPieceBudget.global().setLimit(
+                (globalOpenStr != null && !globalOpenStr.isEmpty()) ? Integer.parseInt(globalOpenStr) : 0);
+
+        // Piece checks of all torrents share one pool (hashing.threads, 0 = one per core)
+        com.client.core.integrity.HashingPool.global().setParallelism(intSetting(settings, "hashing.threads", 0));
+
         if (maxConnections > 50)
             logger.info("[OPIT-CORE] Connection Expansion: {} connections", maxConnections);
-        if (pipelineRequests > 5)
+        if (pipelineRequests > 0)
             logger.info("[OPIT-CORE] Throughput Pipelining: {} parallel requests", pipelineRequests);
         if (leecherMode)
             logger.info("[OPIT-CORE] Efficiency Mode: Upload minimized for bandwidth preservation");
         if (dhtAggressive)
             logger.info("[OPIT-CORE] DHT Fast-Query: Interval 5s");
-
-        Config config = createConfig(maxPeers, port, adaptivePeerBias, pipelineRequests);
-
-        Module dhtModule = new DHTModule(new DHTConfig() {
-            @Override
-            public boolean shouldUseRouterBootstrap() {
-                return true;
-            }
-
-            @Override
-            public boolean shouldUseIPv6() {
-                return false; // Disable IPv6 as suggested to avoid network stack issues
-            }
-
-            @Override
-            public java.util.Collection<bt.net.InetPeerAddress> getBootstrapNodes() {
-                // Extended list of DHT bootstrap nodes for maximum peer discovery
-                return java.util.List.of(
-                        new bt.net.InetPeerAddress("router.bittorrent.com", 6881),
-                        new bt.net.InetPeerAddress("router.utorrent.com", 6881),
-                        new bt.net.InetPeerAddress("dht.transmissionbt.com", 6881),
-                        new bt.net.InetPeerAddress("dht.aelitis.com", 6881),
-                        new bt.net.InetPeerAddress("router.bitcomet.com", 6881),
-                        new bt.net.InetPeerAddress("dht.libtorrent.org", 25401));
-            }
-        });
+        if (superSeeding)
+            logger.info("[OPIT-CORE] Super-Seeding: enabled once the torrent is complete");
+
+        // Connections: network.max_peers (or the override above) per torrent,
+        // shared out of connections.max_global across all torrents
+        com.client.core.swarm.ConnectionBudget connectionBudget = com.client.core.swarm.ConnectionBudget.global();
+        connectionBudget.setLimits(
+                intSetting(settings, "connections.max_global",
+                        com.client.core.swarm.ConnectionBudget.DEFAULT_GLOBAL_LIMIT),
+                intSetting(settings, "connections.max_half_open",
+                        com.client.core.swarm.ConnectionBudget.DEFAULT_HALF_OPEN_LIMIT));
+        final int peerLimit = maxPeers;
+
+        // Port and the half-open limit are runtime-wide; they take effect when
+        // the shared runtime (re)starts with no torrent running
+        int halfOpenLimit = connectionBudget.getHalfOpenLimit();
+        outstandingRequests = pipelineRequests;
+        Config config = createConfig(port, adaptivePeerBias, halfOpenLimit);
+        bt.runtime.BtRuntime runtime = sharedRuntime.acquire(config,
+                port + ":" + adaptivePeerBias + ":" + halfOpenLimit, activeClients.isEmpty());
+
+        // Strategy: optimizations.strategy = "default" | "ruby" | "ruby:path/to/brain.rb";
+        // a single torrent can override it with strategy.<infohash hex>
+        String strategySpec = optimizationsDisabled ? null : settings.get("optimizations.strategy");
 
         // Create piece selector with auto-aggressive capabilities
-        final OrchestratedPieceSelector pieceSelector = new OrchestratedPieceSelector();
-
-        // Use var to avoid importing internal Builder type
-        var builder = Bt.client()
-                .config(config)
+        final OrchestratedPieceSelector pieceSelector = new OrchestratedPieceSelector(endgameBlocks, maxOpenPieces,
+                com.client.core.swarm.OpenPieceBudget.global(),
+                com.client.core.brain.SwarmBrains.create(strategySpec));
+        pieceSelector.getSuperSeeder().setEnabled(superSeeding);
+        // Registered first so a failed launch can release it (see launch)
+        orchestratedSelectors.put(id, pieceSelector);
+
+        // Global + per-torrent rate limits (bandwidth.max_*_rate, KB/s)
+        applyRateLimits(settings);
+        pieceSelector.getBandwidthShaper().setBandwidth(
+                com.client.core.bandwidth.BandwidthLimiter.global().register());
+        pieceSelector.getBandwidthShaper().getBandwidth().setPriority(queue.getPriority(id));
+
+        // DHT, trackers and the messaging agents (through TorrentAgentRouter)
+        // belong to the shared runtime; only torrent-level parts are set here
+        com.client.core.storage.ZeroCopyStorage storage = new com.client.core.storage.ZeroCopyStorage();
+        storages.put(id, storage);
+        var builder = Bt.client(runtime)
                 .selector(pieceSelector)
-                .storage(new com.client.core.storage.ZeroCopyStorage());
+                .storage(storage);
         // .storage(new FileSystemStorage(targetDirectory));
 
-        // Add our custom DHT module
-        builder.module(dhtModule);
-
-        // Add HttpTrackerModule manually
-        builder.module(new bt.tracker.http.HttpTrackerModule());
-
-        // CORE FIX: Disable LSD Module via hidden internal flag
-        // This prevents the NullPointerException in
-        // LocalServiceDiscoveryPeerSourceFactory
-        try {
-            // 1. Get the private 'runtimeBuilder' from StandaloneClientBuilder
-            java.lang.reflect.Field runtimeBuilderField = builder.getClass().getDeclaredField("runtimeBuilder");
-            runtimeBuilderField.setAccessible(true);
-            Object runtimeBuilder = runtimeBuilderField.get(builder);
-
-            // 2. Set 'shouldDisableLocalServiceDiscovery' to true on the runtimeBuilder
-            java.lang.reflect.Field lsdField = runtimeBuilder.getClass()
-                    .getDeclaredField("shouldDisableLocalServiceDiscovery");
-            lsdField.setAccessible(true);
-            lsdField.set(runtimeBuilder, true);
-
-            logger.info("[CORE FIX] Successfully disabled LocalServiceDiscovery via internal flag.");
-
-        } catch (Exception e) {
-            logger.error("[CORE FIX] Failed to disable LSD: ", e);
-            e.printStackTrace();
-        }
-
-        logger.info("[PEER SOURCES] DHT + PEX + HTTP/UDP Trackers enabled (LSD Disabled)");
-
         // December 2025 VERIFIED Tracker List (from ngosang/trackerslist - updated
         // daily)
         String[] publicTrackers = {
@@ -241,129 +686,47 @@ public class TorrentService {
                 "http://tracker.openbittorrent.com:80/announce",
                 "http://open.acgnxtracker.com:80/announce"
         };
-        logger.info("[PEER BOOST] Adding {} public trackers", publicTrackers.length);
+
+        // Known up front so peer messages reach this torrent's agents before
+        // metadata is fetched
+        bt.metainfo.TorrentId knownTorrentId = null;
+        // Announced through the shared AnnounceScheduler; Bt gets the torrent
+        // without trackers so it does not poll them per torrent
+        List<String> trackerUrls = new ArrayList<>();
+        boolean privateTorrent = false;
 
         if (magnetLink != null) {
-            // Append public trackers to existing magnet link
-            StringBuilder magnetWithTrackers = new StringBuilder(magnetLink);
-            if (!magnetLink.contains("tr=")) {
-                // If clean magnet, allow appending
-            }
-            for (String tracker : publicTrackers) {
-                try {
-                    magnetWithTrackers.append("&tr=").append(
-                            java.net.URLEncoder.encode(tracker, java.nio.charset.StandardCharsets.UTF_8.toString()));
-                } catch (Exception e) {
-                    // ignore
+            try {
+                bt.magnet.MagnetUri magnet = bt.magnet.MagnetUriParser.lenientParser().parse(magnetLink);
+                knownTorrentId = magnet.getTorrentId();
+                trackerUrls.addAll(magnet.getTrackerUrls());
+                bt.magnet.MagnetUri.Builder trackerless = bt.magnet.MagnetUri.torrentId(knownTorrentId);
+                magnet.getDisplayName().ifPresent(trackerless::name);
+                magnet.getPeerAddresses().forEach(trackerless::peer);
+                bt.metainfo.Torrent cached = metainfoCache.get(knownTorrentId);
+                if (cached != null) {
+                    logger.info("[METAINFO] Starting {} from cached metadata", cached.getName());
+                    privateTorrent = cached.isPrivate();
+                    builder.torrent(resumable(id, () -> cached));
+                } else {
+                    builder.magnet(trackerless.buildUri());
                 }
+            } catch (Exception e) {
+                // Left to Bt as is (it announces to the magnet's trackers itself)
+                builder.magnet(magnetLink);
             }
-            builder.magnet(magnetWithTrackers.toString());
 
         } else if (torrentFile != null) {
             try {
-                // STRATEGY CHANGE: To force our public trackers, we must use a Magnet link even
-                // for files.
-                // 1. Parse metadata to get Hash and Name
-                byte[] torrentBytes = java.nio.file.Files.readAllBytes(torrentFile.toPath());
-                bt.metainfo.MetadataService metadataService = new bt.metainfo.MetadataService();
-                bt.metainfo.Torrent torrent = metadataService.fromByteArray(torrentBytes);
-
-                String infoHash = torrent.getTorrentId().toString().toUpperCase();
-                String name = torrent.getName();
-
-                // 2. Construct Magnet
-                StringBuilder magnetBuilder = new StringBuilder();
-                magnetBuilder.append("magnet:?xt=urn:btih:").append(infoHash);
-                if (name != null) {
-                    magnetBuilder.append("&dn=").append(
-                            java.net.URLEncoder.encode(name, java.nio.charset.StandardCharsets.UTF_8.toString()));
-                }
-
-                // 3. Add original trackers from file
-                // Try to get primary announce URL
-                try {
-                    // Start Reflection Block
-                    // 1. Try getAnnounce() (Single tracker)
-                    try {
-                        java.lang.reflect.Method m = torrent.getClass().getMethod("getAnnounce");
-                        Object res = m.invoke(torrent);
-                        if (res instanceof String) {
-                            magnetBuilder.append("&tr=").append(java.net.URLEncoder.encode((String) res, "UTF-8"));
-                        } else if (res instanceof java.util.Optional) {
-                            java.util.Optional<?> opt = (java.util.Optional<?>) res;
-                            if (opt.isPresent() && opt.get() instanceof String) {
-                                magnetBuilder.append("&tr=")
-                                        .append(java.net.URLEncoder.encode((String) opt.get(), "UTF-8"));
-                            }
-                        }
-                    } catch (Exception e) {
-                    }
-
-                    // 2. Try getAnnounceList() or getTrackers() (Multi-tier)
-                    try {
-                        java.lang.reflect.Method mList = null;
-                        try {
-                            mList = torrent.getClass().getMethod("getAnnounceList");
-                        } catch (Exception e) {
-                        }
-                        if (mList == null)
-                            try {
-                                mList = torrent.getClass().getMethod("getTrackers");
-                            } catch (Exception e) {
-                            }
-
-                        if (mList != null) {
-                            Object res = mList.invoke(torrent);
-                            // Helper to process list
-                            java.util.List<?> list = null;
-                            if (res instanceof java.util.List)
-                                list = (java.util.List<?>) res;
-                            else if (res instanceof java.util.Optional && ((java.util.Optional<?>) res).isPresent()) {
-                                Object inner = ((java.util.Optional<?>) res).get();
-                                if (inner instanceof java.util.List)
-                                    list = (java.util.List<?>) inner;
-                            }
-
-                            if (list != null) {
-                                for (Object item : list) {
-                                    if (item instanceof java.util.List) {
-                                        for (Object sub : (java.util.List<?>) item) {
-                                            magnetBuilder.append("&tr=")
-                                                    .append(java.net.URLEncoder.encode(sub.toString(), "UTF-8"));
-                                        }
-                                    } else if (item != null) {
-                                        magnetBuilder.append("&tr=")
-                                                .append(java.net.URLEncoder.encode(item.toString(), "UTF-8"));
-                                    }
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                    }
-                    // End Reflection Block
-                } catch (Exception e) {
-                    // ignore
-                }
-
-                // Append our public list
-                for (String tracker : publicTrackers) {
-                    magnetBuilder.append("&tr=").append(
-                            java.net.URLEncoder.encode(tracker, java.nio.charset.StandardCharsets.UTF_8.toString()));
-                }
-
-                String finalMagnet = magnetBuilder.toString();
-                logger.info("[PEER BOOST] Generated Hybrid Magnet: {}", finalMagnet);
-
-                // HYBRID STRATEGY:
-                // Provide the magnet link (with all trackers) AND the file URL.
-                // We hope Bt uses the file for metadata (instant start) and the magnet for
-                // trackers.
-                builder.magnet(finalMagnet);
-                builder.torrent(torrentFile.toURI().toURL());
-
+                // One pass for the infohash and trackers; Bt gets the info dictionary only
+                com.client.core.metainfo.TorrentMetainfo metainfo = com.client.core.metainfo.TorrentMetainfo
+                        .read(torrentFile.toPath());
+                knownTorrentId = metainfo.getTorrentId();
+                privateTorrent = metainfo.isPrivate();
+                trackerUrls.addAll(metainfo.getTrackerUrls());
+                builder.torrent(resumable(id, metainfo::toTorrent));
             } catch (Exception e) {
-                System.err.println("Hybrid load failed: " + e.getMessage());
-                // Fallback to just file
+                logger.warn("Could not parse {} ({}), leaving its trackers to Bt", torrentFile, e.getMessage());
                 try {
                     builder.torrent(torrentFile.toURI().toURL());
                 } catch (java.net.MalformedURLException ex) {
@@ -372,16 +735,84 @@ public class TorrentService {
             }
         }
 
-        final String id = UUID.randomUUID().toString();
+        // Private torrents only talk to their own trackers
+        if (!privateTorrent) {
+            logger.info("[PEER BOOST] Adding {} public trackers", publicTrackers.length);
+            trackerUrls.addAll(java.util.Arrays.asList(publicTrackers));
+        }
 
+        if (knownTorrentId != null) {
+            byte[] infoHash = knownTorrentId.getBytes();
+            sessionStore.update(id, record -> record.setInfoHash(infoHash));
+            knownIds.putIfAbsent(knownTorrentId, id);
+            torrentIds.put(id, knownTorrentId);
+            sharedRuntime.register(knownTorrentId, pieceSelector);
+            sharedRuntime.getAnnounceScheduler().register(knownTorrentId, trackerUrls);
+            connectionBudget.register(knownTorrentId, peerLimit);
+        }
+
+        metainfoCache.setMaxBytes(intSetting(settings, "cache.metainfo_max_mb",
+                com.client.core.metainfo.MetainfoCache.DEFAULT_MAX_MB) * 1024L * 1024L);
         builder.afterTorrentFetched(torrent -> {
             logger.info("Metadata fetched: {}", torrent.getName());
             torrentNames.put(id, torrent.getName());
+            sessionStore.update(id, record -> {
+                record.setName(torrent.getName());
+                record.setInfoHash(torrent.getTorrentId().getBytes());
+            });
+            if (!metainfoCache.contains(torrent.getTorrentId())) {
+                try {
+                    metainfoCache.put(torrent.getTorrentId(), torrent.getSource().getExchangedMetadata());
+                } catch (RuntimeException e) {
+                    logger.debug("[METAINFO] No info dictionary to cache: {}", e.getMessage());
+                }
+            }
+            if (orchestratedSelectors.get(id) == pieceSelector
+                    && torrentIds.putIfAbsent(id, torrent.getTorrentId()) == null) {
+                sharedRuntime.register(torrent.getTorrentId(), pieceSelector);
+                connectionBudget.register(torrent.getTorrentId(), peerLimit);
+            }
+            pieceSelector.getEndgameCoordinator().onMetadata(torrent);
+            int piecesTotal = (int) ((torrent.getSize() + torrent.getChunkSize() - 1) / torrent.getChunkSize());
+            pieceSelector.getSwarmAvailability().setPiecesTotal(piecesTotal);
+            pieceSelector.getSuperSeeder().setPiecesTotal(piecesTotal);
+
+            // Swarm telemetry for offline replay (ReplayBacktester)
+            if (Boolean.parseBoolean(settings.get("optimizations.telemetry"))) {
+                String infoHash = java.util.HexFormat.of().formatHex(torrent.getTorrentId().getBytes());
+                Path file = settings.getConfigDir().resolve("telemetry")
+                        .resolve(infoHash + "-" + System.currentTimeMillis() + ".optl");
+                try {
+                    pieceSelector.setTelemetry(com.client.core.telemetry.TelemetryRecorder.open(file,
+                            torrent.getName(), piecesTotal, torrent.getChunkSize(), torrent.getSize()));
+                } catch (java.io.IOException e) {
+                    logger.warn("[OPIT-CORE] Telemetry unavailable: {}", e.getMessage());
+                }
+            }
+
+            // Per-torrent limits and priority (queue + bandwidth): bandwidth.*.<infohash hex>
+            String hex = java.util.HexFormat.of().formatHex(torrent.getTorrentId().getBytes());
+            com.client.core.bandwidth.TorrentBandwidth bandwidth = pieceSelector.getBandwidthShaper().getBandwidth();
+            String prioritySetting = settings.get("bandwidth.priority." + hex);
+            if (prioritySetting != null && !prioritySetting.isEmpty()) {
+                queue.setPriority(id, settings.getInt("bandwidth.priority." + hex));
+            }
+            if (bandwidth != null) {
+                bandwidth.setPriority(queue.getPriority(id));
+                bandwidth.setLimits(kilobytes(settings, "bandwidth.max_download_rate." + hex),
+                        kilobytes(settings, "bandwidth.max_upload_rate." + hex));
+            }
+
+            String torrentStrategy = settings.get(
+                    "strategy." + java.util.HexFormat.of().formatHex(torrent.getTorrentId().getBytes()));
+            if (!optimizationsDisabled && torrentStrategy != null && !torrentStrategy.isEmpty()) {
+                logger.info("[OPIT-CORE] Strategy override for {}: {}", torrent.getName(), torrentStrategy);
+                pieceSelector.setBrain(com.client.core.brain.SwarmBrains.create(torrentStrategy));
+            }
         });
 
         BtClient client = builder.build();
         activeClients.put(id, client);
-        orchestratedSelectors.put(id, pieceSelector); // Store for adaptive triggers
 
         // Start with listener for status updates (every 1000ms)
         // Wrapped in try-catch to allow debug of listener crashes
@@ -394,10 +825,18 @@ public class TorrentService {
             }
         }, 1000);
 
-        // Init initial status
-        latestStatus.put(id, new TorrentStatus(id, "Initializing...", 0, 0, 0, 0, 0, 0, "Initializing"));
-
-        return id;
+        // Init initial status (keeps the progress of a resumed torrent)
+        com.client.core.status.StatusSlot slot = statusBus.open(id);
+        slot.beginUpdate();
+        try {
+            slot.setName(torrentNames.getOrDefault(id, "Initializing..."));
+            slot.setState(com.client.core.status.TorrentState.INITIALIZING);
+            slot.setTransfer(0, 0, 0, 0);
+            slot.setProtocol(0, 0);
+            slot.setPeers(0, 0, 0);
+        } finally {
+            slot.endUpdate();
+        }
     }
 
     private void updateStatus(String id, bt.torrent.TorrentSessionState sessionState) {
@@ -418,17 +857,6 @@ public class TorrentService {
 
         long uploaded = sessionState.getUploaded();
 
-        TorrentStatus prev = latestStatus.get(id);
-        long prevDl = (prev != null) ? prev.getDownloadedBytes() : 0;
-        long prevUl = (prev != null) ? prev.getUploadedBytes() : 0;
-
-        long dlRate = downloaded - prevDl;
-        if (dlRate < 0)
-            dlRate = 0;
-        long ulRate = uploaded - prevUl;
-        if (ulRate < 0)
-            ulRate = 0;
-
         // int peers = sessionState.getConnectedPeers().size(); // Moved up for logging
         double progress = (sessionState.getPiecesTotal() > 0)
                 ? (double) sessionState.getPiecesComplete() / sessionState.getPiecesTotal()
@@ -436,71 +864,253 @@ public class TorrentService {
 
         // ADAPTIVE: Update selector with current stats for adaptive behavior
         OrchestratedPieceSelector selector = orchestratedSelectors.get(id);
+        // Seeds vs leechers from peer bitfields (BITFIELD + HAVE)
+        int seeds = 0;
+        int leechers = peers;
+        double distributedCopies = 0.0;
+        int minAvailability = 0;
+        long wastedBytes = 0;
         if (selector != null) {
-            selector.updatePeerCount(peers);
+            com.client.core.swarm.SwarmAvailability swarm = selector.getSwarmAvailability();
+            swarm.retainPeers(sessionState.getConnectedPeers());
+            selector.getSuperSeeder().retainPeers(sessionState.getConnectedPeers());
+            selector.getPeerPolicy().retainPeers(sessionState.getConnectedPeers());
+            selector.getBandwidthShaper().retainPeers(sessionState.getConnectedPeers());
+            applyRateLimits(com.client.config.SettingsManager.getInstance());
+            com.client.core.bandwidth.BandwidthLimiter.global().rebalance();
+            seeds = swarm.getSeeds();
+            leechers = Math.max(0, peers - seeds);
+            distributedCopies = swarm.getDistributedCopies();
+            minAvailability = swarm.getMinAvailability();
+
+            selector.updateSwarm(peers, seeds, distributedCopies, minAvailability);
             selector.updateProgress(progress * 100); // Convert to percentage
+            if (sessionState.getPiecesTotal() > 0) {
+                selector.updateRemainingPieces(sessionState.getPiecesRemaining());
+            }
+            selector.evaluate();
+
+            // Over its connection share while sockets are scarce: drop the least useful peers
+            bt.metainfo.TorrentId torrentId = torrentIds.get(id);
+            if (torrentId != null) {
+                com.client.core.swarm.ConnectionBudget.Need need = sessionState.getPiecesTotal() == 0
+                        ? com.client.core.swarm.ConnectionBudget.Need.METADATA
+                        : progress >= 1.0 ? com.client.core.swarm.ConnectionBudget.Need.SEED
+                                : com.client.core.swarm.ConnectionBudget.Need.DOWNLOAD;
+                int drop = com.client.core.swarm.ConnectionBudget.global().update(torrentId, peers, need,
+                        selector.getPeerPolicy().getInterestedPeers());
+                if (drop > 0) {
+                    sharedRuntime.closeConnections(selector.getPeerPolicy().leastUseful(drop));
+                }
+            }
+            if (selector.getMaxConnectionsHint() != com.client.core.brain.SwarmDecision.UNSET)
+                brainMaxConnections = selector.getMaxConnectionsHint();
+            if (selector.getPipelineDepthHint() != com.client.core.brain.SwarmDecision.UNSET)
+                brainPipelineDepth = selector.getPipelineDepthHint();
+            wastedBytes = selector.getEndgameCoordinator().getWastedBytes();
         }
 
-        // Name resolution
-        String name = prev != null ? prev.getName() : "Fetching metadata...";
-        if (torrentNames.containsKey(id)) {
-            name = torrentNames.get(id);
+        boolean complete = progress >= 1.0 && sessionState.getPiecesTotal() > 0;
+        queue.onStatus(id, downloaded, complete, System.currentTimeMillis());
+        if (!complete && sessionState.getPiecesTotal() > 0) {
+            downloading.add(id);
+        } else if (complete && downloading.remove(id)) {
+            bt.metainfo.TorrentId finished = torrentIds.get(id);
+            if (finished != null) {
+                sharedRuntime.getAnnounceScheduler().completed(finished);
+            }
         }
 
-        String state = (progress >= 1.0) ? "Seeding" : "Downloading";
+        com.client.core.status.TorrentState state = (progress >= 1.0)
+                ? com.client.core.status.TorrentState.SEEDING
+                : com.client.core.status.TorrentState.DOWNLOADING;
         if (sessionState.getPiecesTotal() == 0)
-            state = "Fetching metadata";
-
-        // Calculate seeds vs leechers (Bt doesn't expose this directly, estimate from
-        // peer bitfields)
-        // For now, count all connected as leechers unless downloading is complete with
-        // us seeding
-        int seeds = 0;
-        int leechers = peers;
+            state = com.client.core.status.TorrentState.FETCHING_METADATA;
 
         // Calculate total size
-        long totalSize = (long) sessionState.getPiecesTotal() * 16384L; // Approximate piece size
-
-        // Calculate ETA
-        String eta = "∞";
-        if (dlRate > 0 && progress < 1.0) {
-            long remaining = totalSize - downloaded;
-            long seconds = remaining / dlRate;
-            if (seconds < 60) {
-                eta = seconds + "s";
-            } else if (seconds < 3600) {
-                eta = (seconds / 60) + "m " + (seconds % 60) + "s";
-            } else {
-                long hours = seconds / 3600;
-                long mins = (seconds % 3600) / 60;
-                eta = hours + "h " + mins + "m";
-            }
-        } else if (progress >= 1.0) {
-            eta = "Complete";
-        }
-
-        // Get last error (stored per-torrent if any)
-        String lastError = lastErrors.getOrDefault(id, "");
-
-        TorrentStatus status = new TorrentStatus(id, name, progress, downloaded, uploaded, dlRate, ulRate, peers,
-                state, seeds, leechers, totalSize, eta, lastError);
-        latestStatus.put(id, status);
+        // Size from the metainfo; remaining bytes from the missing pieces
+        long totalSize = 0;
+        long remaining = 0;
+        if (selector != null) {
+            totalSize = selector.getEndgameCoordinator().getTotalSize();
+            remaining = Math.min(totalSize,
+                    (long) sessionState.getPiecesRemaining() * selector.getEndgameCoordinator().getPieceLength());
+        }
+
+        // A late tick from a stopped client must not resurrect its slot
+        com.client.core.status.StatusSlot slot = statusBus.get(id);
+        if (slot == null) {
+            return;
+        }
+        slot.beginUpdate();
+        try {
+            // Payload rates from the EWMA meters: short window for display,
+            // medium window for the ETA
+            long dlRate = Math.max(0, downloaded - slot.getDownloadedBytes());
+            long ulRate = Math.max(0, uploaded - slot.getUploadedBytes());
+            long etaRate = dlRate;
+            long protocolDownloaded = 0;
+            long protocolUploaded = 0;
+            if (selector != null) {
+                com.client.core.bandwidth.TransferMeters meters = selector.getTransferMeters();
+                meters.onUploaded(ulRate); // Bt only exposes the session counter for sent blocks
+                dlRate = meters.getPayloadDownload().getRate(com.client.core.bandwidth.RateMeter.SHORT);
+                ulRate = meters.getPayloadUpload().getRate(com.client.core.bandwidth.RateMeter.SHORT);
+                etaRate = meters.getPayloadDownload().getRate(com.client.core.bandwidth.RateMeter.MEDIUM);
+                protocolDownloaded = meters.getProtocolDownload().getTotal();
+                protocolUploaded = meters.getProtocolUpload().getTotal();
+            }
+
+            // Calculate ETA
+            long eta = com.client.core.status.StatusView.ETA_UNKNOWN;
+            if (progress >= 1.0) {
+                eta = 0;
+            } else if (etaRate > 0 && totalSize > 0) {
+                eta = remaining / etaRate;
+            }
+
+            // Name resolution
+            String name = torrentNames.get(id);
+            if (name == null) {
+                name = state == com.client.core.status.TorrentState.FETCHING_METADATA
+                        ? "Fetching metadata..."
+                        : slot.getName();
+            }
+
+            slot.setName(name);
+            slot.setState(state);
+            slot.setProgress(progress);
+            slot.setTransfer(downloaded, uploaded, dlRate, ulRate);
+            slot.setProtocol(protocolDownloaded, protocolUploaded);
+            slot.setPeers(peers, seeds, leechers);
+            slot.setSwarm(distributedCopies, minAvailability, wastedBytes);
+            slot.setTotalSize(totalSize);
+            slot.setEtaSeconds(eta);
+            // Get last error (stored per-torrent if any)
+            slot.setLastError(lastErrors.getOrDefault(id, ""));
+        } finally {
+            slot.endUpdate();
+        }
     }
 
+    /**
+     * Stops every torrent in parallel, lets queued block writes finish,
+     * flushes what they wrote and saves the session, all within
+     * shutdown.timeout_seconds; the session is saved even when that runs out.
+     */
     public void stop() {
-        activeClients.values().forEach(BtClient::stop);
-        activeClients.clear();
+        int timeoutSeconds = Math.max(1, intSetting(com.client.config.SettingsManager.getInstance(),
+                "shutdown.timeout_seconds", DEFAULT_SHUTDOWN_SECONDS));
+        int running = activeClients.size();
+        com.client.core.lifecycle.ShutdownCoordinator coordinator = new com.client.core.lifecycle.ShutdownCoordinator(
+                java.time.Duration.ofSeconds(timeoutSeconds));
+        coordinator
+                .step("stop queue", () -> {
+                    stopping = true;
+                    queueTicker.shutdownNow();
+                    // Let a scheduling pass in progress finish its starts and stops
+                    try {
+                        if (queueLock.tryLock(coordinator.remaining().toMillis(),
+                                java.util.concurrent.TimeUnit.MILLISECONDS)) {
+                            queueLock.unlock();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .parallel("stop torrents", activeClients.values(), BtClient::stop)
+                .step("drain writes", () -> {
+                    try {
+                        if (!sharedRuntime.awaitWritesIdle(coordinator.remaining().toMillis())) {
+                            logger.warn("[SHUTDOWN] {} block writes still pending", sharedRuntime.getPendingWrites());
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .parallel("flush storage", storages.values(), com.client.core.storage.ZeroCopyStorage::flush)
+                // Piece state is read from the runtime, so before it goes away
+                .step("save session", true, this::snapshotSession)
+                .step("announce stopped", () -> {
+                    // After the session is safe: a slow tracker only delays the exit
+                    torrentIds.values().forEach(sharedRuntime.getAnnounceScheduler()::unregister);
+                    try {
+                        if (!sharedRuntime.getAnnounceScheduler()
+                                .awaitStopped(coordinator.remaining().toMillis())) {
+                            logger.warn("[SHUTDOWN] Some trackers did not answer 'stopped'");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .step("release", true, () -> {
+                    statusBus.shutdown();
+                    activeClients.clear();
+                    storages.clear();
+                    torrentIds.forEach((id, torrentId) -> {
+                        sharedRuntime.getRouter().unregister(torrentId, orchestratedSelectors.get(id));
+                        sharedRuntime.getAnnounceScheduler().unregister(torrentId);
+                        com.client.core.swarm.ConnectionBudget.global().unregister(torrentId);
+                    });
+                    torrentIds.clear();
+                    orchestratedSelectors.values().forEach(this::releaseSelector);
+                    orchestratedSelectors.clear();
+                    sharedRuntime.shutdown();
+                });
+        logger.info("[SHUTDOWN] Stopping {} torrents (deadline {} s)", running, timeoutSeconds);
+        coordinator.run();
+    }
+
+    private void releaseSelector(OrchestratedPieceSelector selector) {
+        selector.releaseAll();
+        com.client.core.bandwidth.TorrentBandwidth bandwidth = selector.getBandwidthShaper().getBandwidth();
+        if (bandwidth != null) {
+            selector.getBandwidthShaper().setBandwidth(null);
+            bandwidth.close();
+        }
+        com.client.core.telemetry.TelemetryRecorder recorder = selector.getTelemetry();
+        if (recorder != null) {
+            selector.setTelemetry(null);
+            recorder.close();
+        }
+    }
+
+    /**
+     * Global limits from the settings; read on every tick so a saved change
+     * applies without a restart.
+     */
+    private void applyRateLimits(com.client.config.SettingsManager settings) {
+        com.client.core.bandwidth.BandwidthLimiter.global().setRates(
+                kilobytes(settings, "bandwidth.max_download_rate"),
+                kilobytes(settings, "bandwidth.max_upload_rate"));
+    }
+
+    /**
+     * A KB/s setting in bytes per second; unset, invalid or 0 means unlimited.
+     */
+    private static long kilobytes(com.client.config.SettingsManager settings, String key) {
+        String value = settings.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            return com.client.core.bandwidth.TokenBucket.UNLIMITED;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim())) * 1024;
+        } catch (NumberFormatException e) {
+            return com.client.core.bandwidth.TokenBucket.UNLIMITED;
+        }
     }
 
-    private Config createConfig(int maxPeers, int port, boolean adaptivePeerBias, int pipelineRequests) {
+    private Config createConfig(int port, boolean adaptivePeerBias, int halfOpenLimit) {
         return new Config() {
             @Override
             public int getNumOfHashingThreads() {
-                return Runtime.getRuntime().availableProcessors();
+                // Start-up checks hash on the shared HashingPool (see ResumeChunkVerifier)
+                return com.client.core.integrity.HashingPool.global().getParallelism();
             }
 
             @Override
             public Duration getTrackerQueryInterval() {
+                // Only for trackers left to Bt; the rest follow the AnnounceScheduler
                 return Duration.ofSeconds(30);
             }
 
@@ -512,7 +1122,14 @@ public class TorrentService {
 
             @Override
             public int getMaxPeerConnections() {
-                return maxPeers > 0 ? maxPeers : 50;
+                // Read by Bt on every new connection, so a changed budget applies at once
+                return com.client.core.swarm.ConnectionBudget.global().getLimit();
+            }
+
+            @Override
+            public int getMaxPeerConnectionsPerTorrent() {
+                // Per-torrent limits and shares are the ConnectionBudget's
+                return com.client.core.swarm.ConnectionBudget.global().getLimit();
             }
 
             @Override
@@ -520,9 +1137,17 @@ public class TorrentService {
                 return port > 0 ? port : 6891;
             }
 
+            @Override
+            public int getMaxOutstandingRequests() {
+                // Request pipeline per peer; read when Bt initializes a torrent
+                int depth = outstandingRequests;
+                return depth > 0 ? depth : super.getMaxOutstandingRequests();
+            }
+
             @Override
             public int getMaxPendingConnectionRequests() {
-                return pipelineRequests > 0 ? pipelineRequests : 5;
+                // Connection attempts in flight, for all torrents together
+                return halfOpenLimit;
             }
 
             @Override
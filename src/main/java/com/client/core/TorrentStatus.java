@@ -17,6 +17,9 @@ public class TorrentStatus {
     private final long totalSize; // Total bytes
     private final String eta; // Estimated time remaining
     private final String lastError;
+    private final long wastedBytes; // Duplicate endgame bytes discarded
+    private final double distributedCopies; // Swarm copies of the torrent (from bitfields)
+    private final int minAvailability; // Copies of the rarest piece
 
     public TorrentStatus(String id, String name, double progress, long downloadedBytes, long uploadedBytes,
             long downloadRate, long uploadRate, int connectedPeers, String state) {
@@ -27,6 +30,14 @@ public class TorrentStatus {
     public TorrentStatus(String id, String name, double progress, long downloadedBytes, long uploadedBytes,
             long downloadRate, long uploadRate, int connectedPeers, String state,
             int seeds, int leechers, long totalSize, String eta, String lastError) {
+        this(id, name, progress, downloadedBytes, uploadedBytes, downloadRate, uploadRate,
+                connectedPeers, state, seeds, leechers, totalSize, eta, lastError, 0, 0.0, 0);
+    }
+
+    public TorrentStatus(String id, String name, double progress, long downloadedBytes, long uploadedBytes,
+            long downloadRate, long uploadRate, int connectedPeers, String state,
+            int seeds, int leechers, long totalSize, String eta, String lastError, long wastedBytes,
+            double distributedCopies, int minAvailability) {
         this.id = id;
         this.name = name;
         this.progress = progress;
@@ -41,6 +52,38 @@ public class TorrentStatus {
         this.totalSize = totalSize;
         this.eta = eta;
         this.lastError = lastError;
+        this.wastedBytes = wastedBytes;
+        this.distributedCopies = distributedCopies;
+        this.minAvailability = minAvailability;
+    }
+
+    /**
+     * Immutable copy of a status bus view.
+     */
+    public static TorrentStatus from(com.client.core.status.StatusView view) {
+        return new TorrentStatus(view.getId(), view.getName(), view.getProgress(), view.getDownloadedBytes(),
+                view.getUploadedBytes(), view.getDownloadRate(), view.getUploadRate(), view.getConnectedPeers(),
+                view.getState().getLabel(), view.getSeeds(), view.getLeechers(), view.getTotalSize(),
+                formatEta(view.getEtaSeconds(), view.getProgress()), view.getLastError(), view.getWastedBytes(),
+                view.getDistributedCopies(), view.getMinAvailability());
+    }
+
+    /**
+     * "1h 5m", "3m 20s", "42s"; "Complete" once done, "∞" when unknown.
+     */
+    public static String formatEta(long seconds, double progress) {
+        if (progress >= 1.0) {
+            return "Complete";
+        }
+        if (seconds < 0) {
+            return "∞";
+        }
+        if (seconds < 60) {
+            return seconds + "s";
+        } else if (seconds < 3600) {
+            return (seconds / 60) + "m " + (seconds % 60) + "s";
+        }
+        return (seconds / 3600) + "h " + ((seconds % 3600) / 60) + "m";
     }
 
     public String getId() {
@@ -99,4 +142,16 @@ public class TorrentStatus {
     public String getLastError() {
         return lastError;
     }
+
+    public long getWastedBytes() {
+        return wastedBytes;
+    }
+
+    public double getDistributedCopies() {
+        return distributedCopies;
+    }
+
+    public int getMinAvailability() {
+        return minAvailability;
+    }
 }
@@ -0,0 +1,191 @@
+package com.client.core.bandwidth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical Bandwidth Limiter
+ *
+ * Features:
+ * 1. Global buckets - process-wide download and upload limits
+ * (bandwidth.max_download_rate / max_upload_rate), adjustable at runtime; the
+ * download limit is approximate (see BandwidthShaper)
+ * 2. Torrent buckets - every torrent is charged against its own bucket and the
+ * global one, see TorrentBandwidth
+ * 3. Priority allocation - when the global limit is saturated the rate goes
+ * to the highest-priority torrents first; torrents of equal priority share by
+ * max-min fairness over their measured demand, leftovers go back to the top
+ * priority
+ *
+ * The I/O path only touches lock-free buckets. Allocation runs on the status
+ * tick (rebalance), at most once per REBALANCE_INTERVAL_MS.
+ */
+public class BandwidthLimiter {
+
+    private static final BandwidthLimiter GLOBAL = new BandwidthLimiter(System::currentTimeMillis);
+
+    static final long REBALANCE_INTERVAL_MS = 1000;
+    static final long MIN_SHARE = 4 * 1024; // Keeps low-priority torrents' connections alive
+    private static final double DEMAND_GROWTH = 1.5; // Lets a throttled torrent probe for more
+
+    private final TokenBucket downloadBucket = new TokenBucket(TokenBucket.UNLIMITED);
+    private final TokenBucket uploadBucket = new TokenBucket(TokenBucket.UNLIMITED);
+    private final List<TorrentBandwidth> torrents = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastRebalance = new AtomicLong();
+    private final LongSupplier clock;
+
+    BandwidthLimiter(LongSupplier clock) {
+        this.clock = clock;
+        this.lastRebalance.set(clock.getAsLong());
+    }
+
+    public static BandwidthLimiter global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Global limits in bytes per second (TokenBucket.UNLIMITED for none).
+     */
+    public void setRates(long downloadRate, long uploadRate) {
+        if (downloadBucket.getRate() != downloadRate || uploadBucket.getRate() != uploadRate) {
+            downloadBucket.setRate(downloadRate);
+            uploadBucket.setRate(uploadRate);
+            rebalanceNow();
+        }
+    }
+
+    public TorrentBandwidth register() {
+        TorrentBandwidth torrent = new TorrentBandwidth(this);
+        torrents.add(torrent);
+        rebalanceNow();
+        return torrent;
+    }
+
+    void unregister(TorrentBandwidth torrent) {
+        if (torrents.remove(torrent)) {
+            rebalanceNow();
+        }
+    }
+
+    public TokenBucket getDownloadBucket() {
+        return downloadBucket;
+    }
+
+    public TokenBucket getUploadBucket() {
+        return uploadBucket;
+    }
+
+    /**
+     * Recomputes the torrent shares if the interval has passed. Cheap to call
+     * from every torrent's status tick.
+     */
+    public void rebalance() {
+        long now = clock.getAsLong();
+        long last = lastRebalance.get();
+        if (now - last < REBALANCE_INTERVAL_MS || !lastRebalance.compareAndSet(last, now)) {
+            return;
+        }
+        allocate(Math.max(1, now - last) / 1000.0);
+    }
+
+    /**
+     * Recomputes the shares immediately (limits or torrents changed).
+     */
+    void rebalanceNow() {
+        long now = clock.getAsLong();
+        long last = lastRebalance.getAndSet(now);
+        allocate(Math.max(1, now - last) / 1000.0);
+    }
+
+    private synchronized void allocate(double seconds) {
+        List<TorrentBandwidth> snapshot = new ArrayList<>(torrents);
+        for (TorrentBandwidth torrent : snapshot) {
+            long downloaded = torrent.getDownloaded();
+            long uploaded = torrent.getUploaded();
+            torrent.downloadDemand = demand(downloaded - torrent.lastDownloaded, seconds,
+                    torrent.getDownloadLimit());
+            torrent.uploadDemand = demand(uploaded - torrent.lastUploaded, seconds, torrent.getUploadLimit());
+            torrent.lastDownloaded = downloaded;
+            torrent.lastUploaded = uploaded;
+        }
+        // Highest priority first
+        snapshot.sort((a, b) -> Integer.compare(b.getPriority(), a.getPriority()));
+        allocate(snapshot, true, downloadBucket.getRate());
+        allocate(snapshot, false, uploadBucket.getRate());
+    }
+
+    private static void allocate(List<TorrentBandwidth> torrents, boolean download, long globalRate) {
+        int n = torrents.size();
+        if (globalRate <= TokenBucket.UNLIMITED) {
+            for (TorrentBandwidth torrent : torrents) {
+                bucket(torrent, download).setRate(limit(torrent, download));
+            }
+            return;
+        }
+
+        long[] shares = new long[n];
+        long remaining = globalRate;
+        int topEnd = 0;
+        for (int start = 0; start < n;) {
+            int end = start;
+            while (end < n && torrents.get(end).getPriority() == torrents.get(start).getPriority()) {
+                end++;
+            }
+            if (start == 0) {
+                topEnd = end;
+            }
+            // Max-min fair share within the priority group: smallest demand first
+            List<Integer> group = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                group.add(i);
+            }
+            group.sort((a, b) -> Long.compare(demand(torrents.get(a), download),
+                    demand(torrents.get(b), download)));
+            for (int g = 0; g < group.size(); g++) {
+                int i = group.get(g);
+                long fair = remaining / (group.size() - g);
+                shares[i] = Math.min(demand(torrents.get(i), download), fair);
+                remaining -= shares[i];
+            }
+            start = end;
+        }
+
+        // Unused rate goes to the top priority, up to their own limits
+        int open = 0;
+        for (int i = 0; i < topEnd; i++) {
+            if (limit(torrents.get(i), download) <= TokenBucket.UNLIMITED) {
+                open++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            TorrentBandwidth torrent = torrents.get(i);
+            long limit = limit(torrent, download);
+            long share = shares[i];
+            if (i < topEnd && open > 0 && limit <= TokenBucket.UNLIMITED) {
+                share += remaining / open;
+            }
+            long floor = limit > TokenBucket.UNLIMITED ? Math.min(MIN_SHARE, limit) : MIN_SHARE;
+            bucket(torrent, download).setRate(Math.max(floor, share));
+        }
+    }
+
+    private static long demand(long bytes, double seconds, long limit) {
+        long demand = Math.max(MIN_SHARE, (long) (bytes / seconds * DEMAND_GROWTH));
+        return limit > TokenBucket.UNLIMITED ? Math.min(demand, limit) : demand;
+    }
+
+    private static long demand(TorrentBandwidth torrent, boolean download) {
+        return download ? torrent.downloadDemand : torrent.uploadDemand;
+    }
+
+    private static long limit(TorrentBandwidth torrent, boolean download) {
+        return download ? torrent.getDownloadLimit() : torrent.getUploadLimit();
+    }
+
+    private static TokenBucket bucket(TorrentBandwidth torrent, boolean download) {
+        return download ? torrent.downloadBucket() : torrent.uploadBucket();
+    }
+}
@@ -0,0 +1,125 @@
+package com.client.core.bandwidth;
+
+import bt.net.ConnectionKey;
+import bt.protocol.Cancel;
+import bt.protocol.Message;
+import bt.protocol.Piece;
+import bt.protocol.Request;
+import bt.torrent.annotation.Consumes;
+import bt.torrent.annotation.Produces;
+import bt.torrent.messaging.MessageContext;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Per-Torrent Bandwidth Shaping
+ *
+ * Installed as a Bt messaging agent for a single torrent.
+ *
+ * Features:
+ * 1. Download accounting - received blocks are charged to the torrent's
+ * TorrentBandwidth; the piece selector stops opening new pieces while it is in
+ * debt and holds open pieces to a few seconds of the rate. Bt's own block
+ * requests are not throttled, so the download limit is approximate and
+ * piece-granular: blocks of pieces already open still arrive at full speed,
+ * and the rate settles at the limit over several seconds
+ * 2. Upload gating - a peer's request is only served if the torrent and global
+ * upload buckets cover the block; otherwise it is vetoed (Bt drops an
+ * outgoing block whose request was cancelled) and the peer is choked through
+ * Bt's choker, so it stops queueing requests that would only be dropped
+ * 3. Per-peer fair share - while several peers compete, a peer that already
+ * took its share of the window is refused (and choked) first
+ * 4. Refill - a choked peer is unchoked once the buckets have tokens again and
+ * it is within its share
+ */
+public class BandwidthShaper {
+
+    private final Map<ConnectionKey, PeerShare> peers = new ConcurrentHashMap<>();
+    private volatile TorrentBandwidth bandwidth;
+    private volatile int activeUploaders; // Peers that requested blocks in the last window
+
+    public void setBandwidth(TorrentBandwidth bandwidth) {
+        this.bandwidth = bandwidth;
+    }
+
+    public TorrentBandwidth getBandwidth() {
+        return bandwidth;
+    }
+
+    @Consumes
+    public void consume(Piece piece, MessageContext context) {
+        TorrentBandwidth current = bandwidth;
+        if (current != null) {
+            current.onDownloaded(piece.getLength());
+        }
+    }
+
+    @Consumes
+    public void consume(Request request, MessageContext context) {
+        TorrentBandwidth current = bandwidth;
+        if (current == null || !current.isUploadLimited()) {
+            return;
+        }
+        PeerShare share = peers.computeIfAbsent(context.getConnectionKey(), k -> new PeerShare());
+        share.requested = true;
+
+        int length = request.getLength();
+        if (!isOverShare(current, share, length) && current.tryUpload(length)) {
+            share.sent.addAndGet(length);
+            return;
+        }
+
+        // Bt drops an outgoing block whose request was cancelled
+        context.getConnectionState().onCancel(
+                new Cancel(request.getPieceIndex(), request.getOffset(), request.getLength()));
+        // Over its share or out of tokens: either way the peer's next requests
+        // would be refused too, so stop it from sending them. Asserted on every
+        // veto: the brain or Bt's choker may have unchoked the peer since
+        share.choked = true;
+        context.getConnectionState().setShouldChoke(true);
+    }
+
+    @Produces
+    public void produce(Consumer<Message> messageConsumer, MessageContext context) {
+        PeerShare share = peers.get(context.getConnectionKey());
+        TorrentBandwidth current = bandwidth;
+        if (share != null && share.choked && (current == null || !current.isUploadLimited()
+                || (current.canUpload() && !isOverShare(current, share, 0)))) {
+            share.choked = false;
+            context.getConnectionState().setShouldChoke(false);
+        }
+    }
+
+    private boolean isOverShare(TorrentBandwidth current, PeerShare share, int length) {
+        int competing = activeUploaders;
+        long fairShare = current.getUploadRate() / Math.max(1, competing);
+        return competing > 1 && share.sent.get() + length > fairShare;
+    }
+
+    /**
+     * Drops peers that are no longer connected and starts a new fair-share
+     * window (called from the status tick, once per second).
+     */
+    public void retainPeers(Set<ConnectionKey> connected) {
+        peers.keySet().retainAll(connected);
+        int active = 0;
+        for (PeerShare share : peers.values()) {
+            if (share.requested) {
+                active++;
+            }
+            share.requested = false;
+            share.sent.set(0);
+        }
+        activeUploaders = active;
+    }
+
+    private static class PeerShare {
+        final AtomicLong sent = new AtomicLong(); // Bytes granted in the current window
+        volatile boolean requested;
+        volatile boolean choked; // Choked by the limiter, not by the brain
+    }
+}
@@ -0,0 +1,115 @@
+package com.client.core.bandwidth;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free transfer rate meter with exponentially weighted moving averages.
+ *
+ * record() only adds to a striped counter. Every TICK the bytes seen since
+ * the previous tick are folded into one EWMA per window; like TokenBucket
+ * refills, the fold is lazy and claimed with a CAS on the tick timestamp, so
+ * there is no timer thread. Ticks missed while idle are folded at once as one
+ * interval of constant rate (exact for the exponential decay).
+ *
+ * The first non-zero interval primes every window, so long windows do not
+ * spend their first minute climbing up from zero.
+ */
+public class RateMeter {
+
+    public static final int[] DEFAULT_WINDOWS_SECONDS = {1, 10, 60};
+    // Indices into the default windows
+    public static final int SHORT = 0;
+    public static final int MEDIUM = 1;
+    public static final int LONG = 2;
+
+    static final long TICK_NANOS = 250_000_000L;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final LongAdder pending = new LongAdder(); // Bytes since the last fold
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong lastTick;
+    private final AtomicLongArray rates; // Double bits, bytes per second
+    private final double[] windowNanos;
+    private final LongSupplier nanoClock;
+    private volatile boolean primed;
+
+    public RateMeter() {
+        this(DEFAULT_WINDOWS_SECONDS);
+    }
+
+    public RateMeter(int... windowSeconds) {
+        this(System::nanoTime, windowSeconds);
+    }
+
+    RateMeter(LongSupplier nanoClock, int... windowSeconds) {
+        if (windowSeconds.length == 0) {
+            throw new IllegalArgumentException("At least one window is required");
+        }
+        this.nanoClock = nanoClock;
+        this.lastTick = new AtomicLong(nanoClock.getAsLong());
+        this.rates = new AtomicLongArray(windowSeconds.length);
+        this.windowNanos = new double[windowSeconds.length];
+        for (int i = 0; i < windowSeconds.length; i++) {
+            if (windowSeconds[i] <= 0) {
+                throw new IllegalArgumentException("Window must be positive: " + windowSeconds[i]);
+            }
+            windowNanos[i] = windowSeconds[i] * NANOS_PER_SECOND;
+        }
+    }
+
+    public void record(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        total.addAndGet(bytes);
+        pending.add(bytes);
+        tick();
+    }
+
+    /**
+     * Bytes recorded since creation.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Average over the given window (index into the constructor's windows)
+     * in bytes per second.
+     */
+    public long getRate(int window) {
+        tick();
+        return Math.round(Double.longBitsToDouble(rates.get(window)));
+    }
+
+    public int getWindowCount() {
+        return windowNanos.length;
+    }
+
+    private void tick() {
+        long now = nanoClock.getAsLong();
+        long last = lastTick.get();
+        long elapsed = now - last;
+        if (elapsed < TICK_NANOS) {
+            return;
+        }
+        long ticks = elapsed / TICK_NANOS;
+        long interval = ticks * TICK_NANOS;
+        if (!lastTick.compareAndSet(last, last + interval)) {
+            return; // Another caller folds this interval
+        }
+        double instant = pending.sumThenReset() / (interval / NANOS_PER_SECOND);
+        boolean prime = !primed && instant > 0;
+        for (int i = 0; i < windowNanos.length; i++) {
+            double rate = Double.longBitsToDouble(rates.get(i));
+            double next = prime ? instant : instant + (rate - instant) * Math.exp(-interval / windowNanos[i]);
+            rates.set(i, Double.doubleToRawLongBits(next));
+        }
+        if (prime) {
+            primed = true;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.client.core.bandwidth;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket measured in bytes.
+ *
+ * Refill is lazy: whichever caller notices that enough time has passed adds
+ * the tokens with a CAS on the refill timestamp, so there is no timer thread
+ * and no lock on the I/O path. The bucket holds at most one second of tokens
+ * (at least MIN_BURST). consume() may drive it negative for bytes that have
+ * already been transferred; the debt is paid back by later refills.
+ */
+public class TokenBucket {
+
+    public static final long UNLIMITED = 0;
+
+    static final long MIN_BURST = 64 * 1024;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong lastRefill;
+    private final LongSupplier nanoClock;
+    private volatile long rate; // Bytes per second, UNLIMITED if <= 0
+
+    public TokenBucket(long rate) {
+        this(rate, System::nanoTime);
+    }
+
+    TokenBucket(long rate, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.lastRefill = new AtomicLong(nanoClock.getAsLong());
+        this.rate = Math.max(UNLIMITED, rate);
+        this.tokens.set(burst(this.rate));
+    }
+
+    public void setRate(long rate) {
+        this.rate = Math.max(UNLIMITED, rate);
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    public boolean isUnlimited() {
+        return rate <= UNLIMITED;
+    }
+
+    /**
+     * True if the bucket is not in debt.
+     */
+    public boolean hasTokens() {
+        if (isUnlimited()) {
+            return true;
+        }
+        refill();
+        return tokens.get() > 0;
+    }
+
+    /**
+     * Takes 'bytes' tokens only if all of them are available.
+     */
+    public boolean tryConsume(long bytes) {
+        if (isUnlimited()) {
+            return true;
+        }
+        refill();
+        while (true) {
+            long current = tokens.get();
+            if (current < bytes) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Charges bytes that were already transferred; may go into debt.
+     */
+    public void consume(long bytes) {
+        if (isUnlimited()) {
+            return;
+        }
+        refill();
+        tokens.addAndGet(-bytes);
+    }
+
+    /**
+     * Returns tokens taken by tryConsume() when a parent bucket refused.
+     */
+    public void refund(long bytes) {
+        if (!isUnlimited()) {
+            long cap = burst(rate);
+            tokens.accumulateAndGet(bytes, (current, add) -> Math.min(cap, current + add));
+        }
+    }
+
+    public long getTokens() {
+        refill();
+        return tokens.get();
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        long last = lastRefill.get();
+        long elapsed = Math.min(now - last, NANOS_PER_SECOND); // A full bucket after one idle second
+        long current = rate;
+        long add = elapsed * current / NANOS_PER_SECOND;
+        if (add <= 0) {
+            return; // Keep accumulating time so slow rates do not lose fractions
+        }
+        if (!lastRefill.compareAndSet(last, now)) {
+            return; // Another thread refilled for this interval
+        }
+        long cap = burst(current);
+        tokens.accumulateAndGet(add, (value, delta) -> Math.min(cap, value + delta));
+    }
+
+    static long burst(long rate) {
+        return Math.max(MIN_BURST, rate);
+    }
+}
@@ -0,0 +1,151 @@
+package com.client.core.bandwidth;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One torrent's node in the limiter hierarchy.
+ *
+ * Every transfer is charged to this torrent's buckets and to the global
+ * buckets of its BandwidthLimiter; a transfer is only allowed if both have
+ * room. The torrent buckets run at the share the limiter assigns on each
+ * rebalance, capped by the torrent's own limits.
+ */
+public class TorrentBandwidth {
+
+    private final BandwidthLimiter limiter;
+    private final TokenBucket download = new TokenBucket(TokenBucket.UNLIMITED);
+    private final TokenBucket upload = new TokenBucket(TokenBucket.UNLIMITED);
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong uploaded = new AtomicLong();
+
+    private volatile int priority;
+    private volatile long downloadLimit = TokenBucket.UNLIMITED;
+    private volatile long uploadLimit = TokenBucket.UNLIMITED;
+
+    // Rebalance bookkeeping, only touched under the limiter's lock
+    long lastDownloaded;
+    long lastUploaded;
+    long downloadDemand;
+    long uploadDemand;
+
+    TorrentBandwidth(BandwidthLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Higher priorities are served first once the global limit is saturated.
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Per-torrent caps in bytes per second (TokenBucket.UNLIMITED for none).
+     */
+    public void setLimits(long downloadLimit, long uploadLimit) {
+        this.downloadLimit = Math.max(TokenBucket.UNLIMITED, downloadLimit);
+        this.uploadLimit = Math.max(TokenBucket.UNLIMITED, uploadLimit);
+        limiter.rebalanceNow();
+    }
+
+    public long getDownloadLimit() {
+        return downloadLimit;
+    }
+
+    public long getUploadLimit() {
+        return uploadLimit;
+    }
+
+    /**
+     * False while this torrent or the whole process is over its download rate.
+     */
+    public boolean canDownload() {
+        return download.hasTokens() && limiter.getDownloadBucket().hasTokens();
+    }
+
+    /**
+     * Charges received payload.
+     */
+    public void onDownloaded(long bytes) {
+        downloaded.addAndGet(bytes);
+        download.consume(bytes);
+        limiter.getDownloadBucket().consume(bytes);
+    }
+
+    /**
+     * Reserves upload for one block; false if either bucket is short.
+     */
+    public boolean tryUpload(long bytes) {
+        if (!upload.tryConsume(bytes)) {
+            return false;
+        }
+        if (!limiter.getUploadBucket().tryConsume(bytes)) {
+            upload.refund(bytes);
+            return false;
+        }
+        uploaded.addAndGet(bytes);
+        return true;
+    }
+
+    /**
+     * False while this torrent or the whole process is over its upload rate.
+     */
+    public boolean canUpload() {
+        return upload.hasTokens() && limiter.getUploadBucket().hasTokens();
+    }
+
+    /**
+     * True if uploads are currently limited at all (per torrent or globally).
+     */
+    public boolean isUploadLimited() {
+        return !upload.isUnlimited() || !limiter.getUploadBucket().isUnlimited();
+    }
+
+    /**
+     * Current effective upload rate in bytes per second (UNLIMITED for none).
+     */
+    public long getUploadRate() {
+        return effective(upload.getRate(), limiter.getUploadBucket().getRate());
+    }
+
+    /**
+     * Current effective download rate in bytes per second (UNLIMITED for none).
+     */
+    public long getDownloadRate() {
+        return effective(download.getRate(), limiter.getDownloadBucket().getRate());
+    }
+
+    /**
+     * Leaves the hierarchy (torrent stopped).
+     */
+    public void close() {
+        limiter.unregister(this);
+    }
+
+    long getDownloaded() {
+        return downloaded.get();
+    }
+
+    long getUploaded() {
+        return uploaded.get();
+    }
+
+    TokenBucket downloadBucket() {
+        return download;
+    }
+
+    TokenBucket uploadBucket() {
+        return upload;
+    }
+
+    private static long effective(long own, long global) {
+        if (own <= TokenBucket.UNLIMITED) {
+            return global;
+        }
+        return global <= TokenBucket.UNLIMITED ? own : Math.min(own, global);
+    }
+}
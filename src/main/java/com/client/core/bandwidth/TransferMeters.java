@@ -0,0 +1,111 @@
+package com.client.core.bandwidth;
+
+import bt.protocol.Bitfield;
+import bt.protocol.Cancel;
+import bt.protocol.Choke;
+import bt.protocol.Have;
+import bt.protocol.Interested;
+import bt.protocol.KeepAlive;
+import bt.protocol.Message;
+import bt.protocol.NotInterested;
+import bt.protocol.Piece;
+import bt.protocol.Request;
+import bt.protocol.Unchoke;
+import bt.torrent.annotation.Consumes;
+import bt.torrent.messaging.MessageContext;
+
+/**
+ * Per-Torrent Transfer Meters
+ *
+ * Installed as a Bt messaging agent for a single torrent.
+ *
+ * Features:
+ * 1. Payload meters - block bytes received (from Piece messages, duplicates
+ * included) and sent (from Bt's session counter on the status tick)
+ * 2. Protocol meters - wire overhead: length prefixes, message ids, Piece
+ * headers and control messages
+ * 3. EWMA windows - every meter is a RateMeter (1s, 10s, 60s by default)
+ *
+ * Inbound overhead is measured from every message the torrent receives.
+ * Bt writes outgoing messages itself, so outbound overhead is derived: one
+ * Request per block received and one Piece header per block sent. Extended
+ * messages (metadata, PEX) are counted by their header only.
+ */
+public class TransferMeters {
+
+    static final int BLOCK_SIZE = 16 * 1024;
+    private static final int PREFIX = 4; // Length prefix
+    private static final int PIECE_HEADER = PREFIX + 1 + 8; // id, index, offset
+    private static final int REQUEST_SIZE = PREFIX + 1 + 12; // id, index, offset, length
+
+    private final RateMeter payloadDownload;
+    private final RateMeter payloadUpload;
+    private final RateMeter protocolDownload;
+    private final RateMeter protocolUpload;
+
+    public TransferMeters() {
+        this(RateMeter.DEFAULT_WINDOWS_SECONDS);
+    }
+
+    public TransferMeters(int... windowSeconds) {
+        this.payloadDownload = new RateMeter(windowSeconds);
+        this.payloadUpload = new RateMeter(windowSeconds);
+        this.protocolDownload = new RateMeter(windowSeconds);
+        this.protocolUpload = new RateMeter(windowSeconds);
+    }
+
+    @Consumes
+    public void consume(Message message, MessageContext context) {
+        if (message instanceof Piece) {
+            int length = ((Piece) message).getLength();
+            payloadDownload.record(length);
+            protocolDownload.record(PIECE_HEADER);
+            protocolUpload.record(REQUEST_SIZE); // The Request that asked for it
+        } else {
+            protocolDownload.record(wireSize(message));
+        }
+    }
+
+    /**
+     * Payload sent since the previous call (Bt's uploaded counter delta).
+     */
+    public void onUploaded(long payloadBytes) {
+        if (payloadBytes <= 0) {
+            return;
+        }
+        payloadUpload.record(payloadBytes);
+        protocolUpload.record((payloadBytes + BLOCK_SIZE - 1) / BLOCK_SIZE * PIECE_HEADER);
+    }
+
+    public RateMeter getPayloadDownload() {
+        return payloadDownload;
+    }
+
+    public RateMeter getPayloadUpload() {
+        return payloadUpload;
+    }
+
+    public RateMeter getProtocolDownload() {
+        return protocolDownload;
+    }
+
+    public RateMeter getProtocolUpload() {
+        return protocolUpload;
+    }
+
+    static int wireSize(Message message) {
+        if (message instanceof KeepAlive) {
+            return PREFIX;
+        } else if (message instanceof Bitfield) {
+            return PREFIX + 1 + ((Bitfield) message).getBitfield().length;
+        } else if (message instanceof Have) {
+            return PREFIX + 1 + 4;
+        } else if (message instanceof Request || message instanceof Cancel) {
+            return REQUEST_SIZE;
+        } else if (message instanceof Choke || message instanceof Unchoke || message instanceof Interested
+                || message instanceof NotInterested) {
+            return PREFIX + 1;
+        }
+        return PREFIX + 2; // Port and extended messages, header only
+    }
+}
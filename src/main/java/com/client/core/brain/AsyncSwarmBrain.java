@@ -0,0 +1,247 @@
+package com.client.core.brain;
+
+import bt.net.Peer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a SwarmBrain off the caller's thread.
+ *
+ * Features:
+ * 1. Dedicated executor - calls return immediately; the Bt session listener
+ * never waits on strategy code
+ * 2. Coalescing - only the latest arguments of each hook are kept, so a slow
+ * strategy evaluates the newest snapshot instead of a backlog
+ * 3. Time budget - a watchdog interrupts calls that overrun and counts them
+ * as failures
+ * 4. Circuit breaker - after repeated failures the strategy is disabled for a
+ * cooldown (doubling up to a cap), then given a single trial call
+ * 5. Hung calls - a call that ignores the interrupt is abandoned: its worker
+ * thread is left to finish on its own and a fresh one takes over after the
+ * cooldown
+ *
+ * Calls for one brain are serialized, so the delegate is never entered by two
+ * threads at once - except by a fresh worker while an abandoned one is still
+ * stuck inside it.
+ */
+public class AsyncSwarmBrain implements SwarmBrain {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSwarmBrain.class);
+
+    public static final long DEFAULT_BUDGET_MS = 200;
+    private static final int FAILURE_THRESHOLD = 3; // Consecutive failures before opening
+    private static final int HUNG_FACTOR = 10; // Budgets after the interrupt before a call counts as hung
+    private static final long INITIAL_COOLDOWN_MS = 30000;
+    private static final long MAX_COOLDOWN_MS = 300000;
+
+    // Shared by all brains; daemon threads so they never block JVM exit
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "swarm-brain");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "swarm-brain-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final SwarmBrain delegate;
+    private final long budgetMs;
+
+    // Latest pending invocation per hook (coalesced)
+    private final AtomicReference<Runnable> pendingOptimize = new AtomicReference<>();
+    private final AtomicReference<Runnable> pendingHealth = new AtomicReference<>();
+    private final AtomicReference<Runnable> pendingDecide = new AtomicReference<>();
+    private final AtomicReference<Runnable> pendingReload = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    // Bumped when a hung worker is abandoned; a stale worker leaves all state alone
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // Circuit breaker
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntil = 0;
+    private volatile long cooldownMs = INITIAL_COOLDOWN_MS;
+
+    public AsyncSwarmBrain(SwarmBrain delegate) {
+        this(delegate, DEFAULT_BUDGET_MS);
+    }
+
+    public AsyncSwarmBrain(SwarmBrain delegate, long budgetMs) {
+        this.delegate = delegate;
+        this.budgetMs = budgetMs > 0 ? budgetMs : DEFAULT_BUDGET_MS;
+    }
+
+    @Override
+    public void optimize(Collection<Peer> peers, double progress, long downloadRate) {
+        submit(pendingOptimize, () -> delegate.optimize(peers, progress, downloadRate));
+    }
+
+    @Override
+    public void onSwarmHealth(int seeds, int leechers, double distributedCopies, int minAvailability) {
+        submit(pendingHealth, () -> delegate.onSwarmHealth(seeds, leechers, distributedCopies, minAvailability));
+    }
+
+    /**
+     * The decision is written on the brain executor and marked complete when
+     * the strategy returns in time; callers poll SwarmDecision.isComplete().
+     * A decision superseded by a newer one is never completed.
+     */
+    @Override
+    public void decide(SwarmSnapshot snapshot, SwarmDecision decision) {
+        submit(pendingDecide, () -> {
+            delegate.decide(snapshot, decision);
+            if (!Thread.currentThread().isInterrupted()) {
+                decision.complete();
+            }
+        });
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    @Override
+    public void reload() {
+        // A reload also closes the breaker: the strategy may have been fixed
+        openUntil = 0;
+        consecutiveFailures.set(0);
+        cooldownMs = INITIAL_COOLDOWN_MS;
+        submit(pendingReload, delegate::reload);
+    }
+
+    /**
+     * True while the circuit breaker is rejecting calls.
+     */
+    public boolean isDisabled() {
+        return System.currentTimeMillis() < openUntil;
+    }
+
+    private void submit(AtomicReference<Runnable> slot, Runnable call) {
+        if (isDisabled()) {
+            return;
+        }
+        slot.set(call);
+        if (scheduled.compareAndSet(false, true)) {
+            EXECUTOR.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        int gen = generation.get();
+        try {
+            // Reload first so the hooks run against the newest strategy; compiling
+            // is not a strategy call and is not held to the budget
+            Runnable reload = pendingReload.getAndSet(null);
+            if (reload != null) {
+                try {
+                    reload.run();
+                } catch (Exception e) {
+                    logger.warn("[SWARM-BRAIN] Strategy reload failed: {}", e.toString());
+                }
+            }
+            run(pendingHealth.getAndSet(null), gen);
+            run(pendingOptimize.getAndSet(null), gen);
+            run(pendingDecide.getAndSet(null), gen);
+        } finally {
+            // An abandoned worker leaves 'scheduled' to the fresh one
+            if (generation.get() == gen) {
+                scheduled.set(false);
+                // Something may have arrived after we emptied the slots
+                if ((pendingReload.get() != null || pendingHealth.get() != null || pendingOptimize.get() != null
+                        || pendingDecide.get() != null) && !isDisabled() && scheduled.compareAndSet(false, true)) {
+                    EXECUTOR.execute(this::drain);
+                }
+            }
+        }
+    }
+
+    private void run(Runnable call, int gen) {
+        if (call == null || isDisabled() || generation.get() != gen) {
+            return;
+        }
+        Thread worker = Thread.currentThread();
+        AtomicBoolean finished = new AtomicBoolean(false);
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        // Counted when the budget expires, even if the call never returns
+        var watchdog = WATCHDOG.schedule(() -> {
+            synchronized (finished) {
+                if (finished.get()) {
+                    return;
+                }
+                timedOut.set(true);
+                worker.interrupt();
+            }
+            recordFailure("exceeded " + budgetMs + " ms budget");
+            // A call that ignores the interrupt is hung: disable the strategy outright
+            WATCHDOG.schedule(() -> {
+                if (!finished.get()) {
+                    abandon(gen);
+                }
+            }, budgetMs * HUNG_FACTOR, TimeUnit.MILLISECONDS);
+        }, budgetMs, TimeUnit.MILLISECONDS);
+
+        Throwable failure = null;
+        try {
+            call.run();
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            watchdog.cancel(false);
+            synchronized (finished) {
+                finished.set(true);
+            }
+        }
+        if (generation.get() != gen) {
+            return; // Returned after being abandoned; the breaker already counted it
+        }
+        if (timedOut.get()) {
+            Thread.interrupted(); // Do not leak the watchdog's interrupt into the next call
+        } else if (failure != null) {
+            recordFailure(failure.toString());
+        } else {
+            consecutiveFailures.set(0);
+            cooldownMs = INITIAL_COOLDOWN_MS;
+        }
+    }
+
+    private synchronized void recordFailure(String reason) {
+        logger.warn("[SWARM-BRAIN] Strategy call failed: {}", reason);
+        if (consecutiveFailures.incrementAndGet() >= FAILURE_THRESHOLD) {
+            trip(consecutiveFailures.get() + " consecutive failures");
+        }
+    }
+
+    /**
+     * Gives up on a worker stuck in the delegate. Without this the stuck
+     * worker would keep 'scheduled' set forever and no call would ever be
+     * dispatched again, even after the cooldown.
+     */
+    private void abandon(int gen) {
+        if (generation.compareAndSet(gen, gen + 1)) {
+            trip("call still running after interrupt");
+            scheduled.set(false);
+        }
+    }
+
+    private synchronized void trip(String reason) {
+        openUntil = System.currentTimeMillis() + cooldownMs;
+        logger.error("[SWARM-BRAIN] Strategy disabled for {} s: {}", cooldownMs / 1000, reason);
+        // After the cooldown a single failure reopens the breaker (half-open)
+        consecutiveFailures.set(FAILURE_THRESHOLD - 1);
+        cooldownMs = Math.min(cooldownMs * 2, MAX_COOLDOWN_MS);
+        pendingOptimize.set(null);
+        pendingHealth.set(null);
+        pendingDecide.set(null);
+    }
+}
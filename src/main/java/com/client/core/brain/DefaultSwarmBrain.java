@@ -0,0 +1,72 @@
+package com.client.core.brain;
+
+import bt.net.Peer;
+
+import java.util.Collection;
+
+/**
+ * Built-in compiled strategy.
+ *
+ * Features:
+ * 1. Rare pieces - forces aggressive (pure rarest-first) mode when seeds are
+ * scarce or some piece has at most one source
+ * 2. Source priority - the fastest source gets more endgame duplicates, peers
+ * far below the average rate get none while in endgame
+ *
+ * Entering endgame is left to the EndgameCoordinator, which counts
+ * outstanding blocks; remaining pieces alone say nothing about how much is
+ * still in flight.
+ *
+ * Every hook only reads primitives and writes into the provided decision, so
+ * a round never allocates and is safe to run inline on Bt's listener thread.
+ */
+public class DefaultSwarmBrain implements SwarmBrain {
+
+    private static final int LOW_SEED_THRESHOLD = 3;
+    private static final int SLOW_PEER_DIVISOR = 8; // Below 1/8 of the mean rate counts as slow
+
+    @Override
+    public void optimize(Collection<Peer> peers, double progress, long downloadRate) {
+        // Everything needed arrives in the snapshot (decide)
+    }
+
+    @Override
+    public void decide(SwarmSnapshot snapshot, SwarmDecision decision) {
+        int peers = snapshot.getPeerCount();
+
+        if (snapshot.getSeeds() < LOW_SEED_THRESHOLD || snapshot.getMinAvailability() <= 1) {
+            decision.setAggressiveMode(true);
+        }
+
+        boolean endgame = snapshot.isEndgame();
+
+        if (peers == 0) {
+            return;
+        }
+        int fastest = 0;
+        long total = 0;
+        for (int i = 0; i < peers; i++) {
+            long rate = snapshot.getPeerDownloadRate(i);
+            total += rate;
+            if (rate > snapshot.getPeerDownloadRate(fastest)) {
+                fastest = i;
+            }
+        }
+        if (total == 0) {
+            return;
+        }
+        long slow = total / peers / SLOW_PEER_DIVISOR;
+        for (int i = 0; i < peers; i++) {
+            if (i == fastest) {
+                decision.setPriority(i, 1);
+            } else if (endgame && snapshot.getPeerDownloadRate(i) < slow) {
+                decision.setPriority(i, -1);
+            }
+        }
+    }
+
+    @Override
+    public void reload() {
+        // Compiled in, nothing to reload
+    }
+}
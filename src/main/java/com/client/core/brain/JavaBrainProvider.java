@@ -0,0 +1,22 @@
+package com.client.core.brain;
+
+/**
+ * Provider for the built-in compiled strategy ("default").
+ */
+public class JavaBrainProvider implements SwarmBrainProvider {
+
+    @Override
+    public String getName() {
+        return SwarmBrains.DEFAULT_STRATEGY;
+    }
+
+    @Override
+    public SwarmBrain create(String argument) {
+        return new DefaultSwarmBrain();
+    }
+
+    @Override
+    public boolean runsAsync() {
+        return false; // Bounded loops over the snapshot, no allocation
+    }
+}
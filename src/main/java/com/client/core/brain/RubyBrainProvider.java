@@ -0,0 +1,20 @@
+package com.client.core.brain;
+
+/**
+ * Provider for scripted strategies ("ruby" or "ruby:path/to/script.rb").
+ * JRuby is only loaded when this provider actually creates a brain.
+ */
+public class RubyBrainProvider implements SwarmBrainProvider {
+
+    public static final String DEFAULT_SCRIPT = "dist/strategies/brain.rb";
+
+    @Override
+    public String getName() {
+        return "ruby";
+    }
+
+    @Override
+    public SwarmBrain create(String argument) {
+        return new RubyBridge(argument != null && !argument.isEmpty() ? argument : DEFAULT_SCRIPT);
+    }
+}
@@ -5,78 +5,87 @@ import org.jruby.embed.ScriptingContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Collection;
 
+/**
+ * Per-torrent handle on a Ruby strategy. The JRuby runtime and the parsed
+ * script are shared process-wide (SharedRubyRuntime); this bridge only owns
+ * its own receiver, so each torrent keeps isolated state.
+ */
 public class RubyBridge implements SwarmBrain {
     private static final Logger logger = LoggerFactory.getLogger(RubyBridge.class);
+    private final SharedRubyRuntime runtime;
     private final ScriptingContainer container;
     private final String scriptPath;
-    private Object receiver;
-    private long lastModified;
+    private volatile SharedRubyRuntime.Strategy strategy;
+    private volatile Object receiver;
 
     public RubyBridge(String scriptPath) {
         this.scriptPath = scriptPath;
-        this.container = new ScriptingContainer();
-        reload();
+        this.runtime = SharedRubyRuntime.getInstance();
+        this.container = runtime.getContainer();
+        bind(runtime.strategy(scriptPath));
     }
 
     @Override
     public void optimize(Collection<Peer> peers, double progress, long downloadRate) {
+        checkReload();
+        Object receiver = this.receiver;
         if (receiver != null) {
-            checkReload();
-            try {
-                // expecting a method 'on_swarm_update(peers, progress, download_rate)' in the
-                // Ruby script
-                container.callMethod(receiver, "on_swarm_update", peers, progress, downloadRate);
-            } catch (Exception e) {
-                logger.error("[RUBY-BRAIN] Enhancement execution failed", e);
+            // expecting a method 'on_swarm_update(peers, progress, download_rate)' in the
+            // Ruby script. Errors propagate so AsyncSwarmBrain can trip its breaker
+            container.callMethod(receiver, "on_swarm_update", peers, progress, downloadRate);
+        }
+    }
+
+    @Override
+    public void onSwarmHealth(int seeds, int leechers, double distributedCopies, int minAvailability) {
+        Object receiver = this.receiver;
+        if (receiver != null) {
+            // Optional hook: older scripts only implement on_swarm_update
+            Object supported = container.callMethod(receiver, "respond_to?", "on_swarm_health");
+            if (Boolean.TRUE.equals(supported)) {
+                container.callMethod(receiver, "on_swarm_health", seeds, leechers, distributedCopies,
+                        minAvailability);
+            }
+        }
+    }
+
+    @Override
+    public void decide(SwarmSnapshot snapshot, SwarmDecision decision) {
+        Object receiver = this.receiver;
+        if (receiver != null) {
+            // Optional hook: 'decide(snapshot, decision)' writes into the decision
+            Object supported = container.callMethod(receiver, "respond_to?", "decide");
+            if (Boolean.TRUE.equals(supported)) {
+                container.callMethod(receiver, "decide", snapshot, decision);
             }
         }
     }
 
     private void checkReload() {
-        // Hot-reload check (simple timestamp based)
-        // Only check every 5 seconds or just do it here for simplicity of POC?
-        // Let's do it on every tick for now, but in real world we'd cache it.
-        File f = new File(scriptPath);
-        if (f.exists() && f.lastModified() > lastModified) {
-            logger.info("[RUBY-BRAIN] Change detected. Hot-reloading logic...");
-            reload();
+        // No filesystem access here: the shared runtime's watcher swaps in a new
+        // strategy after a change and every bridge then binds a fresh receiver
+        SharedRubyRuntime.Strategy latest = runtime.strategy(scriptPath);
+        if (latest != strategy) {
+            bind(latest);
         }
     }
 
     @Override
     public void reload() {
-        try {
-            Path path = Paths.get(scriptPath);
-            if (Files.exists(path)) {
-                // Read script to string (reliable way)
-                String scriptContent = new String(Files.readAllBytes(path));
-                container.runScriptlet(scriptContent);
-
-                // Retrieve the global variable set by the script
-                // In Ruby: $brain_instance
-                // In Java Embed: container.get("brain_instance") should work for global
-                // variable
-                this.receiver = container.get("brain_instance");
-
-                if (this.receiver == null) {
-                    logger.warn("[RUBY-BRAIN] Script loaded but 'brain_instance' global was null.");
-                } else {
-                    logger.info("[RUBY-BRAIN] Logic loaded successfully from {}", scriptPath);
-                }
-
-                this.lastModified = new File(scriptPath).lastModified();
+        bind(runtime.reload(scriptPath));
+    }
 
-            } else {
-                logger.warn("[RUBY-BRAIN] Script not found at {}", scriptPath);
-            }
+    private void bind(SharedRubyRuntime.Strategy latest) {
+        if (latest == null) {
+            return;
+        }
+        try {
+            this.receiver = runtime.newReceiver(latest);
+            this.strategy = latest;
         } catch (Exception e) {
-            logger.error("[RUBY-BRAIN] Failed to load Ruby script", e);
+            logger.error("[RUBY-BRAIN] Failed to instantiate Ruby brain", e);
         }
     }
 }
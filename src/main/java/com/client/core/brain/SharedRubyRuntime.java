@@ -0,0 +1,244 @@
+package com.client.core.brain;
+
+import org.jruby.embed.LocalContextScope;
+import org.jruby.embed.LocalVariableBehavior;
+import org.jruby.embed.ScriptingContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide JRuby runtime for all brains.
+ *
+ * One ScriptingContainer is created lazily for the whole process and each
+ * strategy script is evaluated once. The class of the script's
+ * $brain_instance is kept, and every torrent gets its own instance of it
+ * (see RubyBridge), so state stays per torrent while the runtime and the
+ * parsed script are shared.
+ *
+ * Hot reload: a single WatchService thread watches the script directories.
+ * A changed script is parsed, evaluated and validated on that thread and
+ * only then swapped in; if anything fails the last good strategy stays.
+ * Every evaluation runs inside a fresh anonymous module, so the script's
+ * classes are new constants there: a broken edit never reopens the classes
+ * live receivers are using. A script that failed to load is not read again
+ * until the watcher sees it change (or reload() is called), so callers never
+ * touch the filesystem on the hot path.
+ */
+public class SharedRubyRuntime {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedRubyRuntime.class);
+
+    private static final long DEBOUNCE_MS = 250; // Editors write a file in several steps
+
+    private static volatile SharedRubyRuntime instance;
+
+    private final ScriptingContainer container;
+    private final Object compileLock = new Object(); // Evaluation mutates runtime globals
+
+    // Latest good strategy per script (absolute path); replaced atomically
+    private final Map<Path, Strategy> strategies = new ConcurrentHashMap<>();
+    // Scripts whose last load failed and that have no good strategy yet
+    private final Set<Path> failed = ConcurrentHashMap.newKeySet();
+    private final Set<Path> watchedDirs = ConcurrentHashMap.newKeySet();
+    private WatchService watchService; // Guarded by 'this'
+
+    private SharedRubyRuntime() {
+        // CONCURRENT: one runtime, safe to call from every torrent's listener thread
+        this.container = new ScriptingContainer(LocalContextScope.CONCURRENT, LocalVariableBehavior.TRANSIENT);
+    }
+
+    public static SharedRubyRuntime getInstance() {
+        if (instance == null) {
+            synchronized (SharedRubyRuntime.class) {
+                if (instance == null) {
+                    instance = new SharedRubyRuntime();
+                    logger.info("[RUBY-BRAIN] Shared JRuby runtime started");
+                }
+            }
+        }
+        return instance;
+    }
+
+    public ScriptingContainer getContainer() {
+        return container;
+    }
+
+    /**
+     * Returns the current strategy for a script, evaluating it on first use.
+     * Returns null if the script has never loaded successfully.
+     */
+    public Strategy strategy(String scriptPath) {
+        Path path = normalize(scriptPath);
+        Strategy current = strategies.get(path);
+        if (current != null || failed.contains(path)) {
+            return current;
+        }
+        synchronized (this) {
+            current = strategies.get(path);
+            if (current == null && !failed.contains(path)) {
+                current = swap(path);
+                watch(path);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Forces the script to be evaluated again.
+     */
+    public Strategy reload(String scriptPath) {
+        return swap(normalize(scriptPath));
+    }
+
+    /**
+     * Creates a fresh receiver with its own state for one torrent.
+     */
+    public Object newReceiver(Strategy strategy) {
+        return container.callMethod(strategy.brainClass, "new");
+    }
+
+    private Strategy swap(Path path) {
+        Strategy compiled = compile(path);
+        if (compiled != null) {
+            strategies.put(path, compiled);
+            failed.remove(path);
+            return compiled;
+        }
+        Strategy current = strategies.get(path);
+        if (current != null) {
+            logger.warn("[RUBY-BRAIN] Keeping last good strategy for {}", path);
+        } else {
+            failed.add(path);
+        }
+        return current;
+    }
+
+    private Strategy compile(Path path) {
+        synchronized (compileLock) {
+            try {
+                if (!Files.exists(path)) {
+                    logger.warn("[RUBY-BRAIN] Script not found at {}", path);
+                    return null;
+                }
+                String scriptContent = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+
+                // Syntax check first, so a half-saved file never runs
+                container.parse(new StringReader(scriptContent), path.toString());
+
+                // Own namespace per evaluation: the live classes stay untouched
+                // until the new one has passed validation and is swapped in
+                container.put("$brain_source", scriptContent);
+                container.put("$brain_file", path.toString());
+                container.runScriptlet("$brain_instance = nil; "
+                        + "Module.new.module_eval($brain_source, $brain_file, 1); "
+                        + "$brain_source = nil");
+
+                // The script assigns its brain to the $brain_instance global
+                Object prototype = container.runScriptlet("$brain_instance");
+                if (prototype == null) {
+                    logger.warn("[RUBY-BRAIN] Script loaded but 'brain_instance' global was null.");
+                    return null;
+                }
+                Object valid = container.callMethod(prototype, "respond_to?", "on_swarm_update");
+                if (!Boolean.TRUE.equals(valid)) {
+                    logger.warn("[RUBY-BRAIN] 'brain_instance' does not implement on_swarm_update");
+                    return null;
+                }
+                Object brainClass = container.callMethod(prototype, "class");
+                logger.info("[RUBY-BRAIN] Logic loaded successfully from {}", path);
+                return new Strategy(brainClass);
+            } catch (Exception e) {
+                logger.error("[RUBY-BRAIN] Failed to load Ruby script", e);
+                return null;
+            }
+        }
+    }
+
+    private void watch(Path path) {
+        Path dir = path.getParent();
+        if (dir == null || !Files.isDirectory(dir) || !watchedDirs.add(dir)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watcher = new Thread(this::watchLoop, "ruby-brain-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watchedDirs.remove(dir);
+            logger.warn("[RUBY-BRAIN] Hot reload unavailable for {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        WatchService service;
+        synchronized (this) {
+            service = watchService;
+        }
+        try {
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = service.take();
+                // Coalesce the burst of events a single save produces
+                do {
+                    collect(key, changed);
+                    key = service.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                for (Path path : changed) {
+                    if (strategies.containsKey(path) || failed.contains(path)) {
+                        logger.info("[RUBY-BRAIN] Change detected. Hot-reloading logic...");
+                        swap(path);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void collect(WatchKey key, Set<Path> changed) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name) {
+                changed.add(dir.resolve(name).toAbsolutePath().normalize());
+            }
+        }
+        key.reset();
+    }
+
+    private static Path normalize(String scriptPath) {
+        return Paths.get(scriptPath).toAbsolutePath().normalize();
+    }
+
+    /**
+     * A successfully evaluated script; a reload produces a new instance.
+     */
+    public static class Strategy {
+        private final Object brainClass;
+
+        Strategy(Object brainClass) {
+            this.brainClass = brainClass;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package com.client.core.brain;
 import bt.net.Peer;
 import java.util.Collection;
 
+/**
+ * Pluggable swarm strategy. Implementations may be slow or throw; engine
+ * threads call them through AsyncSwarmBrain.
+ */
 public interface SwarmBrain {
     /**
      * Optimizes the swarm strategy based on current metrics.
@@ -13,6 +17,36 @@ public interface SwarmBrain {
      */
     void optimize(Collection<Peer> peers, double progress, long downloadRate);
 
+    /**
+     * Reports swarm composition derived from peer bitfields.
+     *
+     * @param seeds             Connected peers that have every piece.
+     * @param leechers          Connected peers that are still downloading.
+     * @param distributedCopies Minimum availability plus the fraction of pieces
+     *                          above it.
+     * @param minAvailability   Copies of the rarest piece among connected peers.
+     */
+    default void onSwarmHealth(int seeds, int leechers, double distributedCopies, int minAvailability) {
+    }
+
+    /**
+     * Decides what to change for the next round. Write only the fields that
+     * should change; everything left unset keeps its current value.
+     *
+     * @param snapshot Immutable swarm state for this round.
+     * @param decision Sink sized for the snapshot's peers.
+     */
+    default void decide(SwarmSnapshot snapshot, SwarmDecision decision) {
+    }
+
+    /**
+     * True if decide() returns before the decision is written (the caller then
+     * waits for SwarmDecision.isComplete()).
+     */
+    default boolean isAsync() {
+        return false;
+    }
+
     /**
      * Reloads the logic from the source file.
      */
@@ -0,0 +1,31 @@
+package com.client.core.brain;
+
+/**
+ * Factory for a SwarmBrain implementation, discovered with ServiceLoader
+ * (META-INF/services/com.client.core.brain.SwarmBrainProvider).
+ *
+ * A strategy is selected in settings as "name" or "name:argument", e.g.
+ * "default" or "ruby:dist/strategies/brain.rb".
+ */
+public interface SwarmBrainProvider {
+
+    /**
+     * Name used in settings.
+     */
+    String getName();
+
+    /**
+     * Creates a brain for one torrent.
+     *
+     * @param argument Text after the colon in the setting, or null.
+     */
+    SwarmBrain create(String argument);
+
+    /**
+     * Whether calls must be moved off Bt's threads (AsyncSwarmBrain). Compiled
+     * strategies that are known to be fast can run inline.
+     */
+    default boolean runsAsync() {
+        return true;
+    }
+}
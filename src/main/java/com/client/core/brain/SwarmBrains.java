@@ -0,0 +1,76 @@
+package com.client.core.brain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Strategy registry. Providers are discovered once with ServiceLoader; a
+ * strategy spec is "name" or "name:argument". Unknown or failing strategies
+ * fall back to the built-in default, so a missing JRuby never stops a
+ * torrent.
+ */
+public final class SwarmBrains {
+
+    private static final Logger logger = LoggerFactory.getLogger(SwarmBrains.class);
+
+    public static final String DEFAULT_STRATEGY = "default";
+
+    private static final Map<String, SwarmBrainProvider> PROVIDERS = new HashMap<>();
+
+    static {
+        for (SwarmBrainProvider provider : ServiceLoader.load(SwarmBrainProvider.class)) {
+            PROVIDERS.putIfAbsent(provider.getName(), provider);
+        }
+        PROVIDERS.putIfAbsent(DEFAULT_STRATEGY, new JavaBrainProvider());
+    }
+
+    private SwarmBrains() {
+    }
+
+    /**
+     * Creates the brain for a strategy spec, wrapped in AsyncSwarmBrain if the
+     * provider asks for it.
+     */
+    public static SwarmBrain create(String spec) {
+        return create(spec, false);
+    }
+
+    /**
+     * Creates the brain without the async wrapper, for offline tools that need
+     * every decision before the next step (simulation, telemetry replay).
+     */
+    public static SwarmBrain createInline(String spec) {
+        return create(spec, true);
+    }
+
+    private static SwarmBrain create(String spec, boolean inline) {
+        String name = DEFAULT_STRATEGY;
+        String argument = null;
+        if (spec != null && !spec.trim().isEmpty()) {
+            String trimmed = spec.trim();
+            int colon = trimmed.indexOf(':');
+            name = colon >= 0 ? trimmed.substring(0, colon) : trimmed;
+            argument = colon >= 0 ? trimmed.substring(colon + 1) : null;
+        }
+
+        SwarmBrainProvider provider = PROVIDERS.get(name);
+        if (provider == null) {
+            logger.warn("[SWARM-BRAIN] Unknown strategy '{}', using '{}'", name, DEFAULT_STRATEGY);
+            provider = PROVIDERS.get(DEFAULT_STRATEGY);
+            argument = null;
+        }
+        try {
+            SwarmBrain brain = provider.create(argument);
+            return provider.runsAsync() && !inline ? new AsyncSwarmBrain(brain) : brain;
+        } catch (RuntimeException | LinkageError e) {
+            // e.g. JRuby not on the classpath
+            logger.error("[SWARM-BRAIN] Strategy '{}' unavailable ({}), using '{}'", name, e.toString(),
+                    DEFAULT_STRATEGY);
+            return PROVIDERS.get(DEFAULT_STRATEGY).create(null);
+        }
+    }
+}
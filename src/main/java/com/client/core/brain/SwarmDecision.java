@@ -0,0 +1,120 @@
+package com.client.core.brain;
+
+/**
+ * What a strategy wants changed, written by SwarmBrain.decide.
+ *
+ * Everything starts unset and only the fields a strategy touches are applied.
+ * Per-peer indices are the indices of the SwarmSnapshot the decision was made
+ * for. Torrent-wide settings:
+ * 1. Aggressive mode - rarest-first without random tie-breaking
+ * 2. Endgame entry - start duplicating in-flight blocks now
+ * 3. Connection limit and pipeline depth - the pipeline depth is the number
+ * of block requests kept in flight per peer (Bt's maxOutstandingRequests),
+ * not a connection setting; Bt fixes both when a torrent starts, so they
+ * apply to torrents started afterwards
+ * Per-peer settings: choke/unchoke and a priority hint (negative peers get no
+ * endgame duplicates, positive peers get more).
+ */
+public class SwarmDecision {
+
+    public static final int UNSET = -1;
+
+    private static final byte CHOKE = 1;
+    private static final byte UNCHOKE = 2;
+
+    private int aggressiveMode = UNSET; // 0 = off, 1 = on
+    private boolean enterEndgame;
+    private int maxConnections = UNSET;
+    private int pipelineDepth = UNSET;
+    private final byte[] choke; // 0 = unset
+    private final int[] priority;
+
+    // Set once the strategy has finished writing; readers check it first
+    private volatile boolean complete;
+
+    public SwarmDecision(int peerCount) {
+        this.choke = new byte[peerCount];
+        this.priority = new int[peerCount];
+    }
+
+    public void setAggressiveMode(boolean enabled) {
+        this.aggressiveMode = enabled ? 1 : 0;
+    }
+
+    public void enterEndgame() {
+        this.enterEndgame = true;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections > 0 ? maxConnections : UNSET;
+    }
+
+    /**
+     * Block requests to keep in flight per peer. Half-open connection
+     * attempts are limited separately (connections.max_half_open).
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth > 0 ? pipelineDepth : UNSET;
+    }
+
+    public void choke(int peer) {
+        choke[peer] = CHOKE;
+    }
+
+    public void unchoke(int peer) {
+        choke[peer] = UNCHOKE;
+    }
+
+    public void setPriority(int peer, int priority) {
+        this.priority[peer] = priority;
+    }
+
+    public int getPeerCount() {
+        return choke.length;
+    }
+
+    /**
+     * UNSET, 0 (off) or 1 (on).
+     */
+    public int getAggressiveMode() {
+        return aggressiveMode;
+    }
+
+    public boolean isEnterEndgame() {
+        return enterEndgame;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    /**
+     * True/false if the strategy chose, null if it left the peer alone.
+     */
+    public Boolean getChoke(int peer) {
+        switch (choke[peer]) {
+            case CHOKE:
+                return Boolean.TRUE;
+            case UNCHOKE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    public int getPriority(int peer) {
+        return priority[peer];
+    }
+
+    public void complete() {
+        this.complete = true;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,122 @@
+package com.client.core.brain;
+
+/**
+ * Immutable view of one torrent's swarm, handed to SwarmBrain.decide.
+ *
+ * Per-peer figures are stored as parallel primitive arrays and read through
+ * indexed getters (0 .. getPeerCount() - 1); the same index addresses the
+ * peer in SwarmDecision. The arrays are owned by the snapshot and never
+ * exposed, so a strategy can keep a snapshot without it changing underneath.
+ */
+public class SwarmSnapshot {
+
+    public static final int RTT_UNKNOWN = -1;
+
+    private final long timestampMs;
+    private final double progress;
+    private final int piecesRemaining;
+    private final int seeds;
+    private final int leechers;
+    private final double distributedCopies;
+    private final int minAvailability;
+    private final boolean aggressiveMode;
+    private final boolean endgame;
+
+    private final long[] peerDownloadRates; // bytes/sec from the peer
+    private final long[] peerUploadRates; // bytes/sec to the peer
+    private final float[] peerCompleteness; // 0.0 - 1.0 from BITFIELD/HAVE
+    private final int[] peerRttMillis; // RTT_UNKNOWN if not measured
+
+    public SwarmSnapshot(long timestampMs, double progress, int piecesRemaining, int seeds, int leechers,
+            double distributedCopies, int minAvailability, boolean aggressiveMode, boolean endgame,
+            long[] peerDownloadRates, long[] peerUploadRates, float[] peerCompleteness, int[] peerRttMillis) {
+        int peers = peerDownloadRates.length;
+        if (peerUploadRates.length != peers || peerCompleteness.length != peers || peerRttMillis.length != peers) {
+            throw new IllegalArgumentException("Per-peer arrays must have the same length");
+        }
+        this.timestampMs = timestampMs;
+        this.progress = progress;
+        this.piecesRemaining = piecesRemaining;
+        this.seeds = seeds;
+        this.leechers = leechers;
+        this.distributedCopies = distributedCopies;
+        this.minAvailability = minAvailability;
+        this.aggressiveMode = aggressiveMode;
+        this.endgame = endgame;
+        // Copied: the caller may reuse or refill its arrays after handing them over
+        this.peerDownloadRates = peerDownloadRates.clone();
+        this.peerUploadRates = peerUploadRates.clone();
+        this.peerCompleteness = peerCompleteness.clone();
+        this.peerRttMillis = peerRttMillis.clone();
+    }
+
+    public long getTimestampMs() {
+        return timestampMs;
+    }
+
+    /**
+     * Download progress (0.0 to 100.0).
+     */
+    public double getProgress() {
+        return progress;
+    }
+
+    public int getPiecesRemaining() {
+        return piecesRemaining;
+    }
+
+    public int getSeeds() {
+        return seeds;
+    }
+
+    public int getLeechers() {
+        return leechers;
+    }
+
+    public double getDistributedCopies() {
+        return distributedCopies;
+    }
+
+    public int getMinAvailability() {
+        return minAvailability;
+    }
+
+    public boolean isAggressiveMode() {
+        return aggressiveMode;
+    }
+
+    public boolean isEndgame() {
+        return endgame;
+    }
+
+    public int getPeerCount() {
+        return peerDownloadRates.length;
+    }
+
+    /**
+     * Sum of all per-peer download rates in bytes/sec.
+     */
+    public long getDownloadRate() {
+        long total = 0;
+        for (long rate : peerDownloadRates) {
+            total += rate;
+        }
+        return total;
+    }
+
+    public long getPeerDownloadRate(int peer) {
+        return peerDownloadRates[peer];
+    }
+
+    public long getPeerUploadRate(int peer) {
+        return peerUploadRates[peer];
+    }
+
+    public float getPeerCompleteness(int peer) {
+        return peerCompleteness[peer];
+    }
+
+    public int getPeerRttMillis(int peer) {
+        return peerRttMillis[peer];
+    }
+}
@@ -0,0 +1,202 @@
+package com.client.core.integrity;
+
+import bt.data.ChunkDescriptor;
+import bt.data.ChunkVerifier;
+import bt.data.LocalBitfield;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide piece hashing
+ *
+ * Features:
+ * 1. One pool - piece checks of every torrent run on a single work-stealing
+ * ForkJoinPool sized to the machine (hashing.threads), instead of Bt's fresh
+ * pool of all cores per torrent start
+ * 2. Fair turns - torrents take turns in batches of BATCH pieces (stride
+ * scheduling), so a large torrent cannot hold the pool while small ones wait
+ * 3. Near completion first - a torrent's turns come more often the more of
+ * it is verified (up to MAX_WEIGHT times), so nearly finished torrents
+ * become complete and start seeding sooner; nobody is starved
+ * 4. Queue depth - the number of pieces waiting to be hashed is kept for
+ * monitoring (getQueuedPieces)
+ *
+ * Callers block in verify() until their pieces are done; they are Bt's
+ * start-up threads, not pool workers.
+ */
+public class HashingPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashingPool.class);
+
+    private static final HashingPool GLOBAL = new HashingPool(Runtime.getRuntime().availableProcessors());
+
+    static final int BATCH = 8; // Pieces per turn
+    static final double MAX_WEIGHT = 4; // Turn frequency of an almost complete torrent vs. an empty one
+
+    private static class Job {
+        final List<ChunkDescriptor> chunks;
+        final int[] pieces;
+        final LocalBitfield bitfield;
+        final ChunkVerifier verifier;
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger finished = new AtomicInteger();
+        int next; // Guarded by the pool
+        double pass; // Guarded by the pool
+
+        Job(List<ChunkDescriptor> chunks, int[] pieces, LocalBitfield bitfield, ChunkVerifier verifier) {
+            this.chunks = chunks;
+            this.pieces = pieces;
+            this.bitfield = bitfield;
+            this.verifier = verifier;
+        }
+
+        // More turns the closer the torrent is to completion
+        double stride() {
+            int total = bitfield.getPiecesTotal();
+            double complete = total > 0 ? (double) bitfield.getPiecesComplete() / total : 0;
+            return BATCH / (1 + (MAX_WEIGHT - 1) * complete);
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final AtomicInteger queuedPieces = new AtomicInteger();
+
+    // Guarded by 'this'
+    private final PriorityQueue<Job> jobs = new PriorityQueue<>((a, b) -> Double.compare(a.pass, b.pass));
+    private double virtualTime;
+    private int workers;
+
+    HashingPool(int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("piece-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    public static HashingPool global() {
+        return GLOBAL;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Number of hashing threads; 0 or less means one per core. Applies to
+     * turns handed out from now on.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        if (threads != pool.getParallelism()) {
+            pool.setParallelism(threads);
+            logger.info("[OPIT-HASH] Hashing pool resized to {} threads", threads);
+        }
+    }
+
+    /**
+     * Pieces waiting for a hashing thread, over all torrents.
+     */
+    public int getQueuedPieces() {
+        return queuedPieces.get();
+    }
+
+    /**
+     * Torrents with pieces still waiting.
+     */
+    public synchronized int getQueuedTorrents() {
+        return jobs.size();
+    }
+
+    /**
+     * Hashes 'pieces' (indices into 'chunks') with verifier.verifyIfPresent
+     * and marks the matching ones verified in 'bitfield'. Blocks until all
+     * are done.
+     */
+    public void verify(List<ChunkDescriptor> chunks, int[] pieces, LocalBitfield bitfield, ChunkVerifier verifier)
+            throws InterruptedException {
+        if (pieces.length == 0) {
+            return;
+        }
+        Job job = new Job(chunks, pieces, bitfield, verifier);
+        queuedPieces.addAndGet(pieces.length);
+        int spawn;
+        synchronized (this) {
+            // Joins at the current virtual time: no catching up, no head start
+            job.pass = virtualTime;
+            jobs.add(job);
+            int batches = (pieces.length + BATCH - 1) / BATCH;
+            spawn = Math.max(0, Math.min(pool.getParallelism() - workers, batches));
+            workers += spawn;
+        }
+        for (int i = 0; i < spawn; i++) {
+            pool.execute(this::work);
+        }
+        try {
+            job.done.await();
+        } catch (InterruptedException e) {
+            cancel(job);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the turns 'job' has not started; batches being hashed finish.
+     */
+    private synchronized void cancel(Job job) {
+        if (jobs.remove(job)) {
+            queuedPieces.addAndGet(job.next - job.pieces.length);
+            job.next = job.pieces.length;
+        }
+    }
+
+    /**
+     * One pool worker: takes turns until no job is left.
+     */
+    private void work() {
+        while (true) {
+            Job job;
+            int from;
+            int to;
+            synchronized (this) {
+                job = jobs.poll();
+                if (job == null) {
+                    workers--;
+                    return;
+                }
+                from = job.next;
+                to = Math.min(from + BATCH, job.pieces.length);
+                job.next = to;
+                virtualTime = job.pass;
+                if (to < job.pieces.length) {
+                    job.pass += job.stride();
+                    jobs.add(job);
+                }
+            }
+            queuedPieces.addAndGet(from - to);
+            for (int i = from; i < to; i++) {
+                int piece = job.pieces[i];
+                try {
+                    if (job.verifier.verifyIfPresent(job.chunks.get(piece))) {
+                        job.bitfield.markLocalPieceVerified(piece);
+                    }
+                } catch (RuntimeException e) {
+                    // Stays unverified and is downloaded again
+                    logger.warn("[OPIT-HASH] Hashing piece {} failed: {}", piece, e.getMessage());
+                }
+            }
+            if (job.finished.addAndGet(to - from) == job.pieces.length) {
+                job.done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.client.core.lifecycle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Ordered, deadline-bound shutdown
+ *
+ * Features:
+ * 1. Phases - steps run one after another in the order they were added
+ * (stop torrents, drain writes, flush storage, save resume state, ...);
+ * a phase may fan out over many items, which then run in parallel on a
+ * TaskScope
+ * 2. One deadline - all phases share a single time budget; a parallel phase
+ * stops waiting when it runs out, and later phases are skipped
+ * 3. Essential phases - a phase marked essential (saving the session) runs
+ * even after the deadline, so a slow stop never costs the resume state
+ * 4. Failures isolated - an exception in one step or item is logged and
+ * counted; the remaining work still runs
+ *
+ * Single use: build the phases, then run() once.
+ */
+public final class ShutdownCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShutdownCoordinator.class);
+
+    private interface Phase {
+        String name();
+
+        boolean essential();
+
+        // Returns the number of failed items
+        int run(long deadline) throws InterruptedException, TimeoutException;
+    }
+
+    private final Duration timeout;
+    private final List<Phase> phases = new ArrayList<>();
+    private volatile long deadline;
+
+    public ShutdownCoordinator(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * A single step, skipped once the deadline has passed.
+     */
+    public ShutdownCoordinator step(String name, Runnable action) {
+        return step(name, false, action);
+    }
+
+    /**
+     * A single step; an essential one runs even after the deadline.
+     */
+    public ShutdownCoordinator step(String name, boolean essential, Runnable action) {
+        phases.add(new Phase() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public boolean essential() {
+                return essential;
+            }
+
+            @Override
+            public int run(long deadline) {
+                action.run();
+                return 0;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 'action' applied to every item in parallel, waiting no longer than the
+     * time left. 'items' is read when the phase starts.
+     */
+    public <T> ShutdownCoordinator parallel(String name, Collection<T> items, Consumer<T> action) {
+        phases.add(new Phase() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public boolean essential() {
+                return false;
+            }
+
+            @Override
+            public int run(long deadline) throws InterruptedException, TimeoutException {
+                List<T> snapshot = new ArrayList<>(items);
+                if (snapshot.isEmpty()) {
+                    return 0;
+                }
+                try (TaskScope scope = new TaskScope("shutdown-" + name)) {
+                    for (T item : snapshot) {
+                        scope.fork(() -> {
+                            try {
+                                action.accept(item);
+                            } catch (RuntimeException e) {
+                                logger.warn("[SHUTDOWN] {} failed for {}: {}", name, item, e.getMessage());
+                                throw e;
+                            }
+                        });
+                    }
+                    return scope.join(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Time left before the deadline, for steps that wait themselves; zero
+     * once it has passed.
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+
+    /**
+     * Runs every phase. Returns true if all of them finished in time and
+     * without failures.
+     */
+    public boolean run() {
+        long started = System.nanoTime();
+        deadline = started + timeout.toNanos();
+        boolean clean = true;
+        for (Phase phase : phases) {
+            if (System.nanoTime() >= deadline && !phase.essential()) {
+                logger.warn("[SHUTDOWN] Deadline passed, skipping '{}'", phase.name());
+                clean = false;
+                continue;
+            }
+            long phaseStarted = System.nanoTime();
+            try {
+                int failed = phase.run(deadline);
+                if (failed > 0) {
+                    logger.warn("[SHUTDOWN] '{}': {} item(s) failed", phase.name(), failed);
+                    clean = false;
+                }
+            } catch (TimeoutException e) {
+                logger.warn("[SHUTDOWN] '{}' did not finish before the deadline", phase.name());
+                clean = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("[SHUTDOWN] Interrupted during '{}'", phase.name());
+                clean = false;
+            } catch (RuntimeException e) {
+                logger.warn("[SHUTDOWN] '{}' failed: {}", phase.name(), e.getMessage());
+                clean = false;
+            }
+            logger.debug("[SHUTDOWN] '{}' took {} ms", phase.name(), (System.nanoTime() - phaseStarted) / 1_000_000);
+        }
+        logger.info("[SHUTDOWN] {} in {} ms", clean ? "Completed" : "Completed with problems",
+                (System.nanoTime() - started) / 1_000_000);
+        return clean;
+    }
+}
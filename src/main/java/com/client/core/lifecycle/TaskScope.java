@@ -0,0 +1,124 @@
+package com.client.core.lifecycle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Structured fan-out on virtual threads for blocking lifecycle work
+ * (starting, stopping, flushing torrents).
+ *
+ * Features:
+ * 1. One virtual thread per forked task - thousands of blocking starts or
+ * stops cost a few KB each instead of a platform thread
+ * 2. Bounded lifetime - forked tasks never outlive the scope: close() cancels
+ * whatever is still running and waits for it, so nothing leaks past a
+ * try-with-resources block
+ * 3. Deadlines - join(timeout) stops waiting once the time is up; close()
+ * then interrupts the stragglers and gives them only a short grace period,
+ * so a hung task cannot hold up its caller (virtual threads never keep the
+ * JVM alive)
+ *
+ * Same shape as JDK 21's StructuredTaskScope, which is still a preview API
+ * there and would need --enable-preview for the build and every launcher.
+ * Not thread-safe: fork and join from the owning thread.
+ */
+public final class TaskScope implements AutoCloseable {
+
+    private static final long GRACE_MS = 1000; // After a missed deadline
+
+    private final String name;
+    private final ExecutorService executor;
+    private final List<Future<?>> forked = new ArrayList<>();
+    private boolean deadlineMissed;
+
+    public TaskScope(String name) {
+        this.name = name;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    public <T> Future<T> fork(Callable<T> task) {
+        Future<T> future = executor.submit(task);
+        forked.add(future);
+        return future;
+    }
+
+    public Future<?> fork(Runnable task) {
+        Future<?> future = executor.submit(task);
+        forked.add(future);
+        return future;
+    }
+
+    /**
+     * Waits for every forked task. Failures stay in their futures; returns
+     * the number of tasks that failed.
+     */
+    public int join() throws InterruptedException {
+        int failed = 0;
+        for (Future<?> future : forked) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Like join(), but gives up once 'timeout' has passed; the tasks still
+     * running are interrupted when the scope closes.
+     */
+    public int join(Duration timeout) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int failed = 0;
+        for (Future<?> future : forked) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                failed++;
+            } catch (TimeoutException e) {
+                deadlineMissed = true;
+                throw new TimeoutException(name + ": tasks still running after " + timeout.toMillis() + " ms");
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Cancels unfinished tasks and waits for them to end (briefly, if a
+     * join deadline was missed).
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        if (deadlineMissed) {
+            try {
+                executor.awaitTermination(GRACE_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.client.core.metainfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull-style bencode decoder over a ByteBuffer.
+ *
+ * Nothing is materialised unless asked for: strings come back as slices of
+ * the input (a memory-mapped file stays on its pages), integers are parsed
+ * in place and skipValue() walks over whole subtrees without allocating.
+ * Reads use absolute offsets, the input buffer itself is never modified.
+ * Malformed input throws IOException with the offending offset.
+ */
+public final class BencodeDecoder {
+
+    public enum Type {
+        INTEGER, STRING, LIST, DICTIONARY, END
+    }
+
+    private static final int MAX_DEPTH = 256; // Bounds skipValue() recursion on hostile input
+
+    private final ByteBuffer data;
+    private int position;
+
+    public BencodeDecoder(ByteBuffer data) {
+        this.data = data;
+        this.position = data.position();
+    }
+
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Type of the next value, END at the 'e' closing a list or dictionary.
+     */
+    public Type peek() throws IOException {
+        byte next = byteAt(position);
+        switch (next) {
+            case 'i':
+                return Type.INTEGER;
+            case 'l':
+                return Type.LIST;
+            case 'd':
+                return Type.DICTIONARY;
+            case 'e':
+                return Type.END;
+            default:
+                if (next >= '0' && next <= '9') {
+                    return Type.STRING;
+                }
+                throw malformed("unexpected '" + (char) next + "'");
+        }
+    }
+
+    public long readInteger() throws IOException {
+        expect('i');
+        long value = readDigits('e');
+        position++; // 'e'
+        return value;
+    }
+
+    /**
+     * The next string as a read-only slice of the input (no copy).
+     */
+    public ByteBuffer readString() throws IOException {
+        int start = stringStart();
+        int length = (int) readDigits(':');
+        position++; // ':'
+        if (length < 0 || position + length > data.limit() || position + length < position) {
+            throw malformed("string of " + length + " bytes at " + start + " runs past the end");
+        }
+        ByteBuffer slice = data.slice(position, length).asReadOnlyBuffer();
+        position += length;
+        return slice;
+    }
+
+    public String readUtf8() throws IOException {
+        ByteBuffer bytes = readString();
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    public void beginList() throws IOException {
+        expect('l');
+    }
+
+    public void beginDictionary() throws IOException {
+        expect('d');
+    }
+
+    /**
+     * True until the current list or dictionary is exhausted.
+     */
+    public boolean hasNext() throws IOException {
+        return byteAt(position) != 'e';
+    }
+
+    /**
+     * Consumes the 'e' closing the current list or dictionary.
+     */
+    public void end() throws IOException {
+        expect('e');
+    }
+
+    public void skipValue() throws IOException {
+        skipValue(0);
+    }
+
+    private void skipValue(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw malformed("nesting deeper than " + MAX_DEPTH);
+        }
+        switch (peek()) {
+            case INTEGER:
+                readInteger();
+                break;
+            case STRING:
+                int length = (int) readDigits(':');
+                position += 1 + length;
+                if (length < 0 || position > data.limit() || position < 0) {
+                    throw malformed("string runs past the end");
+                }
+                break;
+            case LIST:
+            case DICTIONARY:
+                position++;
+                while (hasNext()) {
+                    skipValue(depth + 1);
+                }
+                position++; // 'e'
+                break;
+            default:
+                throw malformed("unexpected end of container");
+        }
+    }
+
+    /**
+     * True if the string 'key' holds exactly the ASCII bytes of 'name'.
+     */
+    public static boolean is(ByteBuffer key, String name) {
+        if (key.remaining() != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (key.get(key.position() + i) != (byte) name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int stringStart() throws IOException {
+        byte first = byteAt(position);
+        if (first < '0' || first > '9') {
+            throw malformed("expected a string");
+        }
+        return position;
+    }
+
+    private long readDigits(char terminator) throws IOException {
+        boolean negative = false;
+        if (byteAt(position) == '-') {
+            negative = true;
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        byte next;
+        while ((next = byteAt(position)) != terminator) {
+            if (next < '0' || next > '9' || ++digits > 18) {
+                throw malformed("bad number");
+            }
+            value = value * 10 + (next - '0');
+            position++;
+        }
+        if (digits == 0) {
+            throw malformed("empty number");
+        }
+        return negative ? -value : value;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (byteAt(position) != expected) {
+            throw malformed("expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    private byte byteAt(int index) throws IOException {
+        if (index >= data.limit()) {
+            throw new IOException("Truncated bencode at offset " + index);
+        }
+        return data.get(index);
+    }
+
+    private IOException malformed(String reason) {
+        return new IOException("Malformed bencode at offset " + position + ": " + reason);
+    }
+}
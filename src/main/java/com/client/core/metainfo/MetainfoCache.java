@@ -0,0 +1,152 @@
+package com.client.core.metainfo;
+
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * On-Disk Metainfo Cache
+ *
+ * Features:
+ * 1. Content-addressed - one file per torrent, <infohash hex>.info, holding
+ * the bencoded info dictionary; since the infohash is the SHA-1 of exactly
+ * those bytes, every entry is verified on write and on read, and a corrupt
+ * one is dropped
+ * 2. Instant restarts - a magnet whose info dictionary is cached starts from
+ * it instead of fetching metadata from peers again
+ * 3. Size bound - least recently used entries (file modification time,
+ * refreshed on every hit) are evicted once the directory exceeds maxBytes
+ *
+ * Writes go to a temporary file that is moved into place, so a crash never
+ * leaves a truncated entry. All methods are synchronized.
+ */
+public class MetainfoCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetainfoCache.class);
+
+    public static final int DEFAULT_MAX_MB = 64;
+    private static final long DEFAULT_MAX_BYTES = DEFAULT_MAX_MB * 1024L * 1024L;
+    private static final String SUFFIX = ".info";
+
+    private final Path directory;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+
+    public MetainfoCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes > 0 ? maxBytes : DEFAULT_MAX_BYTES;
+    }
+
+    /**
+     * The cached torrent, or null if it is not cached (or the entry was
+     * corrupt). The returned torrent has no trackers.
+     */
+    public synchronized Torrent get(TorrentId torrentId) {
+        Path file = fileFor(torrentId);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            byte[] info = Files.readAllBytes(file);
+            if (!Arrays.equals(sha1(info), torrentId.getBytes())) {
+                logger.warn("[METAINFO] Dropping corrupt cache entry {}", file.getFileName());
+                Files.deleteIfExists(file);
+                return null;
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return TorrentMetainfo.fromInfo(ByteBuffer.wrap(info));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("[METAINFO] Unreadable cache entry {}: {}", file.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized boolean contains(TorrentId torrentId) {
+        return Files.isRegularFile(fileFor(torrentId));
+    }
+
+    /**
+     * Stores a torrent's bencoded info dictionary; ignored if the bytes do
+     * not hash to 'torrentId'.
+     */
+    public synchronized void put(TorrentId torrentId, byte[] info) {
+        if (info == null || info.length == 0 || !Arrays.equals(sha1(info), torrentId.getBytes())) {
+            logger.debug("[METAINFO] Not caching {}: info dictionary does not match the infohash", torrentId);
+            return;
+        }
+        Path file = fileFor(torrentId);
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "pending", ".tmp");
+            try {
+                Files.write(temp, info);
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            evict();
+        } catch (IOException e) {
+            logger.warn("[METAINFO] Could not cache {}: {}", torrentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes least recently used entries until the cache fits maxBytes.
+     */
+    private void evict() throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<BasicFileAttributes> attributes = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                files.add(file);
+                attributes.add(attrs);
+                total += attrs.size();
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> attributes.get(a).lastModifiedTime()
+                .compareTo(attributes.get(b).lastModifiedTime()));
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            Files.deleteIfExists(files.get(order[i]));
+            total -= attributes.get(order[i]).size();
+            logger.debug("[METAINFO] Evicted {}", files.get(order[i]).getFileName());
+        }
+    }
+
+    private Path fileFor(TorrentId torrentId) {
+        return directory.resolve(HexFormat.of().formatHex(torrentId.getBytes()) + SUFFIX);
+    }
+
+    private static byte[] sha1(byte[] data) {
+        return TorrentMetainfo.sha1().digest(data);
+    }
+}
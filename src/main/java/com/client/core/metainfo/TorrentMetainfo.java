@@ -0,0 +1,285 @@
+package com.client.core.metainfo;
+
+import bt.metainfo.MetadataService;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What the client needs from a .torrent file, read in one pass
+ *
+ * Features:
+ * 1. Single pass - BencodeDecoder walks the file once; the infohash is the
+ * SHA-1 of the info dictionary's byte range, digested straight from the
+ * input as soon as that range is known, never re-encoded
+ * 2. Zero-copy - large files are memory-mapped and only the few strings that
+ * are kept (name, tracker URLs) are decoded; the info dictionary stays a
+ * slice of the input until toTorrent() or getInfo() needs the bytes
+ * 3. Trackers - announce and every tier of announce-list, de-duplicated in
+ * order
+ *
+ * toTorrent() hands Bt the info dictionary alone, so the resulting torrent
+ * has no trackers; they are announced through the AnnounceScheduler.
+ */
+public final class TorrentMetainfo {
+
+    private static final int MAP_THRESHOLD = 64 * 1024; // Smaller files are cheaper to read than to map
+    private static final byte[] WRAP_PREFIX = { 'd', '4', ':', 'i', 'n', 'f', 'o' };
+
+    private final TorrentId torrentId;
+    private final String name;
+    private final long size;
+    private final long pieceLength;
+    private final int pieceCount;
+    private final boolean privateTorrent;
+    private final List<String> trackerUrls;
+    private final ByteBuffer info;
+
+    private TorrentMetainfo(TorrentId torrentId, String name, long size, long pieceLength, int pieceCount,
+            boolean privateTorrent, List<String> trackerUrls, ByteBuffer info) {
+        this.torrentId = torrentId;
+        this.name = name;
+        this.size = size;
+        this.pieceLength = pieceLength;
+        this.pieceCount = pieceCount;
+        this.privateTorrent = privateTorrent;
+        this.trackerUrls = trackerUrls;
+        this.info = info;
+    }
+
+    public static TorrentMetainfo read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException(file.getFileName() + " is too large for a .torrent file");
+            }
+            ByteBuffer data;
+            if (length >= MAP_THRESHOLD) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            } else {
+                data = ByteBuffer.allocate((int) length);
+                while (data.hasRemaining() && channel.read(data) >= 0) {
+                    // Fill
+                }
+                data.flip();
+            }
+            return parse(data);
+        }
+    }
+
+    /**
+     * Parses a bencoded metainfo dictionary between data's position and limit.
+     */
+    public static TorrentMetainfo parse(ByteBuffer data) throws IOException {
+        BencodeDecoder decoder = new BencodeDecoder(data);
+        Set<String> trackers = new LinkedHashSet<>();
+        String announce = null;
+        InfoFields fields = null;
+        ByteBuffer info = null;
+        byte[] infoHash = null;
+
+        decoder.beginDictionary();
+        while (decoder.hasNext()) {
+            ByteBuffer key = decoder.readString();
+            if (BencodeDecoder.is(key, "announce") && decoder.peek() == BencodeDecoder.Type.STRING) {
+                announce = decoder.readUtf8();
+            } else if (BencodeDecoder.is(key, "announce-list") && decoder.peek() == BencodeDecoder.Type.LIST) {
+                readAnnounceList(decoder, trackers);
+            } else if (BencodeDecoder.is(key, "info")) {
+                int start = decoder.position();
+                fields = readInfo(decoder);
+                info = data.slice(start, decoder.position() - start).asReadOnlyBuffer();
+                MessageDigest sha1 = sha1();
+                sha1.update(info.duplicate());
+                infoHash = sha1.digest();
+            } else {
+                decoder.skipValue();
+            }
+        }
+        decoder.end();
+
+        if (fields == null) {
+            throw new IOException("Metainfo has no info dictionary");
+        }
+        if (fields.pieceLength <= 0) {
+            throw new IOException("Metainfo has no piece length");
+        }
+        List<String> urls = new ArrayList<>();
+        if (announce != null && !announce.isBlank()) {
+            urls.add(announce); // Used first, as clients without announce-list would
+        }
+        for (String tracker : trackers) {
+            if (!urls.contains(tracker)) {
+                urls.add(tracker);
+            }
+        }
+        return new TorrentMetainfo(TorrentId.fromBytes(infoHash), fields.name, fields.size, fields.pieceLength,
+                fields.pieceCount, fields.privateTorrent, Collections.unmodifiableList(urls), info);
+    }
+
+    private static void readAnnounceList(BencodeDecoder decoder, Set<String> trackers) throws IOException {
+        decoder.beginList();
+        while (decoder.hasNext()) {
+            if (decoder.peek() != BencodeDecoder.Type.LIST) {
+                decoder.skipValue();
+                continue;
+            }
+            decoder.beginList();
+            while (decoder.hasNext()) {
+                if (decoder.peek() == BencodeDecoder.Type.STRING) {
+                    String url = decoder.readUtf8().trim();
+                    if (!url.isEmpty()) {
+                        trackers.add(url);
+                    }
+                } else {
+                    decoder.skipValue();
+                }
+            }
+            decoder.end();
+        }
+        decoder.end();
+    }
+
+    private static final class InfoFields {
+        String name;
+        long size;
+        long pieceLength;
+        int pieceCount;
+        boolean privateTorrent;
+    }
+
+    private static InfoFields readInfo(BencodeDecoder decoder) throws IOException {
+        InfoFields fields = new InfoFields();
+        String utf8Name = null;
+        decoder.beginDictionary();
+        while (decoder.hasNext()) {
+            ByteBuffer key = decoder.readString();
+            BencodeDecoder.Type type = decoder.peek();
+            if (BencodeDecoder.is(key, "name") && type == BencodeDecoder.Type.STRING) {
+                fields.name = decoder.readUtf8();
+            } else if (BencodeDecoder.is(key, "name.utf-8") && type == BencodeDecoder.Type.STRING) {
+                utf8Name = decoder.readUtf8();
+            } else if (BencodeDecoder.is(key, "piece length") && type == BencodeDecoder.Type.INTEGER) {
+                fields.pieceLength = decoder.readInteger();
+            } else if (BencodeDecoder.is(key, "pieces") && type == BencodeDecoder.Type.STRING) {
+                fields.pieceCount = decoder.readString().remaining() / 20;
+            } else if (BencodeDecoder.is(key, "length") && type == BencodeDecoder.Type.INTEGER) {
+                fields.size += decoder.readInteger();
+            } else if (BencodeDecoder.is(key, "files") && type == BencodeDecoder.Type.LIST) {
+                fields.size += readFilesLength(decoder);
+            } else if (BencodeDecoder.is(key, "private") && type == BencodeDecoder.Type.INTEGER) {
+                fields.privateTorrent = decoder.readInteger() == 1;
+            } else {
+                decoder.skipValue();
+            }
+        }
+        decoder.end();
+        if (utf8Name != null) {
+            fields.name = utf8Name;
+        }
+        return fields;
+    }
+
+    private static long readFilesLength(BencodeDecoder decoder) throws IOException {
+        long total = 0;
+        decoder.beginList();
+        while (decoder.hasNext()) {
+            if (decoder.peek() != BencodeDecoder.Type.DICTIONARY) {
+                decoder.skipValue();
+                continue;
+            }
+            decoder.beginDictionary();
+            while (decoder.hasNext()) {
+                ByteBuffer key = decoder.readString();
+                if (BencodeDecoder.is(key, "length") && decoder.peek() == BencodeDecoder.Type.INTEGER) {
+                    total += decoder.readInteger();
+                } else {
+                    decoder.skipValue();
+                }
+            }
+            decoder.end();
+        }
+        decoder.end();
+        return total;
+    }
+
+    public TorrentId getTorrentId() {
+        return torrentId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getPieceLength() {
+        return pieceLength;
+    }
+
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    public boolean isPrivate() {
+        return privateTorrent;
+    }
+
+    /**
+     * Tracker URLs, announce first, then every announce-list tier.
+     */
+    public List<String> getTrackerUrls() {
+        return trackerUrls;
+    }
+
+    /**
+     * A copy of the bencoded info dictionary.
+     */
+    public byte[] getInfo() {
+        byte[] bytes = new byte[info.remaining()];
+        info.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Bt's model of this torrent, built from the info dictionary alone (so
+     * without trackers).
+     */
+    public Torrent toTorrent() {
+        return fromInfo(info.duplicate());
+    }
+
+    /**
+     * Bt's model of a torrent from its bencoded info dictionary, wrapped as
+     * d4:info...e.
+     */
+    static Torrent fromInfo(ByteBuffer info) {
+        byte[] metainfo = new byte[WRAP_PREFIX.length + info.remaining() + 1];
+        System.arraycopy(WRAP_PREFIX, 0, metainfo, 0, WRAP_PREFIX.length);
+        info.get(metainfo, WRAP_PREFIX.length, info.remaining());
+        metainfo[metainfo.length - 1] = 'e';
+        return new MetadataService().fromByteArray(metainfo);
+    }
+
+    static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.client.core.queue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Download Queue Manager
+ *
+ * Features:
+ * 1. Active slots - at most maxActiveDownloads torrents download and at most
+ * maxActiveSeeds seed at the same time (0 = unlimited); everything else waits
+ * 2. Priority order - waiting torrents start by priority, then in the order
+ * they were queued
+ * 3. Stall rotation - a download without payload for stallSeconds (metadata
+ * fetch included) is moved to the back of its priority level while other
+ * torrents are waiting, handing its slot over
+ * 4. Preemption - a waiting torrent with a higher priority than a running one
+ * takes its slot
+ *
+ * Pure bookkeeping: schedule() returns which torrents to start and which to
+ * suspend, the caller owns the actual clients. All methods are synchronized.
+ */
+public class QueueManager {
+
+    public static final int DEFAULT_MAX_ACTIVE_DOWNLOADS = 8;
+    public static final int DEFAULT_MAX_ACTIVE_SEEDS = 16;
+    public static final int DEFAULT_STALL_SECONDS = 180;
+
+    public enum State {
+        QUEUED, DOWNLOADING, SEEDING
+    }
+
+    /**
+     * Outcome of one scheduling round.
+     */
+    public static class Plan {
+        private final List<String> toSuspend = new ArrayList<>();
+        private final List<String> toStart = new ArrayList<>();
+
+        public List<String> getToSuspend() {
+            return toSuspend;
+        }
+
+        public List<String> getToStart() {
+            return toStart;
+        }
+
+        public boolean isEmpty() {
+            return toSuspend.isEmpty() && toStart.isEmpty();
+        }
+    }
+
+    private static class Entry {
+        final String id;
+        int priority;
+        long sequence; // FIFO within a priority; bumped on rotation
+        State state = State.QUEUED;
+        boolean complete;
+        long lastDownloaded;
+        long lastActivityMs;
+
+        Entry(String id, int priority, long sequence) {
+            this.id = id;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> BY_PRIORITY = Comparator.<Entry>comparingInt(e -> -e.priority)
+            .thenComparingLong(e -> e.sequence);
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private long nextSequence;
+    private int maxActiveDownloads = DEFAULT_MAX_ACTIVE_DOWNLOADS;
+    private int maxActiveSeeds = DEFAULT_MAX_ACTIVE_SEEDS;
+    private long stallMs = DEFAULT_STALL_SECONDS * 1000L;
+
+    public synchronized void setLimits(int maxActiveDownloads, int maxActiveSeeds, int stallSeconds) {
+        this.maxActiveDownloads = Math.max(0, maxActiveDownloads);
+        this.maxActiveSeeds = Math.max(0, maxActiveSeeds);
+        this.stallMs = Math.max(0, stallSeconds) * 1000L;
+    }
+
+    public synchronized void add(String id, int priority) {
+        add(id, priority, false);
+    }
+
+    /**
+     * Queues a torrent; 'complete' ones wait for a seed slot instead of a
+     * download slot (restored sessions).
+     */
+    public synchronized void add(String id, int priority, boolean complete) {
+        Entry entry = new Entry(id, priority, nextSequence++);
+        entry.complete = complete;
+        entries.putIfAbsent(id, entry);
+    }
+
+    public synchronized void remove(String id) {
+        entries.remove(id);
+    }
+
+    public synchronized boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    public synchronized void setPriority(String id, int priority) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            entry.priority = priority;
+        }
+    }
+
+    public synchronized int getPriority(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.priority : 0;
+    }
+
+    /**
+     * All ids in queue order: priority, then order added (rotations included).
+     */
+    public synchronized List<String> getOrder() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(BY_PRIORITY);
+        List<String> order = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            order.add(entry.id);
+        }
+        return order;
+    }
+
+    public synchronized State getState(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.state : null;
+    }
+
+    public synchronized boolean isComplete(String id) {
+        Entry entry = entries.get(id);
+        return entry != null && entry.complete;
+    }
+
+    /**
+     * Status tick of a running torrent; 'downloaded' is the client's payload
+     * counter (restarts at 0 with every new client).
+     */
+    public synchronized void onStatus(String id, long downloaded, boolean complete, long now) {
+        Entry entry = entries.get(id);
+        if (entry == null || entry.state == State.QUEUED) {
+            return;
+        }
+        if (downloaded != entry.lastDownloaded) {
+            entry.lastDownloaded = downloaded;
+            entry.lastActivityMs = now;
+        }
+        if (complete && !entry.complete) {
+            entry.complete = true;
+            entry.state = State.SEEDING;
+        }
+    }
+
+    /**
+     * Decides which torrents run. Started entries are marked running
+     * immediately; the caller must start/suspend exactly as planned.
+     */
+    public synchronized Plan schedule(long now) {
+        Plan plan = new Plan();
+        List<Entry> downloading = new ArrayList<>();
+        List<Entry> seeding = new ArrayList<>();
+        List<Entry> waitingDownloads = new ArrayList<>();
+        List<Entry> waitingSeeds = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            switch (entry.state) {
+                case DOWNLOADING:
+                    downloading.add(entry);
+                    break;
+                case SEEDING:
+                    seeding.add(entry);
+                    break;
+                default:
+                    (entry.complete ? waitingSeeds : waitingDownloads).add(entry);
+                    break;
+            }
+        }
+        waitingDownloads.sort(BY_PRIORITY);
+        waitingSeeds.sort(BY_PRIORITY);
+
+        // Stalled downloads go to the back of their priority level, but only
+        // if someone is waiting for the slot
+        if (stallMs > 0 && !waitingDownloads.isEmpty()) {
+            List<Entry> stalled = new ArrayList<>();
+            for (Entry entry : downloading) {
+                if (now - entry.lastActivityMs >= stallMs) {
+                    stalled.add(entry);
+                }
+            }
+            stalled.sort(BY_PRIORITY.reversed());
+            for (int i = 0; i < stalled.size() && i < waitingDownloads.size(); i++) {
+                Entry entry = stalled.get(i);
+                entry.sequence = nextSequence++;
+                suspend(entry, downloading, plan);
+            }
+        }
+
+        fill(downloading, waitingDownloads, maxActiveDownloads, State.DOWNLOADING, now, plan);
+        fill(seeding, waitingSeeds, maxActiveSeeds, State.SEEDING, now, plan);
+        return plan;
+    }
+
+    /**
+     * Starts waiting entries while slots are free, then lets higher-priority
+     * waiters preempt the lowest-priority running entries.
+     */
+    private void fill(List<Entry> running, List<Entry> waiting, int limit, State runningState, long now,
+            Plan plan) {
+        int capacity = limit > 0 ? limit : Integer.MAX_VALUE;
+        running.sort(BY_PRIORITY);
+        for (Entry next : waiting) {
+            if (next.state != State.QUEUED) {
+                continue;
+            }
+            if (running.size() >= capacity) {
+                Entry lowest = running.isEmpty() ? null : running.get(running.size() - 1);
+                if (lowest == null || lowest.priority >= next.priority) {
+                    break; // Waiting list is sorted, nobody further back can preempt
+                }
+                suspend(lowest, running, plan);
+            }
+            next.state = runningState;
+            next.lastDownloaded = 0;
+            next.lastActivityMs = now; // Grace period, includes the metadata fetch
+            running.add(next);
+            running.sort(BY_PRIORITY);
+            plan.toStart.add(next.id);
+        }
+        // Slots shrunk (limit lowered at runtime)
+        while (running.size() > capacity) {
+            suspend(running.get(running.size() - 1), running, plan);
+        }
+    }
+
+    private static void suspend(Entry entry, List<Entry> running, Plan plan) {
+        entry.state = State.QUEUED;
+        running.remove(entry);
+        plan.toSuspend.add(entry.id);
+    }
+}
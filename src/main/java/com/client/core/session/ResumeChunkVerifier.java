@@ -0,0 +1,170 @@
+package com.client.core.session;
+
+import bt.data.ChunkDescriptor;
+import bt.data.ChunkVerifier;
+import bt.data.IDataDescriptorFactory;
+import bt.data.LocalBitfield;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Fast resume for Bt's start-up check
+ *
+ * Features:
+ * 1. Trusted pieces - a torrent restored from the session registers the
+ * pieces it had verified; on start they are marked verified as long as their
+ * storage is present, instead of being hashed again
+ * 2. Spot check - storage that is preallocated (ZeroCopyStorage, /dev/shm)
+ * looks present even after its contents are gone, so a sample of the trusted
+ * pieces is hashed first; if any of them fails the saved state is dropped
+ * and every piece is hashed
+ * 3. Everything else - pieces not in the saved state, and every torrent
+ * without one, are hashed with Bt's own verifier on the shared HashingPool
+ * rather than on a pool of their own
+ *
+ * Bt calls the verifier with the torrent's chunks only, but it does so while
+ * building the torrent's data descriptor; the descriptor factory is wrapped
+ * (see wrap) so the check knows which torrent it runs for. Saved state is
+ * matched by infohash and used once.
+ */
+public class ResumeChunkVerifier implements ChunkVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumeChunkVerifier.class);
+
+    private static final int SPOT_CHECK_PIECES = 16;
+
+    private final Map<TorrentId, BitSet> expected = new ConcurrentHashMap<>();
+    // Torrent whose data descriptor Bt is building on this thread
+    private final ThreadLocal<TorrentId> building = new ThreadLocal<>();
+    private volatile ChunkVerifier delegate;
+
+    public void setDelegate(ChunkVerifier delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Pieces of 'torrent' to trust on its next start.
+     */
+    public void expect(Torrent torrent, BitSet pieces) {
+        if (!pieces.isEmpty()) {
+            expected.put(torrent.getTorrentId(), (BitSet) pieces.clone());
+        }
+    }
+
+    /**
+     * Wraps Bt's descriptor factory. Bt runs the start-up check inside
+     * createDescriptor, on the calling thread, so the torrent being built is
+     * the one the check is for.
+     */
+    public IDataDescriptorFactory wrap(IDataDescriptorFactory factory) {
+        return (torrent, storage, callback) -> {
+            building.set(torrent.getTorrentId());
+            try {
+                return factory.createDescriptor(torrent, storage, callback);
+            } finally {
+                building.remove();
+            }
+        };
+    }
+
+    @Override
+    public boolean verify(List<ChunkDescriptor> chunks, LocalBitfield bitfield) {
+        if (chunks.size() != bitfield.getPiecesTotal()) {
+            throw new IllegalArgumentException("Bitfield has " + bitfield.getPiecesTotal()
+                    + " pieces, but there are " + chunks.size() + " chunks");
+        }
+        TorrentId torrentId = building.get();
+        BitSet trusted = torrentId != null ? expected.remove(torrentId) : null;
+        if (trusted != null && trusted.length() > chunks.size()) {
+            trusted = null;
+        }
+        if (trusted != null && !spotCheck(chunks, trusted)) {
+            logger.warn("[SESSION] Saved piece state does not match the data on disk, checking every piece");
+            trusted = null;
+        }
+        int[] toHash = new int[chunks.size()];
+        int count = 0;
+        int resumed = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            if (trusted != null && trusted.get(i) && isPresent(chunks.get(i))) {
+                bitfield.markLocalPieceVerified(i);
+                resumed++;
+            } else {
+                toHash[count++] = i;
+            }
+        }
+        try {
+            com.client.core.integrity.HashingPool.global().verify(chunks, Arrays.copyOf(toHash, count), bitfield,
+                    delegate);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new bt.BtException("Interrupted while verifying pieces");
+        }
+        if (trusted != null) {
+            logger.info("[SESSION] Resumed {} of {} pieces without hashing", resumed, chunks.size());
+        }
+        return bitfield.getPiecesRemaining() == 0;
+    }
+
+    @Override
+    public boolean verify(ChunkDescriptor chunk) {
+        return delegate.verify(chunk);
+    }
+
+    @Override
+    public boolean verifyIfPresent(ChunkDescriptor chunk) {
+        return delegate.verifyIfPresent(chunk);
+    }
+
+    /**
+     * Hashes up to SPOT_CHECK_PIECES trusted pieces, spread evenly over the
+     * torrent from a random start. False if any of them is missing or fails.
+     */
+    private boolean spotCheck(List<ChunkDescriptor> chunks, BitSet trusted) {
+        int count = trusted.cardinality();
+        if (count == 0) {
+            return true;
+        }
+        int samples = Math.min(SPOT_CHECK_PIECES, count);
+        int stride = count / samples;
+        int skip = ThreadLocalRandom.current().nextInt(stride);
+        int checked = 0;
+        for (int i = trusted.nextSetBit(0); i >= 0 && checked < samples; i = trusted.nextSetBit(i + 1)) {
+            if (skip-- > 0) {
+                continue;
+            }
+            ChunkDescriptor chunk = chunks.get(i);
+            if (!isPresent(chunk) || !delegate.verify(chunk)) {
+                return false;
+            }
+            checked++;
+            skip = stride - 1;
+        }
+        return true;
+    }
+
+    /**
+     * True if every storage unit backing 'chunk' is large enough to hold its
+     * part of the piece (a deleted or truncated file is not).
+     */
+    private static boolean isPresent(ChunkDescriptor chunk) {
+        boolean[] present = { true };
+        chunk.getData().visitUnits((unit, off, lim) -> {
+            if (unit.size() < lim) {
+                present[0] = false;
+                return false;
+            }
+            return true;
+        });
+        return present[0];
+    }
+}
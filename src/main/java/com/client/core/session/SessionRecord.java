@@ -0,0 +1,160 @@
+package com.client.core.session;
+
+import java.util.BitSet;
+
+/**
+ * What is kept about one torrent across restarts. Setters only flag the
+ * record as changed when the value actually differs, so SessionStore
+ * re-encodes just the torrents that moved since the last snapshot.
+ */
+public class SessionRecord {
+
+    private final String id;
+    private byte[] infoHash; // 20 bytes, null until known
+    private String magnetLink;
+    private String torrentFile;
+    private String name = "";
+    private String storageDirectory = "";
+    private int priority;
+    private int position;
+    private boolean complete;
+    private int piecesTotal;
+    private BitSet pieces = new BitSet();
+    private long addedAt;
+    private boolean changed = true;
+
+    public SessionRecord(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public byte[] getInfoHash() {
+        return infoHash;
+    }
+
+    public void setInfoHash(byte[] infoHash) {
+        if (!java.util.Arrays.equals(this.infoHash, infoHash)) {
+            this.infoHash = infoHash;
+            changed = true;
+        }
+    }
+
+    public String getMagnetLink() {
+        return magnetLink;
+    }
+
+    public String getTorrentFile() {
+        return torrentFile;
+    }
+
+    /**
+     * Where the metainfo comes from: a magnet link or a .torrent path.
+     */
+    public void setSource(String magnetLink, String torrentFile) {
+        this.magnetLink = magnetLink;
+        this.torrentFile = torrentFile;
+        changed = true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        String value = name != null ? name : "";
+        if (!value.equals(this.name)) {
+            this.name = value;
+            changed = true;
+        }
+    }
+
+    public String getStorageDirectory() {
+        return storageDirectory;
+    }
+
+    public void setStorageDirectory(String storageDirectory) {
+        String value = storageDirectory != null ? storageDirectory : "";
+        if (!value.equals(this.storageDirectory)) {
+            this.storageDirectory = value;
+            changed = true;
+        }
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        if (priority != this.priority) {
+            this.priority = priority;
+            changed = true;
+        }
+    }
+
+    /**
+     * Place in the queue (priority first, then order added); restored in
+     * this order.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        if (position != this.position) {
+            this.position = position;
+            changed = true;
+        }
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        if (complete != this.complete) {
+            this.complete = complete;
+            changed = true;
+        }
+    }
+
+    public int getPiecesTotal() {
+        return piecesTotal;
+    }
+
+    /**
+     * Verified pieces; a copy, may be empty.
+     */
+    public BitSet getPieces() {
+        return (BitSet) pieces.clone();
+    }
+
+    public void setPieces(BitSet pieces, int piecesTotal) {
+        if (piecesTotal != this.piecesTotal || !pieces.equals(this.pieces)) {
+            this.pieces = (BitSet) pieces.clone();
+            this.piecesTotal = piecesTotal;
+            changed = true;
+        }
+    }
+
+    public long getAddedAt() {
+        return addedAt;
+    }
+
+    public void setAddedAt(long addedAt) {
+        if (addedAt != this.addedAt) {
+            this.addedAt = addedAt;
+            changed = true;
+        }
+    }
+
+    boolean isChanged() {
+        return changed;
+    }
+
+    void clearChanged() {
+        changed = false;
+    }
+}
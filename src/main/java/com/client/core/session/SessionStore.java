@@ -0,0 +1,299 @@
+package com.client.core.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Session File
+ *
+ * Features:
+ * 1. Compact - one binary file: infohash, metainfo source (magnet or .torrent
+ * path), storage directory, priority, queue position and the verified-piece
+ * bitmap per torrent, guarded by a CRC32
+ * 2. Incremental - each record keeps its encoded bytes; a snapshot re-encodes
+ * only records changed since the last one and is skipped when nothing changed
+ * 3. Crash safe - snapshots go to a temporary file that is synced to disk
+ * and then moved into place; the file it replaces is kept as a backup (.bak)
+ * 4. Fallback - a file that is missing or fails its checksum is never
+ * half-restored; the backup is read instead
+ *
+ * All methods are synchronized.
+ */
+public class SessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+
+    private static final int MAGIC = 0x4f535353; // "OSSS"
+    private static final int VERSION = 1;
+
+    private static final int FLAG_INFO_HASH = 1;
+    private static final int FLAG_COMPLETE = 1 << 1;
+    private static final int FLAG_MAGNET = 1 << 2;
+    private static final int FLAG_FILE = 1 << 3;
+
+    private static class Entry {
+        final SessionRecord record;
+        byte[] encoded;
+
+        Entry(SessionRecord record) {
+            this.record = record;
+        }
+    }
+
+    private final Path file;
+    private final Path backup; // The file the last snapshot replaced
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private boolean dirty;
+
+    public SessionStore(Path file) {
+        this.file = file;
+        this.backup = file.resolveSibling(file.getFileName() + ".bak");
+    }
+
+    /**
+     * Reads the session file, replacing whatever is held. Records come back
+     * in queue order; if the file is absent or unreadable the backup is
+     * read, and if that fails too there are none.
+     */
+    public synchronized List<SessionRecord> load() {
+        dirty = false;
+        List<SessionRecord> records = read(file);
+        if (records == null && Files.isRegularFile(backup)) {
+            logger.warn("[SESSION] Restoring from backup {}", backup);
+            records = read(backup);
+        }
+        return records != null ? records : new ArrayList<>();
+    }
+
+    /**
+     * Reads one session file into 'entries'; null (and nothing held) if it is
+     * absent or unreadable.
+     */
+    private List<SessionRecord> read(Path source) {
+        entries.clear();
+        if (!Files.isRegularFile(source)) {
+            return null;
+        }
+        List<SessionRecord> records = new ArrayList<>();
+        try {
+            byte[] bytes = Files.readAllBytes(source);
+            if (bytes.length < 16) {
+                throw new IOException("truncated");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 8);
+            DataInputStream trailer = new DataInputStream(
+                    new ByteArrayInputStream(bytes, bytes.length - 8, 8));
+            if (trailer.readLong() != crc.getValue()) {
+                throw new IOException("checksum mismatch");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+            if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+                throw new IOException("not a version " + VERSION + " session file");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                SessionRecord record = decode(encoded);
+                record.clearChanged();
+                Entry entry = new Entry(record);
+                entry.encoded = encoded;
+                entries.put(record.getId(), entry);
+                records.add(record);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("[SESSION] Ignoring unreadable session file {}: {}", source, e.getMessage());
+            entries.clear();
+            return null;
+        }
+        records.sort(Comparator.comparingInt(SessionRecord::getPosition));
+        return records;
+    }
+
+    public synchronized void put(SessionRecord record) {
+        entries.put(record.getId(), new Entry(record));
+        dirty = true;
+    }
+
+    public synchronized void remove(String id) {
+        if (entries.remove(id) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Applies 'change' to the record of 'id', if there is one.
+     */
+    public synchronized void update(String id, Consumer<SessionRecord> change) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            change.accept(entry.record);
+            if (entry.record.isChanged()) {
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Piece state of 'id' as last recorded, or null.
+     */
+    public synchronized BitSet getPieces(String id, int piecesTotal) {
+        Entry entry = entries.get(id);
+        if (entry == null || entry.record.getPiecesTotal() != piecesTotal) {
+            return null;
+        }
+        return entry.record.getPieces();
+    }
+
+    /**
+     * Writes the session file if anything changed. Returns true if written.
+     */
+    public synchronized boolean snapshot() throws IOException {
+        if (!dirty) {
+            return false;
+        }
+        int reencoded = 0;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "session", ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream raw = Channels.newOutputStream(channel);
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        new java.io.BufferedOutputStream(raw, 64 * 1024), crc);
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(entries.size());
+                for (Entry entry : entries.values()) {
+                    if (entry.encoded == null || entry.record.isChanged()) {
+                        entry.encoded = encode(entry.record);
+                        entry.record.clearChanged();
+                        reencoded++;
+                    }
+                    out.writeInt(entry.encoded.length);
+                    out.write(entry.encoded);
+                }
+                out.flush();
+                // Checksum trailer, not part of what it covers
+                new DataOutputStream(raw).writeLong(crc.getValue());
+                // On disk before it replaces anything, or a crash could leave an empty file
+                channel.force(true);
+            }
+            if (Files.isRegularFile(file)) {
+                move(file, backup);
+            }
+            move(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        dirty = false;
+        logger.debug("[SESSION] Saved {} torrents ({} re-encoded)", entries.size(), reencoded);
+        return true;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static byte[] encode(SessionRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        int flags = (record.getInfoHash() != null ? FLAG_INFO_HASH : 0)
+                | (record.isComplete() ? FLAG_COMPLETE : 0)
+                | (record.getMagnetLink() != null ? FLAG_MAGNET : 0)
+                | (record.getTorrentFile() != null ? FLAG_FILE : 0);
+        writeString(out, record.getId());
+        out.writeByte(flags);
+        if (record.getInfoHash() != null) {
+            out.write(record.getInfoHash(), 0, 20);
+        }
+        if (record.getMagnetLink() != null) {
+            writeString(out, record.getMagnetLink());
+        }
+        if (record.getTorrentFile() != null) {
+            writeString(out, record.getTorrentFile());
+        }
+        writeString(out, record.getName());
+        writeString(out, record.getStorageDirectory());
+        out.writeInt(record.getPriority());
+        out.writeInt(record.getPosition());
+        out.writeLong(record.getAddedAt());
+        out.writeInt(record.getPiecesTotal());
+        byte[] pieces = record.getPieces().toByteArray();
+        out.writeInt(pieces.length);
+        out.write(pieces);
+        return bytes.toByteArray();
+    }
+
+    private static SessionRecord decode(byte[] encoded) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        SessionRecord record = new SessionRecord(readString(in));
+        int flags = in.readUnsignedByte();
+        if ((flags & FLAG_INFO_HASH) != 0) {
+            byte[] infoHash = new byte[20];
+            in.readFully(infoHash);
+            record.setInfoHash(infoHash);
+        }
+        String magnetLink = (flags & FLAG_MAGNET) != 0 ? readString(in) : null;
+        String torrentFile = (flags & FLAG_FILE) != 0 ? readString(in) : null;
+        record.setSource(magnetLink, torrentFile);
+        record.setName(readString(in));
+        record.setStorageDirectory(readString(in));
+        record.setPriority(in.readInt());
+        record.setPosition(in.readInt());
+        record.setAddedAt(in.readLong());
+        int piecesTotal = in.readInt();
+        byte[] pieces = new byte[in.readInt()];
+        in.readFully(pieces);
+        record.setPieces(BitSet.valueOf(pieces), piecesTotal);
+        record.setComplete((flags & FLAG_COMPLETE) != 0);
+        return record;
+    }
+
+    // writeUTF caps strings at 64 KiB; magnet links with many trackers can be longer
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
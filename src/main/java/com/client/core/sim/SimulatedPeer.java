@@ -0,0 +1,94 @@
+package com.client.core.sim;
+
+import bt.net.InetPeer;
+import bt.net.Peer;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.BitSet;
+
+/**
+ * A remote peer in the offline swarm simulator.
+ * Static profile (bandwidth, latency, churn) plus the mutable state the
+ * simulator keeps while the peer is connected.
+ */
+public class SimulatedPeer {
+
+    private final int id;
+    private final long uploadRate; // bytes per second this peer gives us
+    private final long latencyMs; // request -> first byte
+    private final double acquireRate; // pieces per second gained from the rest of the swarm
+    private final long meanSessionMs; // churn: mean connected time (0 = never leaves)
+    private final long meanOfflineMs; // churn: mean time before reconnecting
+    private final BitSet initialPieces;
+    private final Peer peer;
+
+    // Simulation state
+    final BitSet pieces = new BitSet();
+    boolean connected;
+    int generation; // Bumped on disconnect to invalidate in-flight transfers
+    int assignedPiece = -1;
+    long bytesThisTick; // Delivered to us since the last tick
+
+    public SimulatedPeer(int id, long uploadRate, long latencyMs, double acquireRate,
+            long meanSessionMs, long meanOfflineMs, BitSet initialPieces) {
+        this.id = id;
+        this.uploadRate = uploadRate;
+        this.latencyMs = latencyMs;
+        this.acquireRate = acquireRate;
+        this.meanSessionMs = meanSessionMs;
+        this.meanOfflineMs = meanOfflineMs;
+        this.initialPieces = (BitSet) initialPieces.clone();
+        this.peer = InetPeer.build(address(id), 6881);
+    }
+
+    private static InetAddress address(int id) {
+        try {
+            // 10.x.y.z, no DNS lookup involved
+            return InetAddress.getByAddress(new byte[] { 10, (byte) (id >> 16), (byte) (id >> 8), (byte) id });
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid simulated peer id " + id, e);
+        }
+    }
+
+    void reset() {
+        pieces.clear();
+        pieces.or(initialPieces);
+        connected = false;
+        generation = 0;
+        assignedPiece = -1;
+        bytesThisTick = 0;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getUploadRate() {
+        return uploadRate;
+    }
+
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+
+    public double getAcquireRate() {
+        return acquireRate;
+    }
+
+    public long getMeanSessionMs() {
+        return meanSessionMs;
+    }
+
+    public long getMeanOfflineMs() {
+        return meanOfflineMs;
+    }
+
+    public BitSet getInitialPieces() {
+        return (BitSet) initialPieces.clone();
+    }
+
+    public Peer getPeer() {
+        return peer;
+    }
+}
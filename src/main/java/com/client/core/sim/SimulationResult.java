@@ -0,0 +1,68 @@
+package com.client.core.sim;
+
+/**
+ * Outcome of one simulated download.
+ */
+public class SimulationResult {
+
+    private final String strategy;
+    private final boolean completed;
+    private final long completionTimeMs; // Simulated time; time limit if not completed
+    private final long downloadedBytes;
+    private final long duplicateBytes;
+    private final double avgDistributedCopies;
+    private final int minAvailability; // Lowest piece availability seen among missing pieces
+    private final long endgameStartMs; // Simulated time endgame started; -1 if it never did
+
+    public SimulationResult(String strategy, boolean completed, long completionTimeMs, long downloadedBytes,
+            long duplicateBytes, double avgDistributedCopies, int minAvailability, long endgameStartMs) {
+        this.strategy = strategy;
+        this.completed = completed;
+        this.completionTimeMs = completionTimeMs;
+        this.downloadedBytes = downloadedBytes;
+        this.duplicateBytes = duplicateBytes;
+        this.avgDistributedCopies = avgDistributedCopies;
+        this.minAvailability = minAvailability;
+        this.endgameStartMs = endgameStartMs;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public long getCompletionTimeMs() {
+        return completionTimeMs;
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes;
+    }
+
+    public long getDuplicateBytes() {
+        return duplicateBytes;
+    }
+
+    public double getAvgDistributedCopies() {
+        return avgDistributedCopies;
+    }
+
+    public int getMinAvailability() {
+        return minAvailability;
+    }
+
+    public long getEndgameStartMs() {
+        return endgameStartMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-28s %-9s %10.1fs %12d B %12d B dup %7.2f copies  min-avail %d  endgame %s",
+                strategy, completed ? "complete" : "TIMEOUT", completionTimeMs / 1000.0, downloadedBytes,
+                duplicateBytes, avgDistributedCopies, minAvailability,
+                endgameStartMs >= 0 ? String.format("%.1fs", endgameStartMs / 1000.0) : "-");
+    }
+}
@@ -0,0 +1,58 @@
+package com.client.core.sim;
+
+import bt.torrent.selector.PieceSelector;
+import bt.torrent.selector.RarestFirstSelector;
+import bt.torrent.selector.SequentialSelector;
+import com.client.core.OrchestratedPieceSelector;
+import com.client.core.brain.SwarmBrains;
+import com.client.core.swarm.EndgameCoordinator;
+import com.client.core.swarm.OpenPieceBudget;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Offline strategy benchmark. Runs every piece-selection strategy through the
+ * same seeded swarm and prints one row per strategy. The orchestrated selector
+ * runs the given brain strategy (a SwarmBrains spec such as "ruby:brain.rb";
+ * a bare .rb path means the Ruby strategy), inline and with its own
+ * open-piece budget, as the ReplayBacktester builds it.
+ *
+ * Usage: SwarmBenchmark [seed] [pieces] [peers] [seedFraction] [churnPerMinute] [strategy]
+ */
+public class SwarmBenchmark {
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 42L;
+        int pieces = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int peers = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+        double seedFraction = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+        double churn = args.length > 4 ? Double.parseDouble(args[4]) : 0.5;
+        String brainSpec = args.length > 5 ? brainSpec(args[5]) : SwarmBrains.DEFAULT_STRATEGY;
+
+        SwarmScenario scenario = SwarmScenario.generate(seed, pieces, peers, seedFraction, churn);
+        SwarmSimulator simulator = new SwarmSimulator(scenario, seed);
+
+        // Only deterministic selectors: Bt's randomized rarest uses an unseeded RNG
+        Map<String, Supplier<PieceSelector>> strategies = new LinkedHashMap<>();
+        int maxOpen = OrchestratedPieceSelector.DEFAULT_MAX_OPEN_PIECES;
+        strategies.put("orchestrated[" + brainSpec + "]", () -> new OrchestratedPieceSelector(
+                EndgameCoordinator.DEFAULT_ENDGAME_BLOCKS, maxOpen, new OpenPieceBudget(maxOpen),
+                SwarmBrains.createInline(brainSpec)));
+        strategies.put("bt-rarest-first", RarestFirstSelector::rarest);
+        strategies.put("bt-sequential", SequentialSelector::sequential);
+
+        System.out.println("=== Swarm Benchmark ===");
+        System.out.println("Scenario: " + scenario.getName());
+        for (Map.Entry<String, Supplier<PieceSelector>> entry : strategies.entrySet()) {
+            SimulationResult result = simulator.run(entry.getKey(), entry.getValue().get());
+            System.out.println(result);
+        }
+    }
+
+    private static String brainSpec(String arg) {
+        // Older invocations pass the Ruby script itself
+        return arg.endsWith(".rb") && arg.indexOf(':') < 0 ? "ruby:" + arg : arg;
+    }
+}
@@ -0,0 +1,98 @@
+package com.client.core.sim;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Immutable description of a simulated swarm: torrent geometry, our own
+ * download capacity and the remote peers. Scenarios generated from the same
+ * seed are identical, so strategy benchmarks are reproducible in CI.
+ */
+public class SwarmScenario {
+
+    private final String name;
+    private final int pieceCount;
+    private final int pieceSize;
+    private final long downloadCapacity; // bytes per second, our side
+    private final long timeLimitMs;
+    private final List<SimulatedPeer> peers;
+
+    public SwarmScenario(String name, int pieceCount, int pieceSize, long downloadCapacity, long timeLimitMs,
+            List<SimulatedPeer> peers) {
+        this.name = name;
+        this.pieceCount = pieceCount;
+        this.pieceSize = pieceSize;
+        this.downloadCapacity = downloadCapacity;
+        this.timeLimitMs = timeLimitMs;
+        this.peers = Collections.unmodifiableList(new ArrayList<>(peers));
+    }
+
+    /**
+     * Generates a swarm with a mix of seeds and partial leechers.
+     *
+     * @param seed           RNG seed; same seed, same swarm
+     * @param pieceCount     Number of pieces in the torrent
+     * @param peerCount      Number of remote peers
+     * @param seedFraction   Share of peers that start with every piece (0.0 - 1.0)
+     * @param churnPerMinute Expected disconnects per peer per minute (0 = static swarm)
+     */
+    public static SwarmScenario generate(long seed, int pieceCount, int peerCount, double seedFraction,
+            double churnPerMinute) {
+        Random random = new Random(seed);
+        List<SimulatedPeer> peers = new ArrayList<>(peerCount);
+        long meanSessionMs = churnPerMinute > 0 ? (long) (60000 / churnPerMinute) : 0;
+
+        for (int i = 0; i < peerCount; i++) {
+            BitSet pieces = new BitSet(pieceCount);
+            boolean isSeed = random.nextDouble() < seedFraction;
+            if (isSeed) {
+                pieces.set(0, pieceCount);
+            } else {
+                // Leechers hold a random share with some pieces rarer than others
+                double completeness = random.nextDouble() * 0.8;
+                for (int p = 0; p < pieceCount; p++) {
+                    double skew = 0.5 + (double) p / pieceCount; // Tail pieces are scarcer
+                    if (random.nextDouble() < completeness / skew) {
+                        pieces.set(p);
+                    }
+                }
+            }
+
+            long uploadRate = (64 + random.nextInt(2048)) * 1024L; // 64 KiB/s - 2 MiB/s
+            long latencyMs = 20 + random.nextInt(300);
+            double acquireRate = isSeed ? 0.0 : 0.05 + random.nextDouble() * 0.5;
+            peers.add(new SimulatedPeer(i + 1, uploadRate, latencyMs, acquireRate, meanSessionMs, 15000, pieces));
+        }
+
+        String name = String.format("seed=%d pieces=%d peers=%d seeds=%.0f%% churn=%.1f/min",
+                seed, pieceCount, peerCount, seedFraction * 100, churnPerMinute);
+        return new SwarmScenario(name, pieceCount, 256 * 1024, 8L * 1024 * 1024, 3_600_000, peers);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    public int getPieceSize() {
+        return pieceSize;
+    }
+
+    public long getDownloadCapacity() {
+        return downloadCapacity;
+    }
+
+    public long getTimeLimitMs() {
+        return timeLimitMs;
+    }
+
+    public List<SimulatedPeer> getPeers() {
+        return peers;
+    }
+}
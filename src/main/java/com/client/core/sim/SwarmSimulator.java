@@ -0,0 +1,440 @@
+package com.client.core.sim;
+
+import bt.net.ConnectionKey;
+import bt.torrent.PieceStatistics;
+import bt.torrent.selector.PieceSelector;
+import com.client.core.OrchestratedPieceSelector;
+import com.client.core.TorrentAgentRouter;
+import com.client.core.brain.SwarmSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.PrimitiveIterator;
+
+/**
+ * Deterministic Discrete-Event Swarm Simulator
+ *
+ * Runs a download against a {@link SwarmScenario} entirely in-process: no
+ * sockets, no wall clock. Each remote peer serves one piece at a time at
+ * min(its upload rate, our fair share of capacity) after its latency. Remote
+ * leechers keep acquiring pieces (HAVE) and peers churn in and out.
+ *
+ * An OrchestratedPieceSelector is wired as in the client: its endgame
+ * coordinator gets the scenario's geometry, completed pieces reach it through
+ * a TorrentAgentRouter as Bt's piece-verified events do, and its open-piece
+ * slots are released when the run ends. Every simulated second it gets a
+ * SwarmSnapshot of the simulated swarm and runs a brain round, so the
+ * decision of its SwarmBrain is applied on every tick. Build it with an
+ * inline brain (SwarmBrains.createInline) and its own OpenPieceBudget, as
+ * the ReplayBacktester does: decisions then land on the tick that asked for
+ * them and runs do not share open-piece slots.
+ *
+ * All randomness comes from the run seed and events are ordered by
+ * (time, sequence), so the same inputs always give the same result.
+ */
+public class SwarmSimulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SwarmSimulator.class);
+
+    private static final long TICK_MS = 1000;
+    private static final ConnectionKey[] NO_PEERS = new ConnectionKey[0];
+
+    // Stands in for the infohash when routing piece events
+    private static final bt.metainfo.TorrentId SIM_TORRENT = bt.metainfo.TorrentId.fromBytes(
+            new byte[bt.metainfo.TorrentId.length()]);
+
+    private enum EventType {
+        JOIN, LEAVE, HAVE, PIECE_DONE, TICK
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final long time;
+        final long sequence;
+        final EventType type;
+        final SimulatedPeer peer;
+        final int piece;
+        final int generation;
+
+        Event(long time, long sequence, EventType type, SimulatedPeer peer, int piece, int generation) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.peer = peer;
+            this.piece = piece;
+            this.generation = generation;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            int c = Long.compare(time, o.time);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    private final SwarmScenario scenario;
+    private final long seed;
+
+    // Per-run state
+    private PriorityQueue<Event> events;
+    private Random random;
+    private long now;
+    private long sequence;
+    private BitSet localPieces;
+    private int[] availability;
+    private int[] inProgress; // How many peers are currently sending each piece
+    private int activeTransfers;
+    private long downloadedBytes;
+    private long duplicateBytes;
+    private TorrentAgentRouter router; // Null unless the selector is an OrchestratedPieceSelector
+    private long endgameStart;
+
+    public SwarmSimulator(SwarmScenario scenario, long seed) {
+        this.scenario = scenario;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the scenario once with the given strategy.
+     *
+     * @param strategyName Label for the result row
+     * @param selector     Any Bt piece selector
+     */
+    public SimulationResult run(String strategyName, PieceSelector selector) {
+        int pieceCount = scenario.getPieceCount();
+        events = new PriorityQueue<>();
+        random = new Random(seed);
+        now = 0;
+        sequence = 0;
+        localPieces = new BitSet(pieceCount);
+        availability = new int[pieceCount];
+        inProgress = new int[pieceCount];
+        activeTransfers = 0;
+        downloadedBytes = 0;
+        duplicateBytes = 0;
+        router = null;
+        endgameStart = -1;
+
+        if (selector instanceof OrchestratedPieceSelector) {
+            OrchestratedPieceSelector orchestrated = (OrchestratedPieceSelector) selector;
+            orchestrated.setClock(() -> now, seed);
+            orchestrated.getEndgameCoordinator().setGeometry(scenario.getPieceSize(),
+                    (long) scenario.getPieceSize() * pieceCount);
+            router = new TorrentAgentRouter();
+            router.register(SIM_TORRENT, orchestrated);
+        }
+        selector.initSelector(pieceCount);
+
+        PieceStatistics statistics = new PieceStatistics() {
+            @Override
+            public int getCount(int pieceIndex) {
+                return availability[pieceIndex];
+            }
+
+            @Override
+            public int getPiecesTotal() {
+                return pieceCount;
+            }
+        };
+
+        for (SimulatedPeer peer : scenario.getPeers()) {
+            peer.reset();
+            // Stagger initial connections over the first few seconds
+            schedule(random.nextInt(5000), EventType.JOIN, peer, -1, 0);
+        }
+        schedule(TICK_MS, EventType.TICK, null, -1, 0);
+
+        double copiesSum = 0;
+        int copiesSamples = 0;
+        int minAvailability = Integer.MAX_VALUE;
+        long completionTime = -1;
+
+        while (!events.isEmpty()) {
+            Event event = events.poll();
+            now = event.time;
+            if (now > scenario.getTimeLimitMs()) {
+                break;
+            }
+
+            SimulatedPeer peer = event.peer;
+            switch (event.type) {
+                case JOIN:
+                    peer.connected = true;
+                    forEachPiece(peer.pieces, p -> availability[p]++);
+                    if (peer.getMeanSessionMs() > 0) {
+                        schedule(now + exponential(peer.getMeanSessionMs()), EventType.LEAVE, peer, -1,
+                                peer.generation);
+                    }
+                    scheduleNextHave(peer);
+                    requestNext(peer, selector, statistics);
+                    break;
+
+                case LEAVE:
+                    if (!peer.connected || event.generation != peer.generation) {
+                        break;
+                    }
+                    disconnect(peer);
+                    schedule(now + exponential(peer.getMeanOfflineMs()), EventType.JOIN, peer, -1, 0);
+                    break;
+
+                case HAVE:
+                    if (!peer.connected || event.generation != peer.generation) {
+                        break;
+                    }
+                    int missing = randomClearBit(peer.pieces);
+                    if (missing >= 0) {
+                        peer.pieces.set(missing);
+                        availability[missing]++;
+                        scheduleNextHave(peer);
+                        if (peer.assignedPiece < 0) {
+                            requestNext(peer, selector, statistics);
+                        }
+                    }
+                    break;
+
+                case PIECE_DONE:
+                    if (!peer.connected || event.generation != peer.generation) {
+                        break; // Transfer died with the connection
+                    }
+                    finishTransfer(peer, event.piece);
+                    if (localPieces.cardinality() == pieceCount) {
+                        completionTime = now;
+                        events.clear();
+                        break;
+                    }
+                    requestNext(peer, selector, statistics);
+                    break;
+
+                case TICK:
+                    // Health: distributed copies over the pieces we still need
+                    int min = Integer.MAX_VALUE;
+                    int aboveMin = 0;
+                    int needed = 0;
+                    for (int p = 0; p < pieceCount; p++) {
+                        if (localPieces.get(p)) {
+                            continue;
+                        }
+                        needed++;
+                        if (availability[p] < min) {
+                            min = availability[p];
+                        }
+                    }
+                    if (needed > 0) {
+                        for (int p = 0; p < pieceCount; p++) {
+                            if (!localPieces.get(p) && availability[p] > min) {
+                                aboveMin++;
+                            }
+                        }
+                        copiesSum += min + (double) aboveMin / needed;
+                        copiesSamples++;
+                        minAvailability = Math.min(minAvailability, min);
+                    }
+
+                    tickStrategy(selector);
+
+                    // Retry idle peers: the selector may change its mind after a tick
+                    for (SimulatedPeer p : scenario.getPeers()) {
+                        if (p.connected && p.assignedPiece < 0) {
+                            requestNext(p, selector, statistics);
+                        }
+                    }
+                    schedule(now + TICK_MS, EventType.TICK, null, -1, 0);
+                    break;
+            }
+        }
+
+        if (router != null) {
+            // As when the client stops a torrent
+            router.unregister(SIM_TORRENT, (OrchestratedPieceSelector) selector);
+            ((OrchestratedPieceSelector) selector).releaseAll();
+        }
+
+        boolean completed = completionTime >= 0;
+        SimulationResult result = new SimulationResult(strategyName, completed,
+                completed ? completionTime : scenario.getTimeLimitMs(), downloadedBytes, duplicateBytes,
+                copiesSamples > 0 ? copiesSum / copiesSamples : 0.0,
+                minAvailability == Integer.MAX_VALUE ? 0 : minAvailability, endgameStart);
+        logger.debug("[OPIT-SIM] {} | {}", scenario.getName(), result);
+        return result;
+    }
+
+    private void requestNext(SimulatedPeer peer, PieceSelector selector, PieceStatistics statistics) {
+        if (peer.assignedPiece >= 0) {
+            return;
+        }
+
+        // Interesting = peer has it and we don't. Like Bt's assignments, pieces
+        // already in flight elsewhere are only offered once nothing else is left.
+        BitSet interesting = (BitSet) peer.pieces.clone();
+        interesting.andNot(localPieces);
+        if (interesting.isEmpty()) {
+            return;
+        }
+        BitSet fresh = (BitSet) interesting.clone();
+        forEachPiece(interesting, p -> {
+            if (inProgress[p] > 0) {
+                fresh.clear(p);
+            }
+        });
+        BitSet offered = fresh.isEmpty() ? interesting : fresh;
+
+        PrimitiveIterator.OfInt next = selector.getNextPieces(offered, statistics).iterator();
+        int piece = -1;
+        while (next.hasNext()) {
+            int candidate = next.nextInt();
+            if (offered.get(candidate)) {
+                piece = candidate;
+                break;
+            }
+        }
+        if (piece < 0) {
+            return;
+        }
+
+        peer.assignedPiece = piece;
+        inProgress[piece]++;
+        activeTransfers++;
+
+        long share = scenario.getDownloadCapacity() / Math.max(1, activeTransfers);
+        long rate = Math.max(1, Math.min(peer.getUploadRate(), share));
+        long transferMs = (long) scenario.getPieceSize() * 1000 / rate;
+        schedule(now + peer.getLatencyMs() + transferMs, EventType.PIECE_DONE, peer, piece, peer.generation);
+    }
+
+    private void finishTransfer(SimulatedPeer peer, int piece) {
+        peer.assignedPiece = -1;
+        inProgress[piece]--;
+        activeTransfers--;
+        peer.bytesThisTick += scenario.getPieceSize();
+
+        if (localPieces.get(piece)) {
+            duplicateBytes += scenario.getPieceSize();
+            return;
+        }
+        localPieces.set(piece);
+        downloadedBytes += scenario.getPieceSize();
+        if (router != null) {
+            // Pieces are whole here, so each one is verified on arrival
+            router.pieceVerified(SIM_TORRENT, piece);
+        }
+    }
+
+    private void disconnect(SimulatedPeer peer) {
+        peer.connected = false;
+        peer.generation++;
+        forEachPiece(peer.pieces, p -> availability[p]--);
+        if (peer.assignedPiece >= 0) {
+            inProgress[peer.assignedPiece]--;
+            activeTransfers--;
+            peer.assignedPiece = -1;
+        }
+    }
+
+    private void tickStrategy(PieceSelector selector) {
+        int pieceCount = scenario.getPieceCount();
+        int complete = localPieces.cardinality();
+        double progress = 100.0 * complete / pieceCount;
+
+        // Per-peer arrays in the shape the live PeerPolicy builds
+        List<SimulatedPeer> connected = new ArrayList<>();
+        for (SimulatedPeer p : scenario.getPeers()) {
+            if (p.connected) {
+                connected.add(p);
+            }
+        }
+        int count = connected.size();
+        long[] downloadRates = new long[count];
+        float[] completeness = new float[count];
+        int[] rtt = new int[count];
+        int seeds = 0;
+        for (int i = 0; i < count; i++) {
+            SimulatedPeer p = connected.get(i);
+            downloadRates[i] = p.bytesThisTick * 1000 / TICK_MS;
+            completeness[i] = (float) p.pieces.cardinality() / pieceCount;
+            rtt[i] = (int) Math.min(Integer.MAX_VALUE, p.getLatencyMs());
+            if (p.pieces.cardinality() == pieceCount) {
+                seeds++;
+            }
+        }
+        for (SimulatedPeer p : scenario.getPeers()) {
+            p.bytesThisTick = 0;
+        }
+
+        if (selector instanceof OrchestratedPieceSelector) {
+            OrchestratedPieceSelector orchestrated = (OrchestratedPieceSelector) selector;
+            int min = minAvailability();
+            double copies = distributedCopies();
+            SwarmSnapshot snapshot = new SwarmSnapshot(now, progress, pieceCount - complete, seeds,
+                    count - seeds, copies, min, orchestrated.isAggressiveMode(),
+                    orchestrated.getEndgameCoordinator().isEndgame(), downloadRates, new long[count],
+                    completeness, rtt);
+            orchestrated.updateSwarm(count, seeds, copies, min);
+            orchestrated.updateProgress(progress);
+            orchestrated.updateRemainingPieces(pieceCount - complete);
+            // Simulated peers have no connection keys, so per-peer decisions have no target
+            orchestrated.evaluate(snapshot, NO_PEERS);
+            if (endgameStart < 0 && orchestrated.getEndgameCoordinator().isEndgame()) {
+                endgameStart = now;
+            }
+        }
+    }
+
+    // Swarm-wide figures, same definition as SwarmAvailability
+    private int minAvailability() {
+        int min = Integer.MAX_VALUE;
+        for (int count : availability) {
+            min = Math.min(min, count);
+        }
+        return min == Integer.MAX_VALUE ? 0 : min;
+    }
+
+    private double distributedCopies() {
+        int min = minAvailability();
+        int aboveMin = 0;
+        for (int count : availability) {
+            if (count > min) {
+                aboveMin++;
+            }
+        }
+        return min + (double) aboveMin / Math.max(1, availability.length);
+    }
+
+    private void scheduleNextHave(SimulatedPeer peer) {
+        if (peer.getAcquireRate() > 0) {
+            long delay = exponential((long) (1000 / peer.getAcquireRate()));
+            schedule(now + delay, EventType.HAVE, peer, -1, peer.generation);
+        }
+    }
+
+    private void schedule(long time, EventType type, SimulatedPeer peer, int piece, int generation) {
+        events.add(new Event(time, sequence++, type, peer, piece, generation));
+    }
+
+    private long exponential(long mean) {
+        return Math.max(1, (long) (-Math.log(1.0 - random.nextDouble()) * mean));
+    }
+
+    private int randomClearBit(BitSet pieces) {
+        int pieceCount = scenario.getPieceCount();
+        int missing = pieceCount - pieces.cardinality();
+        if (missing <= 0) {
+            return -1;
+        }
+        int skip = random.nextInt(missing);
+        int index = pieces.nextClearBit(0);
+        while (skip-- > 0) {
+            index = pieces.nextClearBit(index + 1);
+        }
+        return index < pieceCount ? index : -1;
+    }
+
+    private static void forEachPiece(BitSet pieces, java.util.function.IntConsumer action) {
+        for (int i = pieces.nextSetBit(0); i >= 0; i = pieces.nextSetBit(i + 1)) {
+            action.accept(i);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.client.core.status;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One torrent's preallocated status record on the StatusBus.
+ *
+ * Writers publish primitives between beginUpdate() and endUpdate(); nothing
+ * is allocated per update. Readers never block writers: read() is a seqlock
+ * read that retries while a write is in progress, so a subscriber always sees
+ * one complete update. The getters on the slot itself are for the writer,
+ * between beginUpdate() and endUpdate().
+ */
+public class StatusSlot {
+
+    private static final long DIRTY = Long.MAX_VALUE; // Newer than any cursor while being written
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final StatusBus bus;
+    private final StatusView values = new StatusView();
+    private final ReentrantLock writeLock = new ReentrantLock(); // Bt listener, queue and UI threads
+    private volatile long version; // Odd while a write is in progress
+    private volatile long stamp; // Bus sequence of the last update, DIRTY during one
+
+    StatusSlot(StatusBus bus, String id) {
+        this.bus = bus;
+        values.id = id;
+        values.name = "";
+        values.state = TorrentState.QUEUED;
+        values.etaSeconds = StatusView.ETA_UNKNOWN;
+        values.lastError = "";
+    }
+
+    public String getId() {
+        return values.id;
+    }
+
+    public void beginUpdate() {
+        writeLock.lock();
+        version = version + 1;
+        stamp = DIRTY;
+        VarHandle.storeStoreFence();
+    }
+
+    public void endUpdate() {
+        try {
+            version = version + 1;
+            stamp = bus.nextStamp();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Copies a consistent snapshot into 'target'.
+     */
+    public void read(StatusView target) {
+        int spins = 0;
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                values.copyTo(target);
+                VarHandle.loadLoadFence();
+                if (version == before) {
+                    return;
+                }
+            }
+            if (++spins % SPINS_BEFORE_YIELD == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    long getStamp() {
+        return stamp;
+    }
+
+    public void setName(String name) {
+        values.name = name != null ? name : "";
+    }
+
+    public String getName() {
+        return values.name;
+    }
+
+    public void setState(TorrentState state) {
+        values.state = state;
+    }
+
+    public TorrentState getState() {
+        return values.state;
+    }
+
+    public void setProgress(double progress) {
+        values.progress = progress;
+    }
+
+    public double getProgress() {
+        return values.progress;
+    }
+
+    public void setTransfer(long downloadedBytes, long uploadedBytes, long downloadRate, long uploadRate) {
+        values.downloadedBytes = downloadedBytes;
+        values.uploadedBytes = uploadedBytes;
+        values.downloadRate = downloadRate;
+        values.uploadRate = uploadRate;
+    }
+
+    public long getDownloadedBytes() {
+        return values.downloadedBytes;
+    }
+
+    public long getUploadedBytes() {
+        return values.uploadedBytes;
+    }
+
+    /**
+     * Wire overhead (headers, control messages) next to the payload counters.
+     */
+    public void setProtocol(long protocolDownloadedBytes, long protocolUploadedBytes) {
+        values.protocolDownloadedBytes = protocolDownloadedBytes;
+        values.protocolUploadedBytes = protocolUploadedBytes;
+    }
+
+    public void setPeers(int connectedPeers, int seeds, int leechers) {
+        values.connectedPeers = connectedPeers;
+        values.seeds = seeds;
+        values.leechers = leechers;
+    }
+
+    public void setSwarm(double distributedCopies, int minAvailability, long wastedBytes) {
+        values.distributedCopies = distributedCopies;
+        values.minAvailability = minAvailability;
+        values.wastedBytes = wastedBytes;
+    }
+
+    public void setTotalSize(long totalSize) {
+        values.totalSize = totalSize;
+    }
+
+    public void setEtaSeconds(long etaSeconds) {
+        values.etaSeconds = etaSeconds;
+    }
+
+    public void setLastError(String lastError) {
+        values.lastError = lastError != null ? lastError : "";
+    }
+}
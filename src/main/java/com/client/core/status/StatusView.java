@@ -0,0 +1,137 @@
+package com.client.core.status;
+
+/**
+ * Consistent copy of one StatusSlot. Subscribers get the same instance for
+ * every torrent of a delivery; copy what must outlive the callback.
+ */
+public class StatusView {
+
+    public static final long ETA_UNKNOWN = -1;
+
+    String id;
+    String name;
+    TorrentState state;
+    double progress; // 0.0 to 1.0
+    long downloadedBytes; // payload
+    long uploadedBytes; // payload
+    long downloadRate; // payload bytes per second
+    long uploadRate; // payload bytes per second
+    long protocolDownloadedBytes;
+    long protocolUploadedBytes;
+    int connectedPeers;
+    int seeds;
+    int leechers;
+    long totalSize;
+    long etaSeconds;
+    String lastError;
+    long wastedBytes;
+    double distributedCopies;
+    int minAvailability;
+
+    public StatusView copy() {
+        StatusView copy = new StatusView();
+        copyTo(copy);
+        return copy;
+    }
+
+    void copyTo(StatusView target) {
+        target.id = id;
+        target.name = name;
+        target.state = state;
+        target.progress = progress;
+        target.downloadedBytes = downloadedBytes;
+        target.uploadedBytes = uploadedBytes;
+        target.downloadRate = downloadRate;
+        target.uploadRate = uploadRate;
+        target.protocolDownloadedBytes = protocolDownloadedBytes;
+        target.protocolUploadedBytes = protocolUploadedBytes;
+        target.connectedPeers = connectedPeers;
+        target.seeds = seeds;
+        target.leechers = leechers;
+        target.totalSize = totalSize;
+        target.etaSeconds = etaSeconds;
+        target.lastError = lastError;
+        target.wastedBytes = wastedBytes;
+        target.distributedCopies = distributedCopies;
+        target.minAvailability = minAvailability;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TorrentState getState() {
+        return state;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes;
+    }
+
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    public long getDownloadRate() {
+        return downloadRate;
+    }
+
+    public long getUploadRate() {
+        return uploadRate;
+    }
+
+    public long getProtocolDownloadedBytes() {
+        return protocolDownloadedBytes;
+    }
+
+    public long getProtocolUploadedBytes() {
+        return protocolUploadedBytes;
+    }
+
+    public int getConnectedPeers() {
+        return connectedPeers;
+    }
+
+    public int getSeeds() {
+        return seeds;
+    }
+
+    public int getLeechers() {
+        return leechers;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Seconds until complete, ETA_UNKNOWN if there is no rate to tell.
+     */
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public long getWastedBytes() {
+        return wastedBytes;
+    }
+
+    public double getDistributedCopies() {
+        return distributedCopies;
+    }
+
+    public int getMinAvailability() {
+        return minAvailability;
+    }
+}
@@ -0,0 +1,23 @@
+package com.client.core.status;
+
+/**
+ * Lifecycle state published on the status bus.
+ */
+public enum TorrentState {
+    QUEUED("Queued"),
+    INITIALIZING("Initializing"),
+    FETCHING_METADATA("Fetching metadata"),
+    DOWNLOADING("Downloading"),
+    SEEDING("Seeding"),
+    ERROR("Error");
+
+    private final String label;
+
+    TorrentState(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,101 @@
+package com.client.core.storage;
+
+import bt.metainfo.TorrentId;
+import bt.net.Peer;
+import bt.net.buffer.BufferedData;
+import bt.torrent.data.BlockRead;
+import bt.torrent.data.BlockWrite;
+import bt.torrent.data.DataWorker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Bt's data worker with a count of the block writes still in flight
+ *
+ * Features:
+ * 1. Pending writes - a received block counts from the moment it is queued
+ * until it is written and, if it completed its piece, the piece is verified;
+ * a piece verified late is still in the resume state taken after draining
+ * 2. Draining - awaitIdle() waits, up to a deadline, until no write is
+ * pending, so shutdown does not tear down the I/O thread under queued blocks
+ * 3. Failed pieces - a piece whose hash check fails is reported to the
+ * failure listener; Bt only announces the pieces that pass
+ *
+ * Reads are passed through unchanged.
+ */
+public class DrainableDataWorker implements DataWorker {
+
+    private static final long POLL_MS = 10;
+
+    private final DataWorker delegate;
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private volatile ObjIntConsumer<TorrentId> failureListener = (torrentId, pieceIndex) -> {
+    };
+
+    public DrainableDataWorker(DataWorker delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<BlockRead> addBlockRequest(TorrentId torrentId, Peer peer, int pieceIndex, int offset,
+            int length) {
+        return delegate.addBlockRequest(torrentId, peer, pieceIndex, offset, length);
+    }
+
+    @Override
+    public CompletableFuture<BlockWrite> addBlock(TorrentId torrentId, Peer peer, int pieceIndex, int offset,
+            BufferedData buffer) {
+        pendingWrites.incrementAndGet();
+        CompletableFuture<BlockWrite> future;
+        try {
+            future = delegate.addBlock(torrentId, peer, pieceIndex, offset, buffer);
+        } catch (RuntimeException e) {
+            pendingWrites.decrementAndGet();
+            throw e;
+        }
+        future.whenComplete((write, error) -> {
+            CompletableFuture<Boolean> verification = write != null
+                    ? write.getVerificationFuture().orElse(null) : null;
+            if (verification == null) {
+                pendingWrites.decrementAndGet();
+            } else {
+                verification.whenComplete((verified, e) -> {
+                    pendingWrites.decrementAndGet();
+                    if (Boolean.FALSE.equals(verified)) {
+                        failureListener.accept(torrentId, pieceIndex);
+                    }
+                });
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Called with the torrent and piece index of every failed hash check.
+     */
+    public void setFailureListener(ObjIntConsumer<TorrentId> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    public int getPendingWrites() {
+        return pendingWrites.get();
+    }
+
+    /**
+     * Waits until no block write is pending or 'timeoutMs' has passed.
+     * Returns true if idle.
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        // Polled rather than signalled: the count is touched on every block
+        while (pendingWrites.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(POLL_MS);
+        }
+        return true;
+    }
+}
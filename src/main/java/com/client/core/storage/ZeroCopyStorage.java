@@ -15,7 +15,10 @@ import java.nio.MappedByteBuffer;
 public class ZeroCopyStorage implements Storage {
 
     private static final Logger logger = LoggerFactory.getLogger(ZeroCopyStorage.class);
+    private static final int PAGE_SIZE = 64 * 1024; // Granularity of dirty tracking
     private final MappedByteBuffer memory;
+    // Pages of 'memory' written through this storage since the last flush
+    private final java.util.BitSet dirtyPages = new java.util.BitSet();
 
     public ZeroCopyStorage() {
         this.memory = HyperLinkAllocator.getBuffer();
@@ -26,22 +29,57 @@ public class ZeroCopyStorage implements Storage {
 
     @Override
     public StorageUnit getUnit(Torrent torrent, TorrentFile file) {
-        return new ZeroCopyStorageUnit(memory, file);
+        return new ZeroCopyStorageUnit(this, memory, file);
     }
 
+    /**
+     * Forces the ranges written since the last flush to the backing file;
+     * forcing the whole 512MB mapping would be far more expensive.
+     */
     @Override
     public void flush() {
-        // MappedByteBuffer is OS-backed, we can force flush but it's expensive.
-        // For zero-copy performance we might trust the OS paging, or call force() if
-        // strict persistence is needed.
-        // memory.force();
+        java.util.BitSet pages;
+        synchronized (dirtyPages) {
+            if (dirtyPages.isEmpty()) {
+                return;
+            }
+            pages = (java.util.BitSet) dirtyPages.clone();
+            dirtyPages.clear();
+        }
+        long flushed = 0;
+        for (int from = pages.nextSetBit(0); from >= 0; from = pages.nextSetBit(from)) {
+            int to = pages.nextClearBit(from);
+            int index = from * PAGE_SIZE;
+            int length = (int) Math.min((long) (to - from) * PAGE_SIZE, memory.capacity() - index);
+            memory.force(index, length);
+            flushed += length;
+            from = to;
+        }
+        logger.debug("[OPIT-MEM] Flushed {} dirty bytes", flushed);
+    }
+
+    public long getDirtyBytes() {
+        synchronized (dirtyPages) {
+            return (long) dirtyPages.cardinality() * PAGE_SIZE;
+        }
+    }
+
+    private void markDirty(int position, int length) {
+        if (length <= 0) {
+            return;
+        }
+        synchronized (dirtyPages) {
+            dirtyPages.set(position / PAGE_SIZE, (position + length - 1) / PAGE_SIZE + 1);
+        }
     }
 
     private static class ZeroCopyStorageUnit implements StorageUnit {
+        private final ZeroCopyStorage storage;
         private final MappedByteBuffer memory;
         private final TorrentFile file;
 
-        public ZeroCopyStorageUnit(MappedByteBuffer memory, TorrentFile file) {
+        public ZeroCopyStorageUnit(ZeroCopyStorage storage, MappedByteBuffer memory, TorrentFile file) {
+            this.storage = storage;
             this.memory = memory;
             this.file = file;
         }
@@ -79,6 +117,7 @@ public class ZeroCopyStorage implements Storage {
                 MappedByteBuffer slice = (MappedByteBuffer) memory.duplicate();
                 slice.position(writePos);
                 slice.put(buffer);
+                storage.markDirty(writePos, length);
 
                 logger.info(
                         "[OPIT-MEM] Wrote Piece (offset={}) directly to Off-Heap Memory address ({} bytes) (0ms disk I/O)",
@@ -121,6 +160,7 @@ public class ZeroCopyStorage implements Storage {
                     // Reflection or method lookup if we don't know API?
                     // assuming standard Bt API: it has transferTo(ByteBuffer)
                     buffer.transferTo(slice);
+                    storage.markDirty(writePos, length);
                 } catch (Exception e) {
                     logger.error("Failed to write ByteBufferView to memory", e);
                     return 0;
@@ -0,0 +1,55 @@
+package com.client.core.swarm;
+
+import bt.metainfo.TorrentId;
+import bt.net.ConnectionResult;
+import bt.net.IConnectionSource;
+import bt.net.Peer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bt's connection source behind the ConnectionBudget
+ *
+ * Every outgoing connection attempt first asks the budget; a refused one
+ * fails at once without opening a socket, and the peer is tried again on
+ * the next discovery round. Incoming connections do not come through here;
+ * they are bounded by the global cap alone and trimmed like the rest.
+ */
+public class BudgetedConnectionSource implements IConnectionSource {
+
+    private static final String REFUSED = "Connection budget exhausted";
+
+    private final IConnectionSource delegate;
+    private final ConnectionBudget budget;
+
+    public BudgetedConnectionSource(IConnectionSource delegate, ConnectionBudget budget) {
+        this.delegate = delegate;
+        this.budget = budget;
+    }
+
+    /**
+     * Deprecated in Bt and not called by it; still abstract there, so it is
+     * answered through getConnectionAsync.
+     */
+    @Override
+    @Deprecated
+    public ConnectionResult getConnection(Peer peer, TorrentId torrentId) {
+        return getConnectionAsync(peer, torrentId).join();
+    }
+
+    @Override
+    public CompletableFuture<ConnectionResult> getConnectionAsync(Peer peer, TorrentId torrentId) {
+        if (!budget.tryAcquire(torrentId)) {
+            return CompletableFuture.completedFuture(ConnectionResult.failure(REFUSED));
+        }
+        CompletableFuture<ConnectionResult> future;
+        try {
+            future = delegate.getConnectionAsync(peer, torrentId);
+        } catch (RuntimeException e) {
+            budget.release(torrentId, false);
+            throw e;
+        }
+        future.whenComplete((result, error) -> budget.release(torrentId, result != null && result.isSuccess()));
+        return future;
+    }
+}
@@ -0,0 +1,274 @@
+package com.client.core.swarm;
+
+import bt.metainfo.TorrentId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide Connection Budget
+ *
+ * Features:
+ * 1. Global cap - Bt reads its connection limit from here on every new
+ * connection, so open sockets stay below connections.max_global however
+ * many torrents run
+ * 2. Shares by need - the cap is split max-min fairly over what each torrent
+ * needs: a downloading torrent asks for its own limit (network.max_peers),
+ * one still fetching metadata for a few peers, a seed for the peers
+ * interested in it plus a little spare
+ * 3. Admission - while the cap is nearly used up, outgoing connection
+ * attempts of a torrent at its share are refused before a socket is opened
+ * (see BudgetedConnectionSource); below that, spare capacity is anyone's
+ * 4. Shared half-open limit - connection attempts in flight are capped
+ * process-wide (connections.max_half_open); when they are contended every
+ * torrent gets a fair part, so one large swarm cannot hold all of them
+ * 5. Trimming - a torrent above its share while the cap is under pressure,
+ * or above its own limit, is told how many peers to drop; PeerPolicy picks
+ * the least useful ones
+ *
+ * Admission is cheap and lock-free; shares are recomputed from the status
+ * ticks, at most once per REBALANCE_INTERVAL_MS.
+ */
+public class ConnectionBudget {
+
+    public static final int DEFAULT_GLOBAL_LIMIT = 500;
+    public static final int DEFAULT_HALF_OPEN_LIMIT = 50;
+
+    static final long REBALANCE_INTERVAL_MS = 1000;
+    static final int MIN_SHARE = 2; // Keeps every torrent reachable
+    static final int METADATA_PEERS = 8; // Enough to fetch the info dictionary
+    static final int SEED_SPARE = 4; // Room for new leechers beyond those already interested
+    static final int MAX_DROPS_PER_TICK = 5; // Trims gradually, so shares can settle
+    static final double PRESSURE = 0.9; // Fraction of the cap from which shares are enforced
+
+    private static final ConnectionBudget GLOBAL = new ConnectionBudget(DEFAULT_GLOBAL_LIMIT,
+            DEFAULT_HALF_OPEN_LIMIT, System::currentTimeMillis);
+
+    public enum Need {
+        METADATA, DOWNLOAD, SEED
+    }
+
+    private static class Entry {
+        final int limit;
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicInteger connected = new AtomicInteger();
+        volatile int demand;
+        volatile int share;
+
+        Entry(int limit) {
+            this.limit = limit;
+            this.demand = limit;
+            this.share = limit;
+        }
+    }
+
+    private final Map<TorrentId, Entry> torrents = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong lastRebalance = new AtomicLong();
+    private final LongSupplier clock;
+    private volatile int limit;
+    private volatile int halfOpenLimit;
+    private volatile IntSupplier connectionCounter;
+
+    ConnectionBudget(int limit, int halfOpenLimit, LongSupplier clock) {
+        this.limit = limit;
+        this.halfOpenLimit = halfOpenLimit;
+        this.clock = clock;
+    }
+
+    public static ConnectionBudget global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Global connection cap and half-open limit; 0 or less means the default.
+     */
+    public void setLimits(int limit, int halfOpenLimit) {
+        int newLimit = limit > 0 ? limit : DEFAULT_GLOBAL_LIMIT;
+        this.halfOpenLimit = halfOpenLimit > 0 ? halfOpenLimit : DEFAULT_HALF_OPEN_LIMIT;
+        if (newLimit != this.limit) {
+            this.limit = newLimit;
+            rebalanceNow();
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getHalfOpenLimit() {
+        return halfOpenLimit;
+    }
+
+    /**
+     * Counts the open connections (the runtime's connection pool); without
+     * one, the counts last reported by the torrents are used.
+     */
+    public void setConnectionCounter(IntSupplier connectionCounter) {
+        this.connectionCounter = connectionCounter;
+    }
+
+    public int getConnected() {
+        IntSupplier counter = connectionCounter;
+        if (counter != null) {
+            return counter.getAsInt();
+        }
+        int connected = 0;
+        for (Entry entry : torrents.values()) {
+            connected += entry.connected.get();
+        }
+        return connected;
+    }
+
+    /**
+     * Connection attempts in flight.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Starts budgeting 'torrentId', allowing it at most 'maxConnections'.
+     */
+    public void register(TorrentId torrentId, int maxConnections) {
+        torrents.put(torrentId, new Entry(Math.max(MIN_SHARE, maxConnections)));
+        rebalanceNow();
+    }
+
+    public void unregister(TorrentId torrentId) {
+        if (torrents.remove(torrentId) != null) {
+            rebalanceNow();
+        }
+    }
+
+    /**
+     * Current share of 'torrentId', or -1 if it is not budgeted.
+     */
+    public int getShare(TorrentId torrentId) {
+        Entry entry = torrents.get(torrentId);
+        return entry != null ? entry.share : -1;
+    }
+
+    /**
+     * Status tick of a torrent: 'connected' peers, of which 'interested' want
+     * data from us. Returns how many peers it should drop now.
+     */
+    public int update(TorrentId torrentId, int connected, Need need, int interested) {
+        Entry entry = torrents.get(torrentId);
+        if (entry == null) {
+            return 0;
+        }
+        entry.connected.set(connected);
+        entry.demand = switch (need) {
+            case METADATA -> Math.min(entry.limit, METADATA_PEERS);
+            case DOWNLOAD -> entry.limit;
+            case SEED -> Math.min(entry.limit, interested + SEED_SPARE);
+        };
+        rebalance();
+        int excess = connected - entry.limit;
+        if (getConnected() >= limit * PRESSURE) {
+            excess = Math.max(excess, connected - entry.share);
+        }
+        return Math.max(0, Math.min(MAX_DROPS_PER_TICK, excess));
+    }
+
+    /**
+     * Asks to open a connection for 'torrentId'. If true, the caller must
+     * call release() once the attempt is over.
+     */
+    public boolean tryAcquire(TorrentId torrentId) {
+        // Reserve first, then check what was there before us: two callers can
+        // never both take the last slot, at worst both back off
+        int inFlight = pending.getAndIncrement();
+        Entry entry = torrents.get(torrentId);
+        int ownPending = entry != null ? entry.pending.getAndIncrement() : 0;
+        if (!admits(entry, inFlight, ownPending)) {
+            pending.decrementAndGet();
+            if (entry != null) {
+                entry.pending.decrementAndGet();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean admits(Entry entry, int inFlight, int ownPending) {
+        if (inFlight >= halfOpenLimit) {
+            return false;
+        }
+        int used = getConnected() + inFlight;
+        if (used >= limit) {
+            return false;
+        }
+        if (entry != null) {
+            int own = entry.connected.get() + ownPending;
+            if (own >= entry.limit) {
+                return false;
+            }
+            if (own >= entry.share && used >= limit * PRESSURE) {
+                return false;
+            }
+            int fairHalfOpen = Math.max(MIN_SHARE, halfOpenLimit / Math.max(1, torrents.size()));
+            if (ownPending >= fairHalfOpen && inFlight >= halfOpenLimit / 2) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ends an attempt admitted by tryAcquire(); a successful one counts as
+     * connected until the torrent's next status tick.
+     */
+    public void release(TorrentId torrentId, boolean connected) {
+        pending.decrementAndGet();
+        Entry entry = torrents.get(torrentId);
+        if (entry != null) {
+            // Never below zero: the torrent may have re-registered while the attempt ran
+            entry.pending.updateAndGet(v -> Math.max(0, v - 1));
+            if (connected) {
+                entry.connected.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Recomputes the shares if the interval has passed.
+     */
+    public void rebalance() {
+        long now = clock.getAsLong();
+        long last = lastRebalance.get();
+        if (now - last < REBALANCE_INTERVAL_MS || !lastRebalance.compareAndSet(last, now)) {
+            return;
+        }
+        allocate();
+    }
+
+    private void rebalanceNow() {
+        lastRebalance.set(clock.getAsLong());
+        allocate();
+    }
+
+    /**
+     * Max-min fair: smallest demand first, each gets its demand or an equal
+     * part of what is left, whichever is less.
+     */
+    private synchronized void allocate() {
+        List<Entry> entries = new ArrayList<>(torrents.values());
+        entries.sort((a, b) -> Integer.compare(a.demand, b.demand));
+        int remaining = limit;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            int fair = remaining / (entries.size() - i);
+            int share = Math.min(entry.demand, fair);
+            remaining -= share;
+            entry.share = Math.max(MIN_SHARE, share);
+        }
+    }
+}
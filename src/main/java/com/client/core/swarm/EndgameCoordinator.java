@@ -0,0 +1,390 @@
+package com.client.core.swarm;
+
+import bt.metainfo.Torrent;
+import bt.net.ConnectionKey;
+import bt.protocol.Cancel;
+import bt.protocol.Message;
+import bt.protocol.Piece;
+import bt.protocol.Request;
+import bt.torrent.annotation.Consumes;
+import bt.torrent.annotation.Produces;
+import bt.torrent.messaging.ConnectionState;
+import bt.torrent.messaging.MessageContext;
+import bt.torrent.messaging.Mapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Block-level Endgame Coordinator
+ *
+ * Installed as a Bt messaging agent for a single torrent. Endgame starts when
+ * the number of blocks still missing drops below a threshold (instead of a
+ * fixed completion percentage), and only the blocks that are still in flight
+ * are duplicated to other unchoking peers that have the piece (according to
+ * SwarmAvailability). As soon as a block arrives from any peer, CANCELs are
+ * queued for every other peer it was duplicated to. Late duplicates are
+ * counted as wasted bytes.
+ *
+ * A piece only counts as complete once Bt has verified it (pieceVerified);
+ * one that fails its hash check (pieceFailed) is downloaded again, and its
+ * blocks count afresh.
+ */
+public class EndgameCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(EndgameCoordinator.class);
+
+    // Bt requests blocks of Config.getTransferBlockSize(), which defaults to 16 KiB
+    public static final int BLOCK_SIZE = 16 * 1024;
+
+    public static final int DEFAULT_ENDGAME_BLOCKS = 64; // Enter endgame below this many missing blocks
+    private static final int MAX_DUPLICATES_PER_BLOCK = 2; // Extra peers asked for the same block
+    private static final int MAX_DUPLICATES_PER_TICK = 4; // Duplicate requests per peer per produce call
+    private static final long PEER_EXPIRY_MS = 60000; // Forget peers we have not heard from
+
+    private final int endgameBlockThreshold;
+    private final SwarmAvailability availability;
+    private final AtomicLong wastedBytes = new AtomicLong();
+    private volatile PeerPolicy peerPolicy; // Optional brain priority hints
+
+    // Torrent geometry (known once metadata is available)
+    private volatile long pieceLength;
+    private volatile long totalSize;
+    private volatile int piecesTotal;
+    private volatile int piecesRemaining = Integer.MAX_VALUE;
+    private volatile boolean endgame = false;
+
+    // All fields below are guarded by 'this'
+    private final Map<Integer, BitSet> receivedBlocks = new HashMap<>(); // Pieces not verified yet
+    private final BitSet completedPieces = new BitSet(); // Verified by Bt
+    private final Set<Integer> inFlightPieces = new HashSet<>(); // Assigned by the selector
+    private final Map<Long, Set<ConnectionKey>> duplicates = new HashMap<>(); // Block -> peers asked
+    private final Map<ConnectionKey, PeerState> peers = new HashMap<>();
+
+    public EndgameCoordinator(SwarmAvailability availability) {
+        this(availability, DEFAULT_ENDGAME_BLOCKS);
+    }
+
+    public EndgameCoordinator(SwarmAvailability availability, int endgameBlockThreshold) {
+        this.availability = availability;
+        this.endgameBlockThreshold = endgameBlockThreshold > 0 ? endgameBlockThreshold : DEFAULT_ENDGAME_BLOCKS;
+    }
+
+    /**
+     * Called once the torrent metadata is known (file or magnet).
+     */
+    public void onMetadata(Torrent torrent) {
+        setGeometry(torrent.getChunkSize(), torrent.getSize());
+    }
+
+    /**
+     * Piece length and torrent size in bytes, for callers without a Bt
+     * Torrent (simulator, telemetry replay).
+     */
+    public void setGeometry(long pieceLength, long totalSize) {
+        this.totalSize = totalSize;
+        this.piecesTotal = (int) ((totalSize + pieceLength - 1) / pieceLength);
+        this.pieceLength = pieceLength; // Last: a non-zero length means the geometry is known
+    }
+
+    /**
+     * Piece length in bytes, 0 until metadata is known.
+     */
+    public long getPieceLength() {
+        return pieceLength;
+    }
+
+    /**
+     * Torrent size in bytes from the metainfo, 0 until metadata is known.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Peers with a negative priority get no duplicates, positive ones twice as
+     * many per call.
+     */
+    public void setPeerPolicy(PeerPolicy peerPolicy) {
+        this.peerPolicy = peerPolicy;
+    }
+
+    /**
+     * Called by the selector when it hands a piece to Bt for downloading.
+     */
+    public synchronized void markInFlight(int pieceIndex) {
+        if (!completedPieces.get(pieceIndex)) {
+            inFlightPieces.add(pieceIndex);
+        }
+    }
+
+    /**
+     * Called from the status tick with the authoritative remaining piece count.
+     * Returns true if endgame is (still) active.
+     */
+    public boolean updateRemainingPieces(int remaining) {
+        this.piecesRemaining = remaining;
+        pruneStalePeers();
+
+        long missing = getRemainingBlocks();
+        if (!endgame && pieceLength > 0 && remaining > 0 && missing <= endgameBlockThreshold) {
+            endgame = true;
+            logger.info("[OPIT-CORE] Endgame Protocol ACTIVATED ({} blocks outstanding)", missing);
+        } else if (endgame && remaining == 0) {
+            endgame = false;
+            logger.info("[OPIT-CORE] Endgame Protocol finished. Duplicate bytes wasted: {}", wastedBytes.get());
+        }
+        return endgame;
+    }
+
+    /**
+     * Enters endgame ahead of the block threshold (brain decision). Returns
+     * true if endgame is now active.
+     */
+    public boolean enterEndgame() {
+        if (!endgame && pieceLength > 0 && piecesRemaining > 0 && piecesRemaining != Integer.MAX_VALUE) {
+            endgame = true;
+            logger.info("[OPIT-CORE] Endgame Protocol ACTIVATED by strategy ({} blocks outstanding)",
+                    getRemainingBlocks());
+        }
+        return endgame;
+    }
+
+    public boolean isEndgame() {
+        return endgame;
+    }
+
+    public long getWastedBytes() {
+        return wastedBytes.get();
+    }
+
+    /**
+     * Number of blocks that still have to arrive before the torrent completes.
+     */
+    public synchronized long getRemainingBlocks() {
+        if (pieceLength <= 0 || piecesRemaining == Integer.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long blocksPerPiece = (pieceLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long missing = (long) piecesRemaining * blocksPerPiece;
+        for (BitSet received : receivedBlocks.values()) {
+            missing -= received.cardinality();
+        }
+        return Math.max(0, missing);
+    }
+
+    /**
+     * Blocks received so far for an open piece (0 if none or already complete)
+     */
+    public synchronized int getReceivedBlocks(int pieceIndex) {
+        BitSet received = receivedBlocks.get(pieceIndex);
+        return received != null ? received.cardinality() : 0;
+    }
+
+    @Consumes
+    public void consume(Piece piece, MessageContext context) {
+        if (pieceLength <= 0) {
+            return; // No geometry yet, cannot tell when a piece is complete
+        }
+        int pieceIndex = piece.getPieceIndex();
+        int blockIndex = piece.getOffset() / BLOCK_SIZE;
+
+        synchronized (this) {
+            peer(context);
+            if (completedPieces.get(pieceIndex)) {
+                wastedBytes.addAndGet(piece.getLength());
+                return;
+            }
+            BitSet received = receivedBlocks.computeIfAbsent(pieceIndex, k -> new BitSet());
+            if (received.get(blockIndex)) {
+                // Someone else already delivered this block
+                wastedBytes.addAndGet(piece.getLength());
+                return;
+            }
+            received.set(blockIndex);
+            inFlightPieces.add(pieceIndex);
+
+            // Cancel the same block on every other peer it was duplicated to
+            Set<ConnectionKey> askedPeers = duplicates.remove(blockKey(pieceIndex, blockIndex));
+            if (askedPeers != null) {
+                for (ConnectionKey key : askedPeers) {
+                    if (key.equals(context.getConnectionKey())) {
+                        continue;
+                    }
+                    PeerState other = peers.get(key);
+                    if (other != null) {
+                        other.cancel(pieceIndex, piece.getOffset(), piece.getLength());
+                    }
+                }
+            }
+
+            if (received.cardinality() >= blocksInPiece(pieceIndex)) {
+                // All blocks are in; the piece waits for its hash check
+                cancelDuplicates(pieceIndex);
+            }
+        }
+    }
+
+    /**
+     * Called when Bt has verified a piece: it is complete, and blocks that
+     * still arrive for it are wasted.
+     */
+    public synchronized void pieceVerified(int pieceIndex) {
+        completedPieces.set(pieceIndex);
+        receivedBlocks.remove(pieceIndex);
+        inFlightPieces.remove(pieceIndex);
+        cancelDuplicates(pieceIndex);
+    }
+
+    /**
+     * Called when a downloaded piece failed its hash check: Bt discards its
+     * data, so it is missing again and can be duplicated in endgame.
+     */
+    public synchronized void pieceFailed(int pieceIndex) {
+        completedPieces.clear(pieceIndex);
+        receivedBlocks.remove(pieceIndex);
+        inFlightPieces.add(pieceIndex);
+    }
+
+    @Produces
+    public void produce(Consumer<Message> messageConsumer, MessageContext context) {
+        synchronized (this) {
+            PeerState peer = peer(context);
+            ConnectionState connectionState = context.getConnectionState();
+
+            // 1. Flush pending cancels for this peer
+            Message cancel;
+            while ((cancel = peer.pendingCancels.poll()) != null) {
+                messageConsumer.accept(cancel);
+            }
+
+            // 2. Endgame duplicates, only for blocks that are in flight elsewhere
+            if (!endgame || connectionState.isPeerChoking()) {
+                return;
+            }
+
+            PeerPolicy policy = peerPolicy;
+            int priority = policy != null ? policy.getPriority(peer.key) : 0;
+            if (priority < 0) {
+                return;
+            }
+            int maxDuplicates = priority > 0 ? MAX_DUPLICATES_PER_TICK * 2 : MAX_DUPLICATES_PER_TICK;
+
+            int sent = 0;
+            Mapper mapper = Mapper.mapper();
+            for (int pieceIndex : inFlightPieces) {
+                if (sent >= maxDuplicates) {
+                    break;
+                }
+                if (completedPieces.get(pieceIndex) || !availability.peerHas(peer.key, pieceIndex)) {
+                    continue;
+                }
+                BitSet received = receivedBlocks.get(pieceIndex);
+                int blocks = blocksInPiece(pieceIndex);
+                for (int block = 0; block < blocks && sent < maxDuplicates; block++) {
+                    if (received != null && received.get(block)) {
+                        continue;
+                    }
+                    int offset = block * BLOCK_SIZE;
+                    int length = blockLength(pieceIndex, block);
+                    Object key = mapper.buildKey(pieceIndex, offset, length);
+                    if (connectionState.getPendingRequests().contains(key)) {
+                        continue; // Bt already asked this peer for it
+                    }
+                    Set<ConnectionKey> askedPeers = duplicates.computeIfAbsent(blockKey(pieceIndex, block),
+                            k -> new HashSet<>());
+                    if (askedPeers.size() >= MAX_DUPLICATES_PER_BLOCK || !askedPeers.add(peer.key)) {
+                        continue;
+                    }
+
+                    // Register as pending so Bt accepts the block when it arrives
+                    connectionState.getPendingRequests().add(key);
+                    peer.connectionState = connectionState;
+                    messageConsumer.accept(new Request(pieceIndex, offset, length));
+                    sent++;
+                }
+            }
+        }
+    }
+
+    // Duplicates still outstanding for this piece are no longer needed
+    private void cancelDuplicates(int pieceIndex) {
+        Iterator<Map.Entry<Long, Set<ConnectionKey>>> it = duplicates.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Set<ConnectionKey>> entry = it.next();
+            if ((int) (entry.getKey() >>> 32) != pieceIndex) {
+                continue;
+            }
+            int block = (int) (long) entry.getKey();
+            for (ConnectionKey key : entry.getValue()) {
+                PeerState peer = peers.get(key);
+                if (peer != null) {
+                    peer.cancel(pieceIndex, block * BLOCK_SIZE, blockLength(pieceIndex, block));
+                }
+            }
+            it.remove();
+        }
+    }
+
+    private PeerState peer(MessageContext context) {
+        ConnectionKey key = context.getConnectionKey();
+        PeerState peer = peers.computeIfAbsent(key, PeerState::new);
+        peer.lastSeen = System.currentTimeMillis();
+        return peer;
+    }
+
+    private synchronized void pruneStalePeers() {
+        long cutoff = System.currentTimeMillis() - PEER_EXPIRY_MS;
+        peers.values().removeIf(peer -> peer.lastSeen < cutoff);
+    }
+
+    private int blocksInPiece(int pieceIndex) {
+        return (int) ((pieceSize(pieceIndex) + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    private int blockLength(int pieceIndex, int block) {
+        long remaining = pieceSize(pieceIndex) - (long) block * BLOCK_SIZE;
+        return (int) Math.min(BLOCK_SIZE, remaining);
+    }
+
+    private long pieceSize(int pieceIndex) {
+        if (pieceIndex == piecesTotal - 1) {
+            long last = totalSize - (long) pieceIndex * pieceLength;
+            return last > 0 ? last : pieceLength;
+        }
+        return pieceLength;
+    }
+
+    private static long blockKey(int pieceIndex, int block) {
+        return ((long) pieceIndex << 32) | (block & 0xFFFFFFFFL);
+    }
+
+    private static class PeerState {
+        private final ConnectionKey key;
+        private final Queue<Message> pendingCancels = new ArrayDeque<>();
+        private ConnectionState connectionState;
+        private long lastSeen;
+
+        PeerState(ConnectionKey key) {
+            this.key = key;
+        }
+
+        void cancel(int pieceIndex, int offset, int length) {
+            pendingCancels.add(new Cancel(pieceIndex, offset, length));
+            if (connectionState != null) {
+                // Let Bt discard the block if it still shows up
+                connectionState.getPendingRequests().remove(Mapper.mapper().buildKey(pieceIndex, offset, length));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.client.core.swarm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide cap on partially downloaded ("open") pieces.
+ *
+ * Every open piece pins block buffers until it completes, so the number of
+ * open pieces across all torrents bounds the working-set memory. Selectors
+ * acquire a slot before opening a new piece and release it on completion.
+ */
+public class OpenPieceBudget {
+
+    public static final int DEFAULT_GLOBAL_LIMIT = 512;
+
+    private static final OpenPieceBudget GLOBAL = new OpenPieceBudget(DEFAULT_GLOBAL_LIMIT);
+
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile int limit;
+
+    public OpenPieceBudget(int limit) {
+        this.limit = limit;
+    }
+
+    public static OpenPieceBudget global() {
+        return GLOBAL;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit > 0 ? limit : DEFAULT_GLOBAL_LIMIT;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getOpen() {
+        return open.get();
+    }
+
+    public int available() {
+        return Math.max(0, limit - open.get());
+    }
+
+    /**
+     * Reserves one open-piece slot. Returns false if the budget is exhausted.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = open.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (open.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(int slots) {
+        if (slots > 0) {
+            open.addAndGet(-slots);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.client.core.swarm;
+
+import bt.net.ConnectionKey;
+import bt.net.Peer;
+import bt.protocol.Message;
+import bt.torrent.annotation.Produces;
+import bt.torrent.messaging.ConnectionState;
+import bt.torrent.messaging.MessageContext;
+import com.client.core.brain.SwarmDecision;
+import com.client.core.brain.SwarmSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Per-Peer Rates and Strategy Decisions
+ *
+ * Installed as a Bt messaging agent for a single torrent. Keeps a handle on
+ * every peer's ConnectionState to sample transfer rates on the status tick,
+ * builds the per-peer arrays of a SwarmSnapshot, and applies the per-peer part
+ * of a SwarmDecision: a choke decision is handed to Bt's choker
+ * (ConnectionState.setShouldChoke) once, on the peer's next produce call, and
+ * is not re-asserted until a later decision sets it again; priority hints are
+ * read by the EndgameCoordinator. Also ranks peers by usefulness when the
+ * ConnectionBudget asks a torrent to drop some.
+ */
+public class PeerPolicy {
+
+    // All fields are guarded by 'this'
+    private final Map<ConnectionKey, PeerEntry> peers = new HashMap<>();
+    private ConnectionKey[] order = new ConnectionKey[0]; // Peer index of the last snapshot
+    private long lastSampleMs;
+
+    @Produces
+    public void produce(Consumer<Message> messageConsumer, MessageContext context) {
+        synchronized (this) {
+            PeerEntry entry = peers.computeIfAbsent(context.getConnectionKey(), PeerEntry::new);
+            entry.state = context.getConnectionState();
+            entry.peer = context.getPeer();
+            if (entry.choke != null) {
+                // Applied once; Bt's choker owns the peer again until the next decision
+                entry.state.setShouldChoke(entry.choke);
+                entry.choke = null;
+            }
+        }
+    }
+
+    /**
+     * Drops peers that are no longer connected (called from the status tick).
+     */
+    public synchronized void retainPeers(Set<ConnectionKey> connected) {
+        peers.keySet().retainAll(connected);
+    }
+
+    public synchronized List<Peer> getPeers() {
+        List<Peer> result = new ArrayList<>(peers.size());
+        for (PeerEntry entry : peers.values()) {
+            if (entry.peer != null) {
+                result.add(entry.peer);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Priority hint from the last applied decision (0 if none).
+     */
+    public synchronized int getPriority(ConnectionKey key) {
+        PeerEntry entry = peers.get(key);
+        return entry != null ? entry.priority : 0;
+    }
+
+    /**
+     * Samples per-peer rates since the previous call. The peer order that the
+     * snapshot's indices refer to is available from getSnapshotPeers() until
+     * the next call.
+     */
+    public synchronized SwarmSnapshot snapshot(long nowMs, double progress, int piecesRemaining,
+            SwarmAvailability swarm, boolean aggressiveMode, boolean endgame) {
+        long elapsedMs = lastSampleMs > 0 ? Math.max(1, nowMs - lastSampleMs) : 0;
+        lastSampleMs = nowMs;
+
+        int count = peers.size();
+        ConnectionKey[] keys = new ConnectionKey[count];
+        long[] downloadRates = new long[count];
+        long[] uploadRates = new long[count];
+        float[] completeness = new float[count];
+        int[] rtt = new int[count];
+
+        int piecesTotal = swarm.getPiecesTotal();
+        int i = 0;
+        for (PeerEntry entry : peers.values()) {
+            keys[i] = entry.key;
+            if (entry.state != null) {
+                long downloaded = entry.state.getDownloaded();
+                long uploaded = entry.state.getUploaded();
+                if (elapsedMs > 0 && entry.sampled) {
+                    downloadRates[i] = Math.max(0, downloaded - entry.lastDownloaded) * 1000 / elapsedMs;
+                    uploadRates[i] = Math.max(0, uploaded - entry.lastUploaded) * 1000 / elapsedMs;
+                    entry.rate = downloadRates[i] + uploadRates[i];
+                    entry.rated = true;
+                }
+                entry.lastDownloaded = downloaded;
+                entry.lastUploaded = uploaded;
+                entry.sampled = true;
+            }
+            completeness[i] = piecesTotal > 0 ? (float) swarm.getPieceCount(entry.key) / piecesTotal : 0f;
+            // Bt does not expose request round-trip times
+            rtt[i] = SwarmSnapshot.RTT_UNKNOWN;
+            i++;
+        }
+        this.order = keys;
+
+        int seeds = swarm.getSeeds();
+        return new SwarmSnapshot(nowMs, progress, piecesRemaining, seeds, Math.max(0, count - seeds),
+                swarm.getDistributedCopies(), swarm.getMinAvailability(), aggressiveMode, endgame,
+                downloadRates, uploadRates, completeness, rtt);
+    }
+
+    /**
+     * Peers that want data from us.
+     */
+    public synchronized int getInterestedPeers() {
+        int interested = 0;
+        for (PeerEntry entry : peers.values()) {
+            if (entry.state != null && entry.state.isPeerInterested()) {
+                interested++;
+            }
+        }
+        return interested;
+    }
+
+    /**
+     * Up to 'count' peers worth least to keep: first those with no interest
+     * either way (nothing to get from them, nothing they want), then the
+     * slowest by their last sampled rate. Peers not yet sampled are kept.
+     */
+    public synchronized List<ConnectionKey> leastUseful(int count) {
+        List<PeerEntry> candidates = new ArrayList<>();
+        for (PeerEntry entry : peers.values()) {
+            if (entry.state != null && entry.rated) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort((a, b) -> {
+            int byInterest = Boolean.compare(isInteresting(a), isInteresting(b));
+            return byInterest != 0 ? byInterest : Long.compare(a.rate, b.rate);
+        });
+        List<ConnectionKey> result = new ArrayList<>(Math.min(count, candidates.size()));
+        for (int i = 0; i < count && i < candidates.size(); i++) {
+            result.add(candidates.get(i).key);
+        }
+        return result;
+    }
+
+    private static boolean isInteresting(PeerEntry entry) {
+        return entry.state.isInterested() || entry.state.isPeerInterested();
+    }
+
+    /**
+     * Peers of the last snapshot, by snapshot index.
+     */
+    public synchronized ConnectionKey[] getSnapshotPeers() {
+        return order;
+    }
+
+    /**
+     * Applies the per-peer part of a decision made for a snapshot whose peers
+     * were 'snapshotPeers'. Peers that left since then are skipped.
+     */
+    public synchronized void apply(SwarmDecision decision, ConnectionKey[] snapshotPeers) {
+        int count = Math.min(decision.getPeerCount(), snapshotPeers.length);
+        for (int i = 0; i < count; i++) {
+            PeerEntry entry = peers.get(snapshotPeers[i]);
+            if (entry == null) {
+                continue;
+            }
+            Boolean choke = decision.getChoke(i);
+            if (choke != null) {
+                entry.choke = choke;
+            }
+            entry.priority = decision.getPriority(i);
+        }
+    }
+
+    private static class PeerEntry {
+        private final ConnectionKey key;
+        private ConnectionState state;
+        private Peer peer;
+        private long lastDownloaded;
+        private long lastUploaded;
+        private boolean sampled;
+        private long rate; // Download + upload, bytes per second at the last sample
+        private boolean rated;
+        private Boolean choke; // Pending brain decision; null = leave it to Bt's choker
+        private int priority;
+
+        PeerEntry(ConnectionKey key) {
+            this.key = key;
+        }
+    }
+}
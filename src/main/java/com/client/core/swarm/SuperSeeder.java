@@ -0,0 +1,197 @@
+package com.client.core.swarm;
+
+import bt.net.ConnectionKey;
+import bt.protocol.Have;
+import bt.protocol.Message;
+import bt.protocol.Request;
+import bt.torrent.annotation.Consumes;
+import bt.torrent.annotation.Produces;
+import bt.torrent.messaging.MessageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Super-Seeding (BEP 16) for Initial Distribution
+ *
+ * Installed as a Bt messaging agent for a single torrent and only active while
+ * we are the seed. Each peer is offered one piece at a time (the rarest piece
+ * it does not have, preferring pieces nobody has been offered yet), and the
+ * next piece is only revealed once the previous one has been seen at another
+ * peer. Requests for pieces that were not offered to that peer are vetoed, so
+ * the origin uploads roughly one copy of the data before the swarm takes over.
+ *
+ * Peers that connect while we super-seed get no bitfield (see
+ * SuperSeedingBitfieldHandler), so the HAVE offers are all they know about.
+ * A peer that requests anything else anyway (or saw our bitfield before
+ * super-seeding started) is choked through Bt's choker, which stops Bt from
+ * reading its requests and tells the peer they were discarded; blocks Bt
+ * already queued before the choke takes effect are still sent. The peer is
+ * unchoked with its next offer, or after CHOKE_BACKOFF_MS so it can finish
+ * the current one.
+ */
+public class SuperSeeder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuperSeeder.class);
+
+    private static final long CHOKE_BACKOFF_MS = 1000;
+
+    private final SwarmAvailability availability;
+
+    private volatile boolean enabled = false;
+    private volatile boolean seeding = false;
+
+    // All fields below are guarded by 'this'
+    private int piecesTotal; // 0 until metadata is known
+    private int[] timesOffered = new int[0];
+    private int piecesRevealed; // Distinct pieces offered at least once
+    private final Map<ConnectionKey, PeerOffer> peers = new HashMap<>();
+
+    public SuperSeeder(SwarmAvailability availability) {
+        this.availability = availability;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setPiecesTotal(int piecesTotal) {
+        if (piecesTotal <= 0 || piecesTotal == this.piecesTotal) {
+            return;
+        }
+        this.piecesTotal = piecesTotal;
+        this.timesOffered = new int[piecesTotal];
+        this.piecesRevealed = 0;
+        peers.clear();
+    }
+
+    /**
+     * Called from the status tick; super-seeding only applies once we hold
+     * every piece.
+     */
+    public void setSeeding(boolean seeding) {
+        if (seeding && !this.seeding && enabled) {
+            logger.info("[OPIT-CORE] Super-Seeding ACTIVATED: revealing pieces one at a time per peer");
+        }
+        this.seeding = seeding;
+    }
+
+    public boolean isActive() {
+        return enabled && seeding && piecesTotal > 0;
+    }
+
+    /**
+     * Distinct pieces revealed so far; reaching piecesTotal means one full copy
+     * has been handed out.
+     */
+    public synchronized int getPiecesRevealed() {
+        return piecesRevealed;
+    }
+
+    /**
+     * Drops peers that are no longer connected (called from the status tick).
+     */
+    public synchronized void retainPeers(Set<ConnectionKey> connected) {
+        peers.keySet().retainAll(connected);
+    }
+
+    @Consumes
+    public void consume(Request request, MessageContext context) {
+        if (!isActive()) {
+            return;
+        }
+        synchronized (this) {
+            PeerOffer peer = peers.computeIfAbsent(context.getConnectionKey(), k -> new PeerOffer());
+            if (peer.offered.get(request.getPieceIndex())) {
+                return;
+            }
+            peer.chokedAtMs = System.currentTimeMillis();
+        }
+        // Asserted on every refused request: Bt's choker may have unchoked
+        // the peer since
+        context.getConnectionState().setShouldChoke(true);
+    }
+
+    @Produces
+    public void produce(Consumer<Message> messageConsumer, MessageContext context) {
+        if (!isActive()) {
+            return;
+        }
+        int next = -1;
+        boolean unchoke;
+        synchronized (this) {
+            ConnectionKey key = context.getConnectionKey();
+            PeerOffer peer = peers.computeIfAbsent(key, k -> new PeerOffer());
+            if (peer.current < 0 || hasSpread(key, peer.current)) {
+                next = pickPiece(key);
+            }
+            if (next >= 0) {
+                peer.current = next;
+                peer.offered.set(next);
+                if (timesOffered[next]++ == 0 && ++piecesRevealed == piecesTotal) {
+                    logger.info("[OPIT-CORE] Super-Seeding: every piece revealed once");
+                }
+            }
+            // A new offer, or a backoff long enough to finish the current one
+            unchoke = peer.chokedAtMs > 0 && (next >= 0
+                    || System.currentTimeMillis() - peer.chokedAtMs >= CHOKE_BACKOFF_MS);
+            if (unchoke) {
+                peer.chokedAtMs = 0;
+            }
+        }
+        if (next >= 0) {
+            messageConsumer.accept(new Have(next));
+        }
+        if (unchoke) {
+            context.getConnectionState().setShouldChoke(false);
+        }
+    }
+
+    /**
+     * An offer has spread once some other peer has the piece; a lone peer only
+     * has to finish it.
+     */
+    private boolean hasSpread(ConnectionKey key, int pieceIndex) {
+        int copies = availability.getAvailability(pieceIndex);
+        if (availability.peerHas(key, pieceIndex)) {
+            return copies >= 2 || availability.getPeerCount() <= 1;
+        }
+        return false;
+    }
+
+    /**
+     * Rarest piece the peer is missing, least-offered first.
+     */
+    private int pickPiece(ConnectionKey key) {
+        int best = -1;
+        int bestOffered = Integer.MAX_VALUE;
+        int bestCopies = Integer.MAX_VALUE;
+        for (int i = 0; i < piecesTotal; i++) {
+            if (timesOffered[i] > bestOffered || availability.peerHas(key, i)) {
+                continue;
+            }
+            int copies = availability.getAvailability(i);
+            if (timesOffered[i] < bestOffered || copies < bestCopies) {
+                best = i;
+                bestOffered = timesOffered[i];
+                bestCopies = copies;
+            }
+        }
+        return best;
+    }
+
+    private static class PeerOffer {
+        private final BitSet offered = new BitSet(); // Pieces this peer may request
+        private int current = -1; // Piece whose spread we are waiting for
+        private long chokedAtMs; // When a refused request choked the peer (0 = not choked by us)
+    }
+}
@@ -0,0 +1,60 @@
+package com.client.core.swarm;
+
+import bt.data.DataDescriptor;
+import bt.metainfo.TorrentId;
+import bt.net.BitfieldConnectionHandler;
+import bt.net.HandshakeHandler;
+import bt.net.PeerConnection;
+import bt.protocol.Handshake;
+import bt.torrent.TorrentDescriptor;
+import bt.torrent.TorrentRegistry;
+
+import java.util.function.Predicate;
+
+/**
+ * Bt's BitfieldConnectionHandler, minus the bitfield while super-seeding.
+ *
+ * Bt sends our bitfield right after every handshake. A super-seed must not
+ * (BEP 16): a peer that sees every piece may request any of them, and the
+ * one-piece-at-a-time HAVE offers of the SuperSeeder would hide nothing. So
+ * while super-seeding is enabled for a torrent and all of its pieces are
+ * complete, no bitfield is sent (BEP 16 allows sending none) and a peer only
+ * learns about the pieces offered to it. Every other connection gets Bt's own
+ * bitfield.
+ */
+public class SuperSeedingBitfieldHandler implements HandshakeHandler {
+
+    private final TorrentRegistry torrentRegistry;
+    private final Predicate<TorrentId> superSeeding;
+    private final BitfieldConnectionHandler delegate;
+
+    public SuperSeedingBitfieldHandler(TorrentRegistry torrentRegistry, Predicate<TorrentId> superSeeding) {
+        this.torrentRegistry = torrentRegistry;
+        this.superSeeding = superSeeding;
+        this.delegate = new BitfieldConnectionHandler(torrentRegistry);
+    }
+
+    @Override
+    public void processIncomingHandshake(PeerConnection connection, Handshake peerHandshake) {
+        if (!hidesBitfield(connection.getTorrentId())) {
+            delegate.processIncomingHandshake(connection, peerHandshake);
+        }
+    }
+
+    @Override
+    public void processOutgoingHandshake(Handshake handshake) {
+        delegate.processOutgoingHandshake(handshake);
+    }
+
+    private boolean hidesBitfield(TorrentId torrentId) {
+        if (torrentId == null || !superSeeding.test(torrentId)) {
+            return false;
+        }
+        DataDescriptor data = torrentRegistry.getDescriptor(torrentId)
+                .map(TorrentDescriptor::getDataDescriptor)
+                .orElse(null);
+        // The status tick may not have switched the SuperSeeder on yet, so
+        // look at the data itself
+        return data != null && data.getBitfield().getPiecesIncomplete() == 0;
+    }
+}
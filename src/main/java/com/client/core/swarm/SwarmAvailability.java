@@ -0,0 +1,248 @@
+package com.client.core.swarm;
+
+import bt.net.ConnectionKey;
+import bt.protocol.Bitfield;
+import bt.protocol.Have;
+import bt.torrent.annotation.Consumes;
+import bt.torrent.messaging.MessageContext;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-Peer Completion and Swarm Availability
+ *
+ * Installed as a Bt messaging agent for a single torrent. Builds each peer's
+ * piece set from BITFIELD and HAVE messages and keeps the swarm-wide numbers
+ * up to date incrementally: per-piece availability, a histogram of
+ * availability levels (so the minimum is O(1) to maintain), seed count and
+ * distributed copies. Peers are dropped when they leave the connected set
+ * reported by Bt on the status tick.
+ */
+public class SwarmAvailability {
+
+    /**
+     * Observer of peer piece sets (telemetry). Called while holding the
+     * availability lock, so implementations must not call back into it.
+     */
+    public interface Listener {
+        void onBitfield(ConnectionKey peer, BitSet pieces);
+
+        void onHave(ConnectionKey peer, int pieceIndex);
+
+        void onPeerRemoved(ConnectionKey peer);
+    }
+
+    // All fields are guarded by 'this'
+    private final Map<ConnectionKey, BitSet> peerPieces = new HashMap<>();
+    private int piecesTotal; // 0 until metadata is known
+    private int[] availability = new int[0];
+    private int[] histogram = new int[1]; // histogram[c] = pieces with availability c
+    private int minAvailability;
+    private int seeds;
+    private volatile Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the piece count once metadata is known and rebuilds the counters
+     * from the bitfields collected so far.
+     */
+    public synchronized void setPiecesTotal(int piecesTotal) {
+        if (piecesTotal <= 0 || piecesTotal == this.piecesTotal) {
+            return;
+        }
+        this.piecesTotal = piecesTotal;
+        this.availability = new int[piecesTotal];
+        this.histogram = new int[peerPieces.size() + 2];
+        this.histogram[0] = piecesTotal;
+        this.minAvailability = 0;
+        this.seeds = 0;
+
+        for (BitSet pieces : peerPieces.values()) {
+            pieces.clear(piecesTotal, Math.max(piecesTotal, pieces.length()));
+            for (int i = pieces.nextSetBit(0); i >= 0; i = pieces.nextSetBit(i + 1)) {
+                increment(i);
+            }
+            if (pieces.cardinality() == piecesTotal) {
+                seeds++;
+            }
+        }
+    }
+
+    @Consumes
+    public void consume(Bitfield bitfield, MessageContext context) {
+        byte[] bytes = bitfield.getBitfield();
+        synchronized (this) {
+            ConnectionKey key = context.getConnectionKey();
+            removePeer(key);
+
+            BitSet pieces = new BitSet(bytes.length * 8);
+            int limit = piecesTotal > 0 ? Math.min(piecesTotal, bytes.length * 8) : bytes.length * 8;
+            // Bitfield is big-endian per byte: piece 0 is the high bit of byte 0
+            for (int i = 0; i < limit; i++) {
+                if ((bytes[i >> 3] & (0x80 >>> (i & 7))) != 0) {
+                    pieces.set(i);
+                }
+            }
+            addPeer(key, pieces);
+            Listener l = listener;
+            if (l != null) {
+                l.onBitfield(key, pieces);
+            }
+        }
+    }
+
+    @Consumes
+    public void consume(Have have, MessageContext context) {
+        int pieceIndex = have.getPieceIndex();
+        synchronized (this) {
+            BitSet pieces = peerPieces.get(context.getConnectionKey());
+            if (pieces == null) {
+                // HAVE without a prior BITFIELD: peer started empty
+                pieces = new BitSet();
+                addPeer(context.getConnectionKey(), pieces);
+            }
+            if (pieces.get(pieceIndex) || (piecesTotal > 0 && pieceIndex >= piecesTotal)) {
+                return;
+            }
+            pieces.set(pieceIndex);
+            Listener l = listener;
+            if (l != null) {
+                l.onHave(context.getConnectionKey(), pieceIndex);
+            }
+            if (piecesTotal > 0) {
+                increment(pieceIndex);
+                if (pieces.cardinality() == piecesTotal) {
+                    seeds++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops peers that are no longer connected (called from the status tick).
+     */
+    public synchronized void retainPeers(Set<ConnectionKey> connected) {
+        List<ConnectionKey> gone = peerPieces.keySet().stream()
+                .filter(key -> !connected.contains(key))
+                .toList();
+        Listener l = listener;
+        for (ConnectionKey key : gone) {
+            removePeer(key);
+            if (l != null) {
+                l.onPeerRemoved(key);
+            }
+        }
+    }
+
+    public synchronized boolean peerHas(ConnectionKey key, int pieceIndex) {
+        BitSet pieces = peerPieces.get(key);
+        return pieces != null && pieces.get(pieceIndex);
+    }
+
+    /**
+     * Pieces the peer has announced so far.
+     */
+    public synchronized int getPieceCount(ConnectionKey key) {
+        BitSet pieces = peerPieces.get(key);
+        return pieces != null ? pieces.cardinality() : 0;
+    }
+
+    public synchronized int getPiecesTotal() {
+        return piecesTotal;
+    }
+
+    public synchronized int getAvailability(int pieceIndex) {
+        return pieceIndex < availability.length ? availability[pieceIndex] : 0;
+    }
+
+    public synchronized int getPeerCount() {
+        return peerPieces.size();
+    }
+
+    public synchronized int getSeeds() {
+        return seeds;
+    }
+
+    public synchronized int getLeechers() {
+        return peerPieces.size() - seeds;
+    }
+
+    public synchronized int getMinAvailability() {
+        return piecesTotal > 0 ? minAvailability : 0;
+    }
+
+    /**
+     * Distributed copies: the minimum availability plus the fraction of pieces
+     * that are available more often than that.
+     */
+    public synchronized double getDistributedCopies() {
+        if (piecesTotal <= 0) {
+            return 0.0;
+        }
+        int atMin = histogram[minAvailability];
+        return minAvailability + (double) (piecesTotal - atMin) / piecesTotal;
+    }
+
+    private void addPeer(ConnectionKey key, BitSet pieces) {
+        peerPieces.put(key, pieces);
+        if (piecesTotal <= 0) {
+            return;
+        }
+        ensureHistogramCapacity();
+        for (int i = pieces.nextSetBit(0); i >= 0; i = pieces.nextSetBit(i + 1)) {
+            increment(i);
+        }
+        if (pieces.cardinality() == piecesTotal) {
+            seeds++;
+        }
+    }
+
+    private void removePeer(ConnectionKey key) {
+        BitSet pieces = peerPieces.remove(key);
+        if (pieces == null || piecesTotal <= 0) {
+            return;
+        }
+        if (pieces.cardinality() == piecesTotal) {
+            seeds--;
+        }
+        for (int i = pieces.nextSetBit(0); i >= 0; i = pieces.nextSetBit(i + 1)) {
+            decrement(i);
+        }
+    }
+
+    private void increment(int pieceIndex) {
+        int level = availability[pieceIndex]++;
+        ensureHistogramCapacity();
+        histogram[level]--;
+        histogram[level + 1]++;
+        // The minimum can only move up by one, and only if its level emptied
+        if (level == minAvailability && histogram[level] == 0) {
+            minAvailability++;
+        }
+    }
+
+    private void decrement(int pieceIndex) {
+        int level = availability[pieceIndex]--;
+        histogram[level]--;
+        histogram[level - 1]++;
+        if (level - 1 < minAvailability) {
+            minAvailability = level - 1;
+        }
+    }
+
+    private void ensureHistogramCapacity() {
+        int needed = peerPieces.size() + 2;
+        if (histogram.length < needed) {
+            int[] grown = new int[Math.max(needed, histogram.length * 2)];
+            System.arraycopy(histogram, 0, grown, 0, histogram.length);
+            histogram = grown;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.client.core.telemetry;
+
+import bt.net.ConnectionKey;
+import bt.net.Peer;
+import bt.torrent.PieceStatistics;
+import com.client.core.OrchestratedPieceSelector;
+import com.client.core.TorrentAgentRouter;
+import com.client.core.brain.SwarmBrain;
+import com.client.core.brain.SwarmBrains;
+import com.client.core.brain.SwarmDecision;
+import com.client.core.brain.SwarmSnapshot;
+import com.client.core.swarm.EndgameCoordinator;
+import com.client.core.swarm.OpenPieceBudget;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+
+/**
+ * Offline strategy backtester. Replays a telemetry recording through one
+ * OrchestratedPieceSelector + SwarmBrain per strategy and prints one row per
+ * strategy:
+ * - decisions: ticks in aggressive mode, endgame entries, per-peer hints
+ * - picks: mean availability of the pieces the selector would open (lower
+ * is rarer) and how many of them the recorded client finished within the
+ * hit window
+ * - predicted vs recorded bytes: a peer's recorded rate only counts towards
+ * the prediction if it has at least one picked piece we still miss
+ *
+ * The selector is wired as in the client: the recorded piece geometry goes to
+ * its endgame coordinator, and recorded completions (written when Bt verified
+ * the piece) reach it through a TorrentAgentRouter. Recordings from before
+ * the geometry was stored replay without endgame.
+ *
+ * Usage: ReplayBacktester file.optl [strategy ...] [--max-open=N]
+ * [--endgame-blocks=N] [--window-ms=N]
+ */
+public class ReplayBacktester {
+
+    private static final long DEFAULT_WINDOW_MS = 30000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayBacktester file.optl [strategy ...] [--max-open=N] "
+                    + "[--endgame-blocks=N] [--window-ms=N]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        List<String> strategies = new ArrayList<>();
+        int maxOpen = OrchestratedPieceSelector.DEFAULT_MAX_OPEN_PIECES;
+        int endgameBlocks = EndgameCoordinator.DEFAULT_ENDGAME_BLOCKS;
+        long windowMs = DEFAULT_WINDOW_MS;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--max-open=")) {
+                maxOpen = Integer.parseInt(arg.substring("--max-open=".length()));
+            } else if (arg.startsWith("--endgame-blocks=")) {
+                endgameBlocks = Integer.parseInt(arg.substring("--endgame-blocks=".length()));
+            } else if (arg.startsWith("--window-ms=")) {
+                windowMs = Long.parseLong(arg.substring("--window-ms=".length()));
+            } else {
+                strategies.add(arg);
+            }
+        }
+        if (strategies.isEmpty()) {
+            strategies.add(SwarmBrains.DEFAULT_STRATEGY);
+        }
+
+        System.out.println("=== Telemetry Replay ===");
+        System.out.println("Recording: " + file);
+        System.out.println(String.format("%-28s %8s %8s %8s %9s %9s %14s %14s %7s", "strategy", "ticks",
+                "aggr", "endgame", "hints", "avail", "predicted B", "recorded B", "hits"));
+        for (String strategy : strategies) {
+            Replay replay = new Replay(strategy, maxOpen, endgameBlocks, windowMs);
+            TelemetryReader.read(file, replay);
+            System.out.println(replay.result());
+        }
+    }
+
+    /**
+     * One strategy's pass over the recording.
+     */
+    private static class Replay implements TelemetryReader.Visitor, PieceStatistics {
+        private static final ConnectionKey[] NO_PEERS = new ConnectionKey[0];
+        // Stands in for the infohash when routing piece events
+        private static final bt.metainfo.TorrentId REPLAY_TORRENT = bt.metainfo.TorrentId.fromBytes(
+                new byte[bt.metainfo.TorrentId.length()]);
+
+        private final String strategy;
+        private final int maxOpen;
+        private final int endgameBlocks;
+        private final long windowMs;
+
+        private OrchestratedPieceSelector selector;
+        private final TorrentAgentRouter router = new TorrentAgentRouter();
+        private CountingBrain brain;
+        private long now;
+
+        // Reconstructed swarm
+        private int piecesTotal;
+        private int[] availability = new int[0];
+        private final Map<Integer, BitSet> peers = new HashMap<>();
+        private final BitSet local = new BitSet();
+        private final Map<Integer, Long> pickedAt = new HashMap<>(); // Piece -> first pick time
+
+        // Results
+        private long ticks;
+        private long aggressiveTicks;
+        private long endgameEntries;
+        private long picks;
+        private long pickAvailability;
+        private long distinctPicks;
+        private long hits;
+        private double predictedBytes;
+        private double recordedBytes;
+        private long lastTick = -1;
+
+        Replay(String strategy, int maxOpen, int endgameBlocks, long windowMs) {
+            this.strategy = strategy;
+            this.maxOpen = maxOpen;
+            this.endgameBlocks = endgameBlocks;
+            this.windowMs = windowMs;
+        }
+
+        @Override
+        public void onHeader(int piecesTotal, long pieceLength, long totalSize, String name) {
+            this.piecesTotal = piecesTotal;
+            this.availability = new int[piecesTotal];
+            this.brain = new CountingBrain(SwarmBrains.createInline(strategy));
+            this.selector = new OrchestratedPieceSelector(endgameBlocks, maxOpen, new OpenPieceBudget(maxOpen),
+                    brain);
+            this.selector.setClock(() -> now, 42L);
+            this.selector.getSwarmAvailability().setPiecesTotal(piecesTotal);
+            if (pieceLength > 0) {
+                this.selector.getEndgameCoordinator().setGeometry(pieceLength, totalSize);
+            } else {
+                System.err.println("No piece geometry in this recording (version 1); endgame is not replayed");
+            }
+            router.register(REPLAY_TORRENT, selector);
+        }
+
+        @Override
+        public void onBitfield(int peerId, BitSet pieces) {
+            onPeerLeft(peerId);
+            BitSet owned = (BitSet) pieces.clone();
+            owned.clear(piecesTotal, Math.max(piecesTotal, owned.length()));
+            peers.put(peerId, owned);
+            forEach(owned, 1);
+        }
+
+        @Override
+        public void onHave(int peerId, int pieceIndex) {
+            BitSet owned = peers.computeIfAbsent(peerId, k -> new BitSet());
+            if (pieceIndex < piecesTotal && !owned.get(pieceIndex)) {
+                owned.set(pieceIndex);
+                availability[pieceIndex]++;
+            }
+        }
+
+        @Override
+        public void onPeerLeft(int peerId) {
+            BitSet owned = peers.remove(peerId);
+            if (owned != null) {
+                forEach(owned, -1);
+            }
+        }
+
+        @Override
+        public void onPieceCompleted(int pieceIndex) {
+            local.set(pieceIndex);
+            router.pieceVerified(REPLAY_TORRENT, pieceIndex);
+            Long at = pickedAt.remove(pieceIndex);
+            if (at != null && now - at <= windowMs) {
+                hits++;
+            }
+        }
+
+        @Override
+        public void onTick(long timestampMs, double progress, int piecesRemaining, int count, int[] peerIds,
+                long[] downloadRates, long[] uploadRates) {
+            long elapsedMs = lastTick >= 0 ? Math.max(0, timestampMs - lastTick) : 0;
+            lastTick = timestampMs;
+            now = timestampMs;
+            ticks++;
+
+            // Snapshot in the same shape the live PeerPolicy builds
+            int seeds = 0;
+            float[] completeness = new float[count];
+            int[] rtt = new int[count];
+            for (int i = 0; i < count; i++) {
+                BitSet owned = peers.get(peerIds[i]);
+                int have = owned != null ? owned.cardinality() : 0;
+                completeness[i] = piecesTotal > 0 ? (float) have / piecesTotal : 0f;
+                rtt[i] = SwarmSnapshot.RTT_UNKNOWN;
+                if (piecesTotal > 0 && have == piecesTotal) {
+                    seeds++;
+                }
+            }
+            int min = minAvailability();
+            SwarmSnapshot snapshot = new SwarmSnapshot(timestampMs, progress, piecesRemaining, seeds,
+                    count - seeds, distributedCopies(min), min, selector.isAggressiveMode(),
+                    selector.getEndgameCoordinator().isEndgame(), java.util.Arrays.copyOf(downloadRates, count),
+                    java.util.Arrays.copyOf(uploadRates, count), completeness, rtt);
+
+            boolean wasEndgame = selector.getEndgameCoordinator().isEndgame();
+            selector.updateSwarm(count, seeds, snapshot.getDistributedCopies(), min);
+            selector.updateProgress(progress);
+            selector.updateRemainingPieces(piecesRemaining);
+            selector.evaluate(snapshot, NO_PEERS);
+            if (!wasEndgame && selector.getEndgameCoordinator().isEndgame()) {
+                endgameEntries++;
+            }
+            if (selector.isAggressiveMode()) {
+                aggressiveTicks++;
+            }
+
+            // What would this configuration open right now?
+            selector.releaseAll();
+            BitSet available = new BitSet(piecesTotal);
+            for (int i = 0; i < piecesTotal; i++) {
+                if (availability[i] > 0 && !local.get(i)) {
+                    available.set(i);
+                }
+            }
+            BitSet picked = new BitSet(piecesTotal);
+            PrimitiveIterator.OfInt it = selector.getNextPieces(available, this).limit(maxOpen).iterator();
+            while (it.hasNext()) {
+                int piece = it.next();
+                picked.set(piece);
+                picks++;
+                pickAvailability += availability[piece];
+                if (pickedAt.putIfAbsent(piece, timestampMs) == null && !local.get(piece)) {
+                    distinctPicks++;
+                }
+            }
+
+            // Only sources that hold a picked piece can deliver
+            double seconds = elapsedMs / 1000.0;
+            for (int i = 0; i < count; i++) {
+                recordedBytes += downloadRates[i] * seconds;
+                BitSet owned = peers.get(peerIds[i]);
+                if (owned != null && owned.intersects(picked)) {
+                    predictedBytes += downloadRates[i] * seconds;
+                }
+            }
+        }
+
+        @Override
+        public int getCount(int pieceIndex) {
+            return availability[pieceIndex];
+        }
+
+        @Override
+        public int getPiecesTotal() {
+            return piecesTotal;
+        }
+
+        private void forEach(BitSet pieces, int delta) {
+            for (int i = pieces.nextSetBit(0); i >= 0 && i < piecesTotal; i = pieces.nextSetBit(i + 1)) {
+                availability[i] += delta;
+            }
+        }
+
+        private int minAvailability() {
+            int min = Integer.MAX_VALUE;
+            for (int count : availability) {
+                min = Math.min(min, count);
+            }
+            return min == Integer.MAX_VALUE ? 0 : min;
+        }
+
+        private double distributedCopies(int min) {
+            if (piecesTotal == 0) {
+                return 0.0;
+            }
+            int atMin = 0;
+            for (int count : availability) {
+                if (count == min) {
+                    atMin++;
+                }
+            }
+            return min + (double) (piecesTotal - atMin) / piecesTotal;
+        }
+
+        String result() {
+            double meanAvailability = picks > 0 ? (double) pickAvailability / picks : 0.0;
+            double hitRate = distinctPicks > 0 ? 100.0 * hits / distinctPicks : 0.0;
+            return String.format("%-28s %8d %8d %8d %9d %9.2f %14.0f %14.0f %6.1f%%", strategy, ticks,
+                    aggressiveTicks, endgameEntries, brain.peerHints, meanAvailability, predictedBytes,
+                    recordedBytes, hitRate);
+        }
+    }
+
+    /**
+     * Passes calls through and counts the per-peer hints of every decision.
+     */
+    private static class CountingBrain implements SwarmBrain {
+        private final SwarmBrain delegate;
+        private long peerHints;
+
+        CountingBrain(SwarmBrain delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void optimize(Collection<Peer> peers, double progress, long downloadRate) {
+            delegate.optimize(peers, progress, downloadRate);
+        }
+
+        @Override
+        public void onSwarmHealth(int seeds, int leechers, double distributedCopies, int minAvailability) {
+            delegate.onSwarmHealth(seeds, leechers, distributedCopies, minAvailability);
+        }
+
+        @Override
+        public void decide(SwarmSnapshot snapshot, SwarmDecision decision) {
+            delegate.decide(snapshot, decision);
+            for (int i = 0; i < decision.getPeerCount(); i++) {
+                if (decision.getChoke(i) != null || decision.getPriority(i) != 0) {
+                    peerHints++;
+                }
+            }
+        }
+
+        @Override
+        public void reload() {
+            delegate.reload();
+        }
+    }
+}
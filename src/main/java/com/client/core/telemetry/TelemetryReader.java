@@ -0,0 +1,127 @@
+package com.client.core.telemetry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams a file written by TelemetryRecorder into a Visitor, in recording
+ * order. Per-tick arrays are reused between ticks; copy them to keep them.
+ */
+public class TelemetryReader {
+
+    public interface Visitor {
+        /**
+         * 'pieceLength' and 'totalSize' are 0 in version 1 recordings.
+         */
+        default void onHeader(int piecesTotal, long pieceLength, long totalSize, String name) {
+        }
+
+        default void onTick(long timestampMs, double progress, int piecesRemaining, int peers, int[] peerIds,
+                long[] downloadRates, long[] uploadRates) {
+        }
+
+        default void onBitfield(int peerId, BitSet pieces) {
+        }
+
+        default void onHave(int peerId, int pieceIndex) {
+        }
+
+        default void onPeerLeft(int peerId) {
+        }
+
+        default void onPieceCompleted(int pieceIndex) {
+        }
+    }
+
+    private TelemetryReader() {
+    }
+
+    public static void read(Path file, Visitor visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file)), 64 * 1024))) {
+            if (in.readInt() != TelemetryRecorder.MAGIC) {
+                throw new IOException("Not a telemetry file: " + file);
+            }
+            short version = in.readShort();
+            if (version < 1 || version > TelemetryRecorder.VERSION) {
+                throw new IOException("Unsupported telemetry version " + version);
+            }
+            int piecesTotal = in.readInt();
+            long pieceLength = version >= 2 ? in.readLong() : 0;
+            long totalSize = version >= 2 ? in.readLong() : 0;
+            visitor.onHeader(piecesTotal, pieceLength, totalSize, in.readUTF());
+
+            int[] peerIds = new int[16];
+            long[] downloadRates = new long[16];
+            long[] uploadRates = new long[16];
+            while (true) {
+                int tag = in.read();
+                if (tag < 0) {
+                    return;
+                }
+                switch (tag) {
+                    case TelemetryRecorder.TICK: {
+                        long timestamp = in.readLong();
+                        double progress = in.readDouble();
+                        int remaining = in.readInt();
+                        int peers = (int) readVarLong(in);
+                        if (peers > peerIds.length) {
+                            peerIds = new int[peers];
+                            downloadRates = new long[peers];
+                            uploadRates = new long[peers];
+                        }
+                        for (int i = 0; i < peers; i++) {
+                            peerIds[i] = (int) readVarLong(in);
+                            downloadRates[i] = readVarLong(in);
+                            uploadRates[i] = readVarLong(in);
+                        }
+                        visitor.onTick(timestamp, progress, remaining, peers, peerIds, downloadRates, uploadRates);
+                        break;
+                    }
+                    case TelemetryRecorder.BITFIELD: {
+                        int peerId = (int) readVarLong(in);
+                        byte[] bytes = new byte[(int) readVarLong(in)];
+                        in.readFully(bytes);
+                        visitor.onBitfield(peerId, BitSet.valueOf(bytes));
+                        break;
+                    }
+                    case TelemetryRecorder.HAVE:
+                        visitor.onHave((int) readVarLong(in), (int) readVarLong(in));
+                        break;
+                    case TelemetryRecorder.PEER_LEFT:
+                        visitor.onPeerLeft((int) readVarLong(in));
+                        break;
+                    case TelemetryRecorder.PIECE_COMPLETED:
+                        visitor.onPieceCompleted((int) readVarLong(in));
+                        break;
+                    default:
+                        throw new IOException("Corrupt telemetry record tag " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            // Recorder was not closed cleanly (crash); keep what was read
+        }
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.client.core.telemetry;
+
+import bt.net.ConnectionKey;
+import com.client.core.brain.SwarmSnapshot;
+import com.client.core.swarm.SwarmAvailability;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Swarm Telemetry Recorder
+ *
+ * Writes one torrent's swarm history to a compact, gzipped binary file that
+ * ReplayBacktester can feed through any strategy offline. Peer piece sets are
+ * stored as events (full bitfield once, then HAVE deltas), so per-piece
+ * availability is reconstructed on replay instead of being written per tick.
+ *
+ * Format (big-endian, varints are unsigned LEB128):
+ * header: int MAGIC, short VERSION, int piecesTotal, long pieceLength,
+ * long totalSize, UTF name (version 1 has no pieceLength and totalSize)
+ * 'T' tick: long timestampMs, double progress, int piecesRemaining,
+ * varint peers, per peer: varint peerId, varint downloadRate, varint uploadRate
+ * 'B' bitfield: varint peerId, varint length, BitSet.toByteArray() bytes
+ * 'H' have: varint peerId, varint piece
+ * 'L' peer left: varint peerId
+ * 'C' local piece completed: varint piece
+ */
+public class TelemetryRecorder implements SwarmAvailability.Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryRecorder.class);
+
+    public static final int MAGIC = 0x4F50544C; // "OPTL"
+    public static final short VERSION = 2;
+
+    static final byte TICK = 'T';
+    static final byte BITFIELD = 'B';
+    static final byte HAVE = 'H';
+    static final byte PEER_LEFT = 'L';
+    static final byte PIECE_COMPLETED = 'C';
+
+    // All fields are guarded by 'this'
+    private final DataOutputStream out;
+    private final Map<ConnectionKey, Integer> peerIds = new HashMap<>();
+    private int nextPeerId;
+    private boolean failed;
+
+    private TelemetryRecorder(DataOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates the file (and its directory) and writes the header. The
+     * geometry lets a replay run the endgame like the live torrent.
+     */
+    public static TelemetryRecorder open(Path file, String name, int piecesTotal, long pieceLength,
+            long totalSize) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file)), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(piecesTotal);
+        out.writeLong(pieceLength);
+        out.writeLong(totalSize);
+        out.writeUTF(name != null ? name : "");
+        logger.info("[OPIT-CORE] Telemetry recording to {}", file);
+        return new TelemetryRecorder(out);
+    }
+
+    /**
+     * One status tick; 'peers' gives the connection behind each snapshot index.
+     */
+    public synchronized void recordTick(SwarmSnapshot snapshot, ConnectionKey[] peers) {
+        if (failed) {
+            return;
+        }
+        try {
+            out.writeByte(TICK);
+            out.writeLong(snapshot.getTimestampMs());
+            out.writeDouble(snapshot.getProgress());
+            out.writeInt(snapshot.getPiecesRemaining());
+            int count = Math.min(snapshot.getPeerCount(), peers.length);
+            writeVarLong(out, count);
+            for (int i = 0; i < count; i++) {
+                writeVarLong(out, peerId(peers[i]));
+                writeVarLong(out, snapshot.getPeerDownloadRate(i));
+                writeVarLong(out, snapshot.getPeerUploadRate(i));
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public synchronized void recordPieceCompleted(int pieceIndex) {
+        write(PIECE_COMPLETED, -1, pieceIndex);
+    }
+
+    @Override
+    public synchronized void onBitfield(ConnectionKey peer, BitSet pieces) {
+        if (failed) {
+            return;
+        }
+        try {
+            byte[] bytes = pieces.toByteArray();
+            out.writeByte(BITFIELD);
+            writeVarLong(out, peerId(peer));
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void onHave(ConnectionKey peer, int pieceIndex) {
+        write(HAVE, peerId(peer), pieceIndex);
+    }
+
+    @Override
+    public synchronized void onPeerRemoved(ConnectionKey peer) {
+        Integer id = peerIds.remove(peer);
+        if (id != null) {
+            write(PEER_LEFT, id, -1);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warn("[OPIT-CORE] Telemetry close failed: {}", e.getMessage());
+        }
+        failed = true; // Nothing more to write
+    }
+
+    private void write(byte tag, int peerId, int value) {
+        if (failed) {
+            return;
+        }
+        try {
+            out.writeByte(tag);
+            if (peerId >= 0) {
+                writeVarLong(out, peerId);
+            }
+            if (value >= 0) {
+                writeVarLong(out, value);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private int peerId(ConnectionKey peer) {
+        return peerIds.computeIfAbsent(peer, k -> nextPeerId++);
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        logger.error("[OPIT-CORE] Telemetry disabled after write error: {}", e.getMessage());
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,460 @@
+package com.client.core.tracker;
+
+import bt.metainfo.TorrentId;
+import bt.net.Peer;
+import bt.peer.PeerSource;
+import bt.peer.PeerSourceFactory;
+import bt.torrent.TorrentRegistry;
+import bt.tracker.ITrackerService;
+import bt.tracker.Tracker;
+import bt.tracker.TrackerRequestBuilder;
+import bt.tracker.TrackerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared Announce Scheduler
+ *
+ * Replaces Bt's per-torrent tracker polling (every torrent announcing to
+ * every tracker each getTrackerQueryInterval) with one scheduler for all
+ * torrents. Installed in the runtime as a PeerSourceFactory; torrents are
+ * handed to Bt without trackers and registered here instead.
+ *
+ * Features:
+ * 1. Deduplication - one entry per tracker URL however many torrents list
+ * it; at most one job per tracker runs at a time and announces all of its
+ * due torrents in a row over Bt's cached client (one UDP connection id)
+ * 2. Tracker intervals - each (tracker, torrent) pair is re-announced after
+ * the interval the tracker asked for, clamped to MIN/MAX_INTERVAL_MS
+ * 3. Health - latency and success rate per tracker (TrackerHealth); transport
+ * failures back off exponentially and a tracker failing DEAD_AFTER times in a
+ * row is dropped, then probed hourly
+ * 4. Batched probes - a dead UDP tracker is probed with one multi-infohash
+ * scrape (UdpScraper) instead of announces
+ * 5. Refusals - a tracker that answers with a failure reason is healthy; only
+ * that torrent is retried later (from MIN_INTERVAL_MS, doubling)
+ * 6. Events - 'started' on the first announce, 'completed' once a torrent
+ * finishes downloading (completed()), 'stopped' to every tracker that got
+ * 'started' when the torrent is unregistered
+ *
+ * Announces go through Bt's ITrackerService so peer id, port and transfer
+ * stats come from the running torrent.
+ */
+public class AnnounceScheduler implements PeerSourceFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnounceScheduler.class);
+
+    static final long MIN_INTERVAL_MS = 5 * 60_000;
+    static final long MAX_INTERVAL_MS = 60 * 60_000;
+    static final long DEFAULT_INTERVAL_MS = 30 * 60_000;
+    private static final long NOT_READY_RETRY_MS = 5_000; // Torrent not in Bt's registry yet
+    private static final int SCRAPE_TIMEOUT_MS = 10_000;
+    private static final int WORKERS = 8;
+
+    private static final PeerSource NO_PEERS = new PeerSource() {
+        @Override
+        public boolean update() {
+            return false;
+        }
+
+        @Override
+        public Collection<Peer> getPeers() {
+            return Collections.emptyList();
+        }
+    };
+
+    private final Map<String, TrackerEntry> trackers = new ConcurrentHashMap<>();
+    private final Map<TorrentId, TorrentEntry> torrents = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService workers;
+    private final Set<CompletableFuture<Void>> pendingStops = ConcurrentHashMap.newKeySet();
+
+    // Services of the current runtime, null while none runs
+    private volatile ITrackerService trackerService;
+    private volatile TorrentRegistry torrentRegistry;
+
+    public AnnounceScheduler() {
+        AtomicInteger threads = new AtomicInteger();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tracker-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workers = Executors.newFixedThreadPool(WORKERS, r -> {
+            Thread thread = new Thread(r, "tracker-announce-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (Exception e) {
+                logger.error("[TRACKERS] Scheduling failed: ", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Uses the services of a (re)started runtime for announces.
+     */
+    public void attach(ITrackerService trackerService, TorrentRegistry torrentRegistry) {
+        this.trackerService = trackerService;
+        this.torrentRegistry = torrentRegistry;
+    }
+
+    public void detach() {
+        this.trackerService = null;
+        this.torrentRegistry = null;
+    }
+
+    /**
+     * Starts announcing a torrent to 'trackerUrls' (duplicates and
+     * unsupported URLs are ignored).
+     */
+    public void register(TorrentId torrentId, Collection<String> trackerUrls) {
+        TorrentEntry torrent = new TorrentEntry();
+        for (String url : trackerUrls) {
+            String key = normalize(url);
+            if (key != null) {
+                torrent.trackers.add(key);
+            }
+        }
+        torrents.put(torrentId, torrent);
+        for (String key : torrent.trackers) {
+            // Entries outlive their torrents so a dead tracker stays known as dead
+            trackers.computeIfAbsent(key, TrackerEntry::new).announces.put(torrentId, new AnnounceState());
+        }
+    }
+
+    /**
+     * Stops announcing a torrent; trackers that were sent 'started' get a
+     * 'stopped' announce in the background (see awaitStopped).
+     */
+    public void unregister(TorrentId torrentId) {
+        TorrentEntry torrent = torrents.remove(torrentId);
+        if (torrent == null) {
+            return;
+        }
+        ITrackerService service = trackerService;
+        for (String key : torrent.trackers) {
+            TrackerEntry tracker = trackers.get(key);
+            if (tracker == null) {
+                continue;
+            }
+            AnnounceState state = tracker.announces.remove(torrentId);
+            if (state != null && state.started && service != null && !tracker.health.isDead()) {
+                stop(service, tracker, torrentId);
+            }
+        }
+    }
+
+    /**
+     * Sends 'completed' for a torrent that just finished downloading, on the
+     * next round of each of its trackers. Trackers not sent 'started' yet
+     * learn it from that first announce instead.
+     */
+    public void completed(TorrentId torrentId) {
+        TorrentEntry torrent = torrents.get(torrentId);
+        if (torrent == null) {
+            return;
+        }
+        for (String key : torrent.trackers) {
+            TrackerEntry tracker = trackers.get(key);
+            AnnounceState state = tracker != null ? tracker.announces.get(torrentId) : null;
+            if (state != null && state.started) {
+                state.completePending = true;
+                state.nextAnnounceMs = 0;
+            }
+        }
+    }
+
+    /**
+     * Waits up to 'timeoutMs' for the 'stopped' announces of unregistered
+     * torrents. Returns false if some were still running.
+     */
+    public boolean awaitStopped(long timeoutMs) throws InterruptedException {
+        CompletableFuture<?>[] stops = pendingStops.toArray(new CompletableFuture<?>[0]);
+        try {
+            CompletableFuture.allOf(stops).get(Math.max(0, timeoutMs), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true; // Each stop handles its own failure
+        }
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Current health of every known tracker.
+     */
+    public List<TrackerHealth> getTrackerHealth() {
+        List<TrackerHealth> health = new ArrayList<>();
+        for (TrackerEntry tracker : trackers.values()) {
+            health.add(tracker.health);
+        }
+        return health;
+    }
+
+    @Override
+    public PeerSource getPeerSource(TorrentId torrentId) {
+        TorrentEntry torrent = torrents.get(torrentId);
+        return torrent != null ? torrent.source : NO_PEERS;
+    }
+
+    private void tick(long now) {
+        if (trackerService == null) {
+            return;
+        }
+        List<TrackerEntry> due = new ArrayList<>();
+        for (TrackerEntry tracker : trackers.values()) {
+            if (!tracker.running && tracker.health.isAvailable(now) && tracker.hasDue(now)) {
+                due.add(tracker);
+            }
+        }
+        // Best trackers first when the workers are busy
+        due.sort((a, b) -> Double.compare(b.health.getScore(), a.health.getScore()));
+        for (TrackerEntry tracker : due) {
+            tracker.running = true;
+            workers.execute(() -> {
+                try {
+                    run(tracker);
+                } catch (Exception e) {
+                    logger.debug("[TRACKERS] {} job failed: {}", tracker.url, e.getMessage());
+                } finally {
+                    tracker.running = false;
+                }
+            });
+        }
+    }
+
+    private void run(TrackerEntry tracker) {
+        ITrackerService service = trackerService;
+        TorrentRegistry registry = torrentRegistry;
+        if (service == null || registry == null) {
+            return;
+        }
+        if (tracker.health.isDead() && !probe(tracker)) {
+            return;
+        }
+        Tracker client;
+        try {
+            client = service.getTracker(tracker.url);
+        } catch (RuntimeException e) {
+            failed(tracker, "Unsupported: " + e.getMessage());
+            return;
+        }
+        for (Map.Entry<TorrentId, AnnounceState> entry : tracker.announces.entrySet()) {
+            long now = System.currentTimeMillis();
+            AnnounceState state = entry.getValue();
+            if (state.nextAnnounceMs > now) {
+                continue;
+            }
+            if (!registry.getDescriptor(entry.getKey()).isPresent()) {
+                state.nextAnnounceMs = now + NOT_READY_RETRY_MS;
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean completing = state.started && state.completePending;
+            TrackerResponse response;
+            try {
+                TrackerRequestBuilder request = client.request(entry.getKey());
+                response = !state.started ? request.start() : completing ? request.complete() : request.query();
+            } catch (RuntimeException e) {
+                response = TrackerResponse.exceptional(e);
+            }
+            now = System.currentTimeMillis();
+            if (!response.isSuccess() && response.getError().isEmpty()) {
+                // The tracker answered, it just refuses this torrent
+                tracker.health.onSuccess((System.nanoTime() - start) / 1_000_000);
+                state.refusals++;
+                state.nextAnnounceMs = now + Math.min(MAX_INTERVAL_MS,
+                        MIN_INTERVAL_MS << Math.min(state.refusals - 1, 4));
+                logger.info("[TRACKERS] {} refused {}: {}", tracker.url, entry.getKey(),
+                        response.getErrorMessage());
+            } else if (response.isSuccess()) {
+                tracker.health.onSuccess((System.nanoTime() - start) / 1_000_000);
+                state.started = true;
+                state.refusals = 0;
+                if (completing) {
+                    state.completePending = false;
+                }
+                state.nextAnnounceMs = now + interval(response);
+                TorrentEntry torrent = torrents.get(entry.getKey());
+                if (torrent != null && response.getPeers() != null) {
+                    for (Peer peer : response.getPeers()) {
+                        torrent.source.discovered.add(peer);
+                    }
+                }
+            } else {
+                String error = response.getError().map(Throwable::getMessage).orElse(response.getErrorMessage());
+                failed(tracker, error);
+                return; // Backing off: the remaining torrents wait for the next attempt
+            }
+        }
+    }
+
+    private void stop(ITrackerService service, TrackerEntry tracker, TorrentId torrentId) {
+        CompletableFuture<Void> stop = CompletableFuture.runAsync(() -> {
+            try {
+                TrackerResponse response = service.getTracker(tracker.url).request(torrentId).stop();
+                if (!response.isSuccess()) {
+                    logger.debug("[TRACKERS] {} stop failed: {}", tracker.url, response.getErrorMessage());
+                }
+            } catch (RuntimeException e) {
+                logger.debug("[TRACKERS] {} stop failed: {}", tracker.url, e.getMessage());
+            }
+        }, workers);
+        pendingStops.add(stop);
+        stop.whenComplete((ignored, error) -> pendingStops.remove(stop));
+    }
+
+    /**
+     * Checks a dead tracker. UDP trackers are scraped for all their torrents
+     * in one go; others get a normal announce round.
+     */
+    private boolean probe(TrackerEntry tracker) {
+        if (!tracker.url.startsWith("udp://")) {
+            return true;
+        }
+        List<byte[]> infoHashes = new ArrayList<>();
+        for (TorrentId torrentId : tracker.announces.keySet()) {
+            infoHashes.add(torrentId.getBytes());
+        }
+        long start = System.nanoTime();
+        try {
+            UdpScraper.scrape(tracker.url, infoHashes, SCRAPE_TIMEOUT_MS);
+        } catch (Exception e) {
+            failed(tracker, e.getMessage());
+            return false;
+        }
+        tracker.health.onSuccess((System.nanoTime() - start) / 1_000_000);
+        logger.info("[TRACKERS] {} is answering again, resuming announces", tracker.url);
+        return true;
+    }
+
+    private static void failed(TrackerEntry tracker, String error) {
+        boolean wasDead = tracker.health.isDead();
+        tracker.health.onFailure(error, System.currentTimeMillis());
+        if (tracker.health.isDead() && !wasDead) {
+            logger.info("[TRACKERS] Dropping {} after {} failures ({}), probing hourly", tracker.url,
+                    tracker.health.getConsecutiveFailures(), tracker.health.getLastError());
+        }
+    }
+
+    private static long interval(TrackerResponse response) {
+        long requested = response.getInterval() * 1000L;
+        long clamped = requested > 0
+                ? Math.max(MIN_INTERVAL_MS, Math.min(MAX_INTERVAL_MS, requested))
+                : DEFAULT_INTERVAL_MS;
+        return Math.max(clamped, response.getMinInterval() * 1000L); // Never below the tracker's minimum
+    }
+
+    /**
+     * Canonical form used to deduplicate trackers: lower-case scheme and
+     * host, no trailing slash. Null if the URL is not http(s) or udp.
+     */
+    static String normalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        String trimmed = url.trim();
+        int schemeEnd = trimmed.indexOf("://");
+        if (schemeEnd <= 0) {
+            return null;
+        }
+        String scheme = trimmed.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        if (!scheme.equals("udp") && !scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        int pathStart = trimmed.indexOf('/', schemeEnd + 3);
+        String authority = pathStart < 0 ? trimmed.substring(schemeEnd + 3) : trimmed.substring(schemeEnd + 3,
+                pathStart);
+        String path = pathStart < 0 ? "" : trimmed.substring(pathStart);
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return scheme + "://" + authority.toLowerCase(Locale.ROOT) + path;
+    }
+
+    private static class TrackerEntry {
+        final String url;
+        final TrackerHealth health;
+        final Map<TorrentId, AnnounceState> announces = new ConcurrentHashMap<>();
+        volatile boolean running; // A job for this tracker is queued or running
+
+        TrackerEntry(String url) {
+            this.url = url;
+            this.health = new TrackerHealth(url);
+        }
+
+        boolean hasDue(long now) {
+            for (AnnounceState state : announces.values()) {
+                if (state.nextAnnounceMs <= now) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class AnnounceState {
+        volatile boolean started; // 'started' event sent
+        volatile boolean completePending; // 'completed' event still to send
+        volatile long nextAnnounceMs;
+        volatile int refusals; // Failure reasons in a row for this torrent
+    }
+
+    private static class TorrentEntry {
+        final Set<String> trackers = new LinkedHashSet<>();
+        final BufferedPeerSource source = new BufferedPeerSource();
+    }
+
+    /**
+     * Peers from announces, handed to Bt on its next collection round.
+     */
+    private static class BufferedPeerSource implements PeerSource {
+        final Queue<Peer> discovered = new ConcurrentLinkedQueue<>();
+        private List<Peer> peers = Collections.emptyList();
+
+        @Override
+        public boolean update() {
+            List<Peer> drained = new ArrayList<>();
+            Peer peer;
+            while ((peer = discovered.poll()) != null) {
+                drained.add(peer);
+            }
+            peers = drained;
+            return !drained.isEmpty();
+        }
+
+        @Override
+        public Collection<Peer> getPeers() {
+            return peers;
+        }
+    }
+}
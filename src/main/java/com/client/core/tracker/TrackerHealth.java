@@ -0,0 +1,87 @@
+package com.client.core.tracker;
+
+/**
+ * Health of one tracker across all torrents.
+ *
+ * Success rate and latency are moving averages over its requests. Every
+ * consecutive failure doubles the backoff before the next request; after
+ * DEAD_AFTER failures in a row the tracker is dead and only probed once per
+ * DEAD_PROBE_MS until it answers again. Not thread-safe: the scheduler runs
+ * at most one job per tracker at a time.
+ */
+public class TrackerHealth {
+
+    static final int DEAD_AFTER = 5;
+    static final long BASE_BACKOFF_MS = 60_000;
+    static final long MAX_BACKOFF_MS = 3_600_000;
+    static final long DEAD_PROBE_MS = 3_600_000;
+    private static final double ALPHA = 0.3; // Weight of the newest request
+
+    private final String url;
+    private double successRate = 1.0; // Optimistic until proven otherwise
+    private double latencyMs;
+    private int consecutiveFailures;
+    private long requests;
+    private long retryAtMs;
+    private String lastError = "";
+
+    TrackerHealth(String url) {
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    void onSuccess(long latencyMs) {
+        requests++;
+        successRate += ALPHA * (1.0 - successRate);
+        this.latencyMs = requests == 1 ? latencyMs : this.latencyMs + ALPHA * (latencyMs - this.latencyMs);
+        consecutiveFailures = 0;
+        retryAtMs = 0;
+    }
+
+    void onFailure(String error, long now) {
+        requests++;
+        successRate -= ALPHA * successRate;
+        consecutiveFailures++;
+        lastError = error != null ? error : "";
+        retryAtMs = now + (isDead()
+                ? DEAD_PROBE_MS
+                : Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(consecutiveFailures - 1, 16)));
+    }
+
+    /**
+     * False while backing off after a failure.
+     */
+    boolean isAvailable(long now) {
+        return now >= retryAtMs;
+    }
+
+    public boolean isDead() {
+        return consecutiveFailures >= DEAD_AFTER;
+    }
+
+    public double getSuccessRate() {
+        return successRate;
+    }
+
+    public long getLatencyMs() {
+        return Math.round(latencyMs);
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Higher is better: reliable first, then fast.
+     */
+    public double getScore() {
+        return isDead() ? 0 : successRate / (1.0 + latencyMs / 1000.0);
+    }
+}
@@ -0,0 +1,131 @@
+package com.client.core.tracker;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * UDP tracker scrape (BEP 15) for many torrents at once.
+ *
+ * One connect exchange, then one scrape packet per MAX_HASHES_PER_PACKET
+ * infohashes, so checking a whole library against a tracker costs a handful
+ * of datagrams instead of one announce per torrent. Bt has no scrape
+ * support, hence the small client here.
+ */
+public final class UdpScraper {
+
+    static final int MAX_HASHES_PER_PACKET = 74; // Keeps requests and responses under 1 KiB
+    private static final long PROTOCOL_ID = 0x41727101980L;
+    private static final int ACTION_CONNECT = 0;
+    private static final int ACTION_SCRAPE = 2;
+    private static final int ACTION_ERROR = 3;
+
+    /**
+     * Swarm counts of one torrent as reported by the tracker.
+     */
+    public static class Result {
+        private final int seeders;
+        private final int completed;
+        private final int leechers;
+
+        Result(int seeders, int completed, int leechers) {
+            this.seeders = seeders;
+            this.completed = completed;
+            this.leechers = leechers;
+        }
+
+        public int getSeeders() {
+            return seeders;
+        }
+
+        public int getCompleted() {
+            return completed;
+        }
+
+        public int getLeechers() {
+            return leechers;
+        }
+    }
+
+    private UdpScraper() {
+    }
+
+    /**
+     * Scrapes 'infoHashes' (20 bytes each) in order; throws if the tracker
+     * does not answer within 'timeoutMs' per exchange or reports an error.
+     */
+    public static Result[] scrape(String trackerUrl, List<byte[]> infoHashes, int timeoutMs) throws IOException {
+        URI uri = URI.create(trackerUrl);
+        if (uri.getHost() == null || uri.getPort() <= 0) {
+            throw new IOException("Invalid UDP tracker URL: " + trackerUrl);
+        }
+        InetSocketAddress address = new InetSocketAddress(uri.getHost(), uri.getPort());
+        if (address.isUnresolved()) {
+            throw new IOException("Unresolved host: " + uri.getHost());
+        }
+        Result[] results = new Result[infoHashes.size()];
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(timeoutMs);
+            socket.connect(address);
+            byte[] receive = new byte[8 + 12 * MAX_HASHES_PER_PACKET];
+
+            int transactionId = ThreadLocalRandom.current().nextInt();
+            ByteBuffer connect = ByteBuffer.allocate(16);
+            connect.putLong(PROTOCOL_ID).putInt(ACTION_CONNECT).putInt(transactionId);
+            ByteBuffer response = exchange(socket, connect.array(), receive, transactionId, ACTION_CONNECT, 16);
+            long connectionId = response.getLong();
+
+            for (int from = 0; from < results.length; from += MAX_HASHES_PER_PACKET) {
+                int count = Math.min(MAX_HASHES_PER_PACKET, results.length - from);
+                transactionId = ThreadLocalRandom.current().nextInt();
+                ByteBuffer request = ByteBuffer.allocate(16 + 20 * count);
+                request.putLong(connectionId).putInt(ACTION_SCRAPE).putInt(transactionId);
+                for (int i = 0; i < count; i++) {
+                    request.put(infoHashes.get(from + i), 0, 20);
+                }
+                response = exchange(socket, request.array(), receive, transactionId, ACTION_SCRAPE, 8 + 12 * count);
+                for (int i = 0; i < count; i++) {
+                    results[from + i] = new Result(response.getInt(), response.getInt(), response.getInt());
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Sends one request and returns the matching response positioned after
+     * its action and transaction id.
+     */
+    private static ByteBuffer exchange(DatagramSocket socket, byte[] request, byte[] receive, int transactionId,
+            int action, int minLength) throws IOException {
+        socket.send(new DatagramPacket(request, request.length));
+        while (true) {
+            DatagramPacket packet = new DatagramPacket(receive, receive.length);
+            socket.receive(packet); // SocketTimeoutException ends the exchange
+            ByteBuffer response = ByteBuffer.wrap(receive, 0, packet.getLength());
+            if (packet.getLength() < 8) {
+                continue;
+            }
+            int responseAction = response.getInt();
+            if (response.getInt() != transactionId) {
+                continue; // Late answer to an earlier request
+            }
+            if (responseAction == ACTION_ERROR) {
+                byte[] message = new byte[response.remaining()];
+                response.get(message);
+                throw new IOException("Tracker error: " + new String(message, StandardCharsets.UTF_8));
+            }
+            if (responseAction != action || packet.getLength() < minLength) {
+                throw new IOException("Unexpected response (action " + responseAction + ", "
+                        + packet.getLength() + " bytes)");
+            }
+            return response;
+        }
+    }
+}
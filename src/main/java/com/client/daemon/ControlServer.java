@@ -0,0 +1,449 @@
+package com.client.daemon;
+
+import com.client.core.TorrentService;
+import com.client.core.status.StatusBus;
+import com.client.core.status.StatusSlot;
+import com.client.core.status.StatusView;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local Control API
+ *
+ * Features:
+ * 1. Plain HTTP on loopback (JDK HttpServer, no extra dependency), so curl or
+ * any script can drive the daemon:
+ * GET /api/torrents - status of every torrent (JSON array)
+ * POST /api/torrents - add; body is a magnet link, or a .torrent file sent
+ * as application/x-bittorrent, or empty with ?path=/local/file.torrent
+ * POST /api/import - bulk add; body is one .torrent path per line
+ * POST /api/torrents/{id}/priority - body is the new priority
+ * DELETE /api/torrents/{id} - stop and forget
+ * GET /api/events - status stream (Server-Sent Events)
+ * GET /api/stats - engine-wide metrics (hashing queue depth, connections)
+ * POST /api/shutdown - stop the daemon
+ * 2. Streaming - each /api/events client is a StatusBus subscription and
+ * gets only what changed; a client too slow to keep up is disconnected
+ * instead of stalling the bus
+ * 3. Token - every request must carry it in the X-Auth-Token header;
+ * compared in constant time
+ * 4. Browser guard - requests with an Origin header (cross-site pages) or a
+ * Host other than 127.0.0.1 / localhost / [::1] (DNS rebinding) are refused
+ * before the token is looked at
+ */
+public class ControlServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ControlServer.class);
+
+    private static final long EVENT_PERIOD_MS = 1000;
+    private static final int EVENT_BACKLOG = 16; // Deliveries buffered per stream before it is dropped
+    private static final long KEEPALIVE_MS = 15_000;
+    private static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+
+    private final TorrentService service;
+    private final InetSocketAddress address;
+    private final String token;
+    private final Runnable onShutdownRequest;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public ControlServer(TorrentService service, InetSocketAddress address, String token,
+            Runnable onShutdownRequest) {
+        this.service = service;
+        this.address = address;
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("The control API needs a token");
+        }
+        this.token = token;
+        this.onShutdownRequest = onShutdownRequest;
+    }
+
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(address, 0);
+        // Event streams hold their thread for as long as the client listens
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("control-api-", 0).factory());
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.start();
+        logger.info("[DAEMON] Control API listening on http://{}:{}/api/ (token required)",
+                address.getHostString(), getPort());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : address.getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (exchange.getRequestHeaders().containsKey("Origin")) {
+                sendError(exchange, 403, "Cross-origin requests are not allowed");
+                return;
+            }
+            if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                sendError(exchange, 403, "Host not allowed");
+                return;
+            }
+            if (!isValidToken(exchange.getRequestHeaders().getFirst("X-Auth-Token"))) {
+                sendError(exchange, 401, "Missing or wrong X-Auth-Token");
+                return;
+            }
+            route(exchange);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IOException e) {
+            logger.debug("[DAEMON] {} {} aborted: {}", exchange.getRequestMethod(), exchange.getRequestURI(),
+                    e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("[DAEMON] {} {} failed: ", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isValidToken(String presented) {
+        return presented != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * True for a Host header naming the loopback interface, with or without
+     * a port. Any other name means the request reached us through a name
+     * that resolved to loopback, which is how DNS rebinding gets in.
+     */
+    static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        String name = host.trim().toLowerCase(java.util.Locale.ROOT);
+        if (name.startsWith("[")) {
+            int end = name.indexOf(']');
+            if (end < 0 || (end + 1 < name.length() && name.charAt(end + 1) != ':')) {
+                return false;
+            }
+            name = name.substring(1, end);
+        } else {
+            int colon = name.indexOf(':');
+            if (colon >= 0) {
+                name = name.substring(0, colon);
+            }
+        }
+        return name.equals("127.0.0.1") || name.equals("localhost") || name.equals("::1");
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+        // path[0] is empty, path[1] is "api"
+        String resource = path.length > 2 ? path[2] : "";
+
+        if (resource.equals("torrents") && path.length == 3) {
+            if (method.equals("GET")) {
+                listTorrents(exchange);
+            } else if (method.equals("POST")) {
+                addTorrent(exchange);
+            } else {
+                sendError(exchange, 405, "Use GET or POST");
+            }
+        } else if (resource.equals("torrents") && path.length >= 4) {
+            String id = path[3];
+            if (service.getStatusBus().get(id) == null) {
+                sendError(exchange, 404, "No torrent " + id);
+            } else if (path.length == 4 && method.equals("DELETE")) {
+                service.stopDownload(id);
+                send(exchange, 204, null);
+            } else if (path.length == 5 && path[4].equals("priority") && method.equals("POST")) {
+                service.setPriority(id, parseInt(readBody(exchange).trim()));
+                send(exchange, 204, null);
+            } else {
+                sendError(exchange, 404, "Unknown request");
+            }
+        } else if (resource.equals("import") && method.equals("POST")) {
+            List<File> files = new ArrayList<>();
+            for (String line : readBody(exchange).split("\\R")) {
+                if (!line.isBlank()) {
+                    files.add(new File(line.trim()));
+                }
+            }
+            List<String> ids = service.importTorrents(files);
+            StringBuilder json = new StringBuilder("{\"ids\":[");
+            for (int i = 0; i < ids.size(); i++) {
+                json.append(i > 0 ? "," : "").append(quote(ids.get(i)));
+            }
+            send(exchange, 200, json.append("]}").toString());
+        } else if (resource.equals("events") && method.equals("GET")) {
+            streamEvents(exchange);
+        } else if (resource.equals("stats") && method.equals("GET")) {
+            sendStats(exchange);
+        } else if (resource.equals("shutdown") && method.equals("POST")) {
+            send(exchange, 202, "{}");
+            onShutdownRequest.run();
+        } else {
+            sendError(exchange, 404, "Unknown request");
+        }
+    }
+
+    private void sendStats(HttpExchange exchange) throws IOException {
+        com.client.core.integrity.HashingPool hashing = com.client.core.integrity.HashingPool.global();
+        com.client.core.swarm.ConnectionBudget connections = com.client.core.swarm.ConnectionBudget.global();
+        send(exchange, 200, "{\"hashing\":{\"threads\":" + hashing.getParallelism()
+                + ",\"queuedPieces\":" + hashing.getQueuedPieces()
+                + ",\"queuedTorrents\":" + hashing.getQueuedTorrents() + "}"
+                + ",\"connections\":{\"open\":" + connections.getConnected()
+                + ",\"limit\":" + connections.getLimit()
+                + ",\"halfOpen\":" + connections.getPending()
+                + ",\"halfOpenLimit\":" + connections.getHalfOpenLimit() + "}}");
+    }
+
+    private void listTorrents(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        StatusView view = new StatusView();
+        for (StatusSlot slot : service.getStatusBus().getSlots()) {
+            slot.read(view);
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            appendStatus(json, view);
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    private void addTorrent(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String localPath = queryParameter(exchange, "path");
+        String id;
+        if (localPath != null) {
+            File file = new File(localPath);
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("No such file: " + localPath);
+            }
+            id = service.startDownload(file);
+        } else if (contentType != null && contentType.startsWith("application/x-bittorrent")) {
+            id = service.startDownload(saveUpload(readBytes(exchange)));
+        } else {
+            String magnet = readBody(exchange).trim();
+            if (!magnet.startsWith("magnet:")) {
+                throw new IllegalArgumentException("Body must be a magnet link or a .torrent file");
+            }
+            id = service.startDownload(magnet);
+        }
+        send(exchange, 201, "{\"id\":" + quote(id) + "}");
+    }
+
+    /**
+     * Keeps an uploaded .torrent in the config directory (named by its
+     * content hash), since the torrent is restarted from it later.
+     */
+    private static File saveUpload(byte[] torrent) throws IOException {
+        try {
+            com.client.core.metainfo.TorrentMetainfo.parse(java.nio.ByteBuffer.wrap(torrent));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Not a .torrent file: " + e.getMessage());
+        }
+        Path directory = com.client.config.SettingsManager.getInstance().getConfigDir().resolve("torrents");
+        Files.createDirectories(directory);
+        Path file;
+        try {
+            file = directory.resolve(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(torrent))
+                    + ".torrent");
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (!Files.exists(file)) {
+            Files.write(file, torrent);
+        }
+        return file.toFile();
+    }
+
+    /**
+     * Server-Sent Events: "status" with a torrent's JSON for every change,
+     * "removed" with the id of every removed torrent. The bus thread only
+     * formats; this request's thread does the (possibly slow) writing.
+     */
+    private void streamEvents(HttpExchange exchange) throws IOException {
+        BlockingQueue<byte[]> deliveries = new ArrayBlockingQueue<>(EVENT_BACKLOG);
+        AtomicBoolean overflow = new AtomicBoolean();
+        StatusBus.Subscription subscription = service.getStatusBus().subscribe(new StatusBus.Subscriber() {
+            private final StringBuilder batch = new StringBuilder();
+
+            @Override
+            public void onStatus(StatusView view) {
+                batch.append("event: status\ndata: ");
+                appendStatus(batch, view);
+                batch.append("\n\n");
+            }
+
+            @Override
+            public void onRemoved(String id) {
+                batch.append("event: removed\ndata: ").append(quote(id)).append("\n\n");
+            }
+
+            @Override
+            public void onDeliveryEnd() {
+                if (batch.length() > 0 && !overflow.get()) {
+                    if (!deliveries.offer(batch.toString().getBytes(StandardCharsets.UTF_8))) {
+                        overflow.set(true);
+                        deliveries.clear();
+                        deliveries.offer(new byte[0]); // Wakes the writer to close
+                    }
+                }
+                batch.setLength(0);
+            }
+        }, EVENT_PERIOD_MS);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            while (!Thread.currentThread().isInterrupted()) {
+                byte[] delivery = deliveries.poll(KEEPALIVE_MS, TimeUnit.MILLISECONDS);
+                if (overflow.get()) {
+                    logger.info("[DAEMON] Event stream to {} fell behind, closing it", exchange.getRemoteAddress());
+                    break;
+                }
+                out.write(delivery != null ? delivery : ": keepalive\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    static void appendStatus(StringBuilder json, StatusView view) {
+        json.append("{\"id\":").append(quote(view.getId()))
+                .append(",\"name\":").append(quote(view.getName()))
+                .append(",\"state\":").append(quote(view.getState() != null ? view.getState().name() : null))
+                .append(",\"progress\":").append(view.getProgress())
+                .append(",\"downloaded\":").append(view.getDownloadedBytes())
+                .append(",\"uploaded\":").append(view.getUploadedBytes())
+                .append(",\"downloadRate\":").append(view.getDownloadRate())
+                .append(",\"uploadRate\":").append(view.getUploadRate())
+                .append(",\"peers\":").append(view.getConnectedPeers())
+                .append(",\"seeds\":").append(view.getSeeds())
+                .append(",\"leechers\":").append(view.getLeechers())
+                .append(",\"size\":").append(view.getTotalSize())
+                .append(",\"eta\":").append(view.getEtaSeconds())
+                .append(",\"error\":").append(quote(view.getLastError()))
+                .append('}');
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return java.net.URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        return new String(readBytes(exchange), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body over " + MAX_BODY_BYTES + " bytes");
+            }
+            return body;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            send(exchange, status, "{\"error\":" + quote(message) + "}");
+        } catch (IOException e) {
+            // Client is gone
+        }
+    }
+}
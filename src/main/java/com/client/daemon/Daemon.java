@@ -0,0 +1,119 @@
+package com.client.daemon;
+
+import com.client.core.TorrentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Headless entry point: the torrent engine plus the local ControlServer, no
+ * JavaFX class is loaded.
+ *
+ * Options (settings daemon.port / daemon.token otherwise):
+ * --port N - control API port on 127.0.0.1 (default 7070, 0 picks a free one)
+ * --token T - require X-Auth-Token: T on every request
+ *
+ * Without a configured token a random one is generated on first start and
+ * kept in daemon.token in the config directory (readable by the owner only),
+ * so the API is never open to every local process.
+ *
+ * Runs until POST /api/shutdown or SIGTERM; both stop the engine cleanly.
+ */
+public final class Daemon {
+
+    private static final Logger logger = LoggerFactory.getLogger(Daemon.class);
+
+    public static final int DEFAULT_PORT = 7070;
+    private static final int TOKEN_BYTES = 32;
+
+    private Daemon() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        com.client.config.SettingsManager settings = com.client.config.SettingsManager.getInstance();
+        int port = DEFAULT_PORT;
+        String portSetting = settings.get("daemon.port");
+        if (portSetting != null && !portSetting.isBlank()) {
+            port = Integer.parseInt(portSetting.trim());
+        }
+        String token = settings.get("daemon.token");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--token") && i + 1 < args.length) {
+                token = args[++i];
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                System.err.println("Usage: Daemon [--port N] [--token T]");
+                System.exit(2);
+            }
+        }
+
+        if (token == null || token.isBlank()) {
+            Path tokenFile = settings.getConfigDir().resolve("daemon.token");
+            token = loadOrCreateToken(tokenFile);
+            logger.info("[DAEMON] Using the token in {}", tokenFile);
+        }
+
+        try {
+            com.client.core.memory.HyperLinkAllocator.allocateTensorBuffer();
+        } catch (Exception e) {
+            logger.error("Failed to initialize Shared Memory: {}", e.getMessage());
+        }
+
+        TorrentService service = new TorrentService();
+        CountDownLatch stopRequested = new CountDownLatch(1);
+        ControlServer server = new ControlServer(service,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), token, stopRequested::countDown);
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("[DAEMON] Shutting down");
+            server.stop();
+            service.stop();
+        }, "daemon-shutdown"));
+
+        stopRequested.await();
+        System.exit(0); // Runs the shutdown hook
+    }
+
+    /**
+     * Reads the token kept in 'file', or writes a new random one there.
+     */
+    private static String loadOrCreateToken(Path file) throws IOException {
+        if (Files.isRegularFile(file)) {
+            String existing = Files.readString(file, StandardCharsets.UTF_8).trim();
+            if (!existing.isEmpty()) {
+                return existing;
+            }
+            Files.delete(file);
+        }
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        String token = HexFormat.of().formatHex(random);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try {
+            if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(file,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                Files.createFile(file);
+            }
+        } catch (FileAlreadyExistsException e) {
+            return loadOrCreateToken(file); // Another instance was first
+        }
+        Files.writeString(file, token, StandardCharsets.UTF_8);
+        return token;
+    }
+}
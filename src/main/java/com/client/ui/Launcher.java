@@ -1,7 +1,12 @@
 package com.client.ui;
 
 public class Launcher {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // --headless: engine and control API only, JavaFX never loads
+        if (args.length > 0 && args[0].equals("--headless")) {
+            com.client.daemon.Daemon.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         MainApp.main(args);
     }
 }
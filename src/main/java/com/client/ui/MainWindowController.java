@@ -2,6 +2,8 @@ package com.client.ui;
 
 import com.client.core.TorrentService;
 import com.client.core.TorrentStatus;
+import com.client.core.status.StatusBus;
+import com.client.core.status.StatusView;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -70,7 +72,9 @@ public class MainWindowController {
 
     private TorrentService torrentService;
     private final ObservableList<TorrentViewModel> torrents = FXCollections.observableArrayList();
-    private java.util.concurrent.ScheduledExecutorService refreshExecutor;
+    // Rows by torrent id, so a delta is applied without scanning the table
+    private final java.util.Map<String, TorrentViewModel> viewModels = new java.util.HashMap<>();
+    private StatusBus.Subscription statusSubscription;
     private String selectedTorrentId = null;
 
     public void initialize() {
@@ -107,9 +111,30 @@ public class MainWindowController {
         contextMenu.getItems().add(removeItem);
         torrentTable.setContextMenu(contextMenu);
 
-        // Start polling for updates
-        refreshExecutor = java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
-        refreshExecutor.scheduleAtFixedRate(this::updateUI, 1, 1, java.util.concurrent.TimeUnit.SECONDS);
+        // Changed torrents are pushed once per second
+        statusSubscription = torrentService.getStatusBus().subscribe(new StatusBus.Subscriber() {
+            private java.util.List<StatusView> changed = new java.util.ArrayList<>();
+            private java.util.List<String> removed = new java.util.ArrayList<>();
+
+            @Override
+            public void onStatus(StatusView view) {
+                changed.add(view.copy());
+            }
+
+            @Override
+            public void onRemoved(String id) {
+                removed.add(id);
+            }
+
+            @Override
+            public void onDeliveryEnd() {
+                java.util.List<StatusView> batch = changed;
+                java.util.List<String> gone = removed;
+                changed = new java.util.ArrayList<>();
+                removed = new java.util.ArrayList<>();
+                Platform.runLater(() -> updateUI(batch, gone));
+            }
+        }, 1000);
     }
 
     private void updateDetailsPanel(TorrentViewModel vm) {
@@ -152,55 +177,59 @@ public class MainWindowController {
             detailError.setText("");
     }
 
-    private void updateUI() {
-        try {
-            java.util.List<TorrentStatus> statuses = torrentService.getAllTorrentsStatus();
-            Platform.runLater(() -> {
-                if (refreshLabel != null) {
-                    refreshLabel.setText("Last update: " + java.time.LocalTime.now()
-                            .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss")));
-                }
-                for (TorrentStatus status : statuses) {
-                    TorrentViewModel vm = findViewModel(status.getId());
-                    if (vm == null) {
-                        vm = new TorrentViewModel();
-                        vm.setId(status.getId());
-                        torrents.add(vm);
-                    }
-
-                    // Update all fields
-                    vm.name.set(status.getName());
-                    vm.progress.set(String.format("%.1f%%", status.getProgress() * 100));
-                    vm.downSpeed.set(formatSpeed(status.getDownloadRate()));
-                    vm.upSpeed.set(formatSpeed(status.getUploadRate()));
-                    vm.seeds.set(String.valueOf(status.getSeeds()));
-                    vm.peers.set(String.valueOf(status.getConnectedPeers()));
-                    vm.eta.set(status.getEta());
-                    vm.status.set(status.getState());
-                    vm.downloaded.set(formatBytes(status.getDownloadedBytes()));
-                    vm.uploaded.set(formatBytes(status.getUploadedBytes()));
-                    vm.leechers.set(String.valueOf(status.getLeechers()));
-                    vm.size.set(formatBytes(status.getTotalSize()));
-                    vm.error.set(status.getLastError());
-
-                    // Update details panel if this torrent is selected
-                    if (status.getId().equals(selectedTorrentId)) {
-                        updateDetailsPanel(vm);
-                    }
-                }
-            });
-        } catch (Exception e) {
-            e.printStackTrace();
+    private void updateUI(java.util.List<StatusView> changed, java.util.List<String> removed) {
+        if (refreshLabel != null) {
+            refreshLabel.setText("Last update: " + java.time.LocalTime.now()
+                    .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss")));
         }
-    }
+        for (StatusView status : changed) {
+            TorrentViewModel vm = viewModels.get(status.getId());
+            if (vm == null) {
+                vm = new TorrentViewModel();
+                vm.setId(status.getId());
+                viewModels.put(status.getId(), vm);
+                torrents.add(vm);
+            }
 
-    private TorrentViewModel findViewModel(String id) {
-        for (TorrentViewModel vm : torrents) {
-            if (id != null && id.equals(vm.getId())) {
-                return vm;
+            // Update all fields
+            vm.name.set(status.getName());
+            vm.progress.set(String.format("%.1f%%", status.getProgress() * 100));
+            vm.downSpeed.set(formatSpeed(status.getDownloadRate()));
+            vm.upSpeed.set(formatSpeed(status.getUploadRate()));
+            vm.seeds.set(String.valueOf(status.getSeeds()));
+            vm.peers.set(String.valueOf(status.getConnectedPeers()));
+            vm.eta.set(TorrentStatus.formatEta(status.getEtaSeconds(), status.getProgress()));
+            vm.status.set(status.getState().getLabel());
+            vm.downloaded.set(formatBytes(status.getDownloadedBytes()));
+            vm.uploaded.set(formatBytes(status.getUploadedBytes()));
+            vm.leechers.set(String.valueOf(status.getLeechers()));
+            vm.size.set(formatBytes(status.getTotalSize()));
+            vm.error.set(status.getLastError());
+
+            // Update details panel if this torrent is selected
+            if (status.getId().equals(selectedTorrentId)) {
+                updateDetailsPanel(vm);
+            }
+        }
+        for (String id : removed) {
+            TorrentViewModel vm = viewModels.remove(id);
+            if (vm != null) {
+                torrents.remove(vm);
             }
         }
-        return null;
+    }
+
+    /**
+     * Gives a placeholder row its torrent id. If the bus already delivered a
+     * row for that id, the placeholder is dropped instead.
+     */
+    private void attachPlaceholder(TorrentViewModel vm, String id) {
+        if (viewModels.containsKey(id)) {
+            torrents.remove(vm);
+            return;
+        }
+        vm.setId(id);
+        viewModels.put(id, vm);
     }
 
     private String formatSpeed(long bytesPerSecond) {
@@ -227,8 +256,8 @@ public class MainWindowController {
     }
 
     public void shutdown() {
-        if (refreshExecutor != null)
-            refreshExecutor.shutdownNow();
+        if (statusSubscription != null)
+            statusSubscription.cancel();
         if (torrentService != null)
             torrentService.stop();
     }
@@ -237,7 +266,10 @@ public class MainWindowController {
     private void handleRemoveAction() {
         TorrentViewModel selected = torrentTable.getSelectionModel().getSelectedItem();
         if (selected != null) {
-            torrentService.stopDownload(selected.getId());
+            // Stopping a client blocks; keep it off the FX thread
+            String id = selected.getId();
+            Thread.ofVirtual().name("torrent-remove").start(() -> torrentService.stopDownload(id));
+            viewModels.remove(selected.getId());
             torrents.remove(selected);
             statusLabel.setText("Removed: " + selected.getName());
             clearDetailsPanel();
@@ -251,19 +283,29 @@ public class MainWindowController {
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("Torrent Files", "*.torrent"),
                 new FileChooser.ExtensionFilter("All Files", "*.*"));
-        File selectedFile = fileChooser.showOpenDialog(magnetInput.getScene().getWindow());
+        java.util.List<File> selectedFiles = fileChooser.showOpenMultipleDialog(magnetInput.getScene().getWindow());
+        if (selectedFiles != null && selectedFiles.size() > 1) {
+            // Rows appear through the status subscription as torrents are queued
+            statusLabel.setText("Importing " + selectedFiles.size() + " torrent files...");
+            Thread.ofVirtual().name("torrent-import-ui").start(() -> {
+                java.util.List<String> ids = torrentService.importTorrents(selectedFiles);
+                Platform.runLater(() -> statusLabel.setText("Imported " + ids.size() + " of "
+                        + selectedFiles.size() + " torrent files"));
+            });
+            return;
+        }
+        File selectedFile = selectedFiles != null ? selectedFiles.get(0) : null;
         if (selectedFile != null) {
             statusLabel.setText("Starting file download...");
             TorrentViewModel vm = new TorrentViewModel();
             vm.name.set("Fetching metadata...");
             torrents.add(vm);
 
-            new Thread(() -> {
+            Thread.ofVirtual().name("torrent-add").start(() -> {
                 try {
                     String id = torrentService.startDownload(selectedFile);
                     Platform.runLater(() -> {
-                        vm.setId(id);
-                        vm.status.set("Downloading");
+                        attachPlaceholder(vm, id);
                         vm.name.set(selectedFile.getName());
                     });
                 } catch (Exception e) {
@@ -273,7 +315,7 @@ public class MainWindowController {
                         torrents.remove(vm);
                     });
                 }
-            }).start();
+            });
         }
     }
 
@@ -286,13 +328,10 @@ public class MainWindowController {
             vm.name.set("Fetching metadata...");
             torrents.add(vm);
 
-            new Thread(() -> {
+            Thread.ofVirtual().name("torrent-add").start(() -> {
                 try {
                     String id = torrentService.startDownload(magnet);
-                    Platform.runLater(() -> {
-                        vm.setId(id);
-                        vm.status.set("Downloading");
-                    });
+                    Platform.runLater(() -> attachPlaceholder(vm, id));
                 } catch (Exception e) {
                     e.printStackTrace();
                     Platform.runLater(() -> {
@@ -300,7 +339,7 @@ public class MainWindowController {
                         torrents.remove(vm);
                     });
                 }
-            }).start();
+            });
 
             magnetInput.clear();
         }